@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * {@code escapeEarly} of the 1.0.0 implementation ({@link URLEncoder} followed by a regex pass
+ * lowercasing every escape sequence) against the single-pass encoder of {@link TokenBuffer}.
+ * It lives in the library package to reach the package-private encoder.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class EscapeEarlyBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int size;
+
+    String text;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder(size + 32);
+        int i = 0;
+        while (sb.length() < size) {
+            sb.append("/vod/ä b=").append(i++).append("/*!");
+        }
+        this.text = sb.toString();
+    }
+
+    @Benchmark
+    public String legacy() throws UnsupportedEncodingException {
+        StringBuilder newText = new StringBuilder(URLEncoder.encode(text, "UTF-8"));
+        Pattern pattern = Pattern.compile("%..");
+        Matcher matcher = pattern.matcher(newText);
+        String tmpText;
+        while (matcher.find()) {
+            tmpText = newText.substring(matcher.start(), matcher.end()).toLowerCase();
+            newText.replace(matcher.start(), matcher.end(), tmpText);
+        }
+        return newText.toString();
+    }
+
+    @Benchmark
+    public int singlePass() {
+        TokenBuffer buffer = TokenBuffer.acquire();
+        try {
+            return buffer.appendEscaped(text).length();
+        } finally {
+            buffer.release();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.akamai.edgeauth.benchmark;
+
+import com.akamai.edgeauth.EdgeAuth;
+import com.akamai.edgeauth.EdgeAuthAclMatcher;
+import com.akamai.edgeauth.EdgeAuthException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * {@link EdgeAuthAclMatcher} against one regex per acl entry, for a path matching the last entry only.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class AclMatcherBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int entries;
+
+    String acl;
+
+    Pattern[] regexes;
+
+    String path;
+
+    @Setup
+    public void setUp() throws EdgeAuthException {
+        String[] patterns = new String[entries];
+        this.regexes = new Pattern[entries];
+        for (int i = 0; i < entries; i++) {
+            patterns[i] = "/live/channel" + i + "/*/seg?.ts";
+            this.regexes[i] = Pattern.compile(Pattern.quote(patterns[i])
+                    .replace("*", "\\E.*\\Q").replace("?", "\\E.\\Q"));
+        }
+        this.acl = EdgeAuth.join('!', patterns);
+        this.path = "/live/channel" + (entries - 1) + "/1080p/seg1.ts";
+    }
+
+    @Benchmark
+    public boolean compiled() throws EdgeAuthException {
+        return EdgeAuthAclMatcher.compile(acl, '!').matches(path);
+    }
+
+    @Benchmark
+    public boolean regexPerEntry() {
+        for (Pattern regex : regexes) {
+            if (regex.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
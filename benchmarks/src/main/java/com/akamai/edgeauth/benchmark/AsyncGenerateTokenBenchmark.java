@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth.benchmark;
+
+import com.akamai.edgeauth.EdgeAuth;
+import com.akamai.edgeauth.EdgeAuthAsync;
+import com.akamai.edgeauth.EdgeAuthBuilder;
+import com.akamai.edgeauth.EdgeAuthException;
+import com.akamai.edgeauth.EdgeAuthSigner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Throughput of requests that block for {@code blockMillis} (standing in for I/O) and then need a token.
+ *
+ * <ul>
+ *   <li>{@code sync}: each request runs on a bounded pool of platform threads and signs inline.</li>
+ *   <li>{@code asyncPlatform}: the blocking part runs on the same pool, then the token comes from
+ *       {@link EdgeAuthAsync} on a separate platform pool.</li>
+ *   <li>{@code asyncVirtual}: blocking part and {@link EdgeAuthAsync} both run on virtual threads.
+ *       It needs Java 21 or later and fails to set up otherwise.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsyncGenerateTokenBenchmark {
+
+    static final int REQUESTS = 1000;
+
+    @Param({"sync", "asyncPlatform", "asyncVirtual"})
+    public String mode;
+
+    @Param({"1"})
+    public long blockMillis;
+
+    EdgeAuthSigner signer;
+
+    ExecutorService requestExecutor;
+
+    ExecutorService signingExecutor;
+
+    EdgeAuthAsync async;
+
+    @Setup
+    public void setUp() throws EdgeAuthException {
+        this.signer = new EdgeAuthBuilder()
+                .key(GenerateTokenBenchmark.KEY)
+                .startTime(EdgeAuth.NOW)
+                .windowSeconds(300)
+                .buildSigner();
+        int platformThreads = 4 * Runtime.getRuntime().availableProcessors();
+        if ("asyncVirtual".equals(mode)) {
+            this.requestExecutor = EdgeAuthAsync.virtualThreadExecutor();
+            this.signingExecutor = this.requestExecutor;
+        } else {
+            this.requestExecutor = Executors.newFixedThreadPool(platformThreads);
+            this.signingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+        this.async = new EdgeAuthAsync(signer, signingExecutor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.requestExecutor.shutdownNow();
+        this.signingExecutor.shutdownNow();
+    }
+
+    /**
+     * @param i request number
+     * @return the token of request {@code i}
+     */
+    private CompletableFuture<String> request(final int i) {
+        final String acl = "/live/channel" + (i % 16) + "/*";
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(blockMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, requestExecutor);
+        if ("sync".equals(mode)) {
+            return blocked.thenApplyAsync(v -> {
+                try {
+                    return signer.generateACLToken(acl);
+                } catch (EdgeAuthException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, requestExecutor);
+        }
+        return blocked.thenCompose(v -> async.generateACLToken(acl));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public int requests() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            futures[i] = request(i);
+        }
+        CompletableFuture.allOf(futures).join();
+        return futures.length;
+    }
+}
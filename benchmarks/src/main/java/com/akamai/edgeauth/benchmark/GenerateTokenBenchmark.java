@@ -0,0 +1,134 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth.benchmark;
+
+import com.akamai.edgeauth.EdgeAuth;
+import com.akamai.edgeauth.EdgeAuthBuilder;
+import com.akamai.edgeauth.EdgeAuthException;
+import com.akamai.edgeauth.EdgeAuthSigner;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Single-threaded token generation through {@link EdgeAuth}.
+ *
+ * {@code size} is the approximate length in characters of the URL, ACL and payload.
+ * The paths contain spaces and non-ASCII characters, so {@code escapeEarly} has real work to do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@Threads(1)
+@State(Scope.Benchmark)
+public class GenerateTokenBenchmark {
+
+    static final String KEY = "52a152a152a152a152a152a152a1";
+
+    @Param({"sha256", "sha1", "md5"})
+    public String algorithm;
+
+    @Param({"false", "true"})
+    public boolean escapeEarly;
+
+    @Param({"16", "256", "4096"})
+    public int size;
+
+    EdgeAuth edgeAuth;
+
+    EdgeAuthSigner signer;
+
+    char[] tokenChars;
+
+    String url;
+
+    String acl;
+
+    String[] acls;
+
+    @Setup
+    public void setUp() throws EdgeAuthException {
+        this.edgeAuth = new EdgeAuthBuilder()
+                .key(KEY)
+                .algorithm(algorithm)
+                .startTime(EdgeAuth.NOW)
+                .windowSeconds(300)
+                .escapeEarly(escapeEarly)
+                .payload(path("payload ", size))
+                .build();
+        this.signer = edgeAuth.toSigner();
+        this.tokenChars = new char[2 * size + 256];
+        this.url = path("/vod/segment ", size);
+        this.acl = path("/live/channel ", size) + "*";
+        this.acls = new String[] { path("/live/ä ", size / 2) + "*", path("/vod/é ", size / 2) + "*" };
+    }
+
+    /**
+     * @param segment repeated path segment
+     * @param size approximate length of the result
+     * @return a path of roughly {@code size} characters
+     */
+    static String path(String segment, int size) {
+        StringBuilder sb = new StringBuilder(size + segment.length());
+        int i = 0;
+        while (sb.length() < size) {
+            sb.append(segment).append(i++).append('/');
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String urlToken() throws EdgeAuthException {
+        return edgeAuth.generateURLToken(url);
+    }
+
+    @Benchmark
+    public String aclToken() throws EdgeAuthException {
+        return edgeAuth.generateACLToken(acl);
+    }
+
+    @Benchmark
+    public String aclTokenArray() throws EdgeAuthException {
+        return edgeAuth.generateACLToken(acls);
+    }
+
+    @Benchmark
+    public String urlTokenSigner() throws EdgeAuthException {
+        return signer.generateURLToken(url);
+    }
+
+    @Benchmark
+    public int urlTokenToCharArray() throws EdgeAuthException {
+        return signer.generateURLToken(url, tokenChars, 0);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.akamai.edgeauth.benchmark;
+
+import com.akamai.edgeauth.EdgeAuth;
+import com.akamai.edgeauth.EdgeAuthBuilder;
+import com.akamai.edgeauth.EdgeAuthException;
+import com.akamai.edgeauth.EdgeAuthMetrics;
+import com.akamai.edgeauth.EdgeAuthMetricsRecorder;
+import com.akamai.edgeauth.EdgeAuthSigner;
+import com.akamai.edgeauth.EdgeAuthTracer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Cost of {@link EdgeAuthMetricsRecorder} on one signer shared by all cores, against {@link EdgeAuthMetrics#NOOP},
+ * and of an {@link EdgeAuthTracer} sampling one in {@code traceSampleRate} tokens (0 for no tracer).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    @Param({"noop", "recorder"})
+    public String metrics;
+
+    @Param({"false", "true"})
+    public boolean escapeEarly;
+
+    @Param({"0", "1000", "1"})
+    public int traceSampleRate;
+
+    final LongAdder traced = new LongAdder();
+
+    EdgeAuthSigner signer;
+
+    String url;
+
+    @Setup
+    public void setUp() throws EdgeAuthException {
+        this.signer = new EdgeAuthBuilder()
+                .key(GenerateTokenBenchmark.KEY)
+                .startTime(EdgeAuth.NOW)
+                .windowSeconds(300)
+                .escapeEarly(escapeEarly)
+                .metrics("recorder".equals(metrics) ? new EdgeAuthMetricsRecorder() : EdgeAuthMetrics.NOOP)
+                .tracer(traceSampleRate > 0 ? trace -> traced.increment() : null)
+                .traceSampleRate(Math.max(traceSampleRate, 1))
+                .buildSigner();
+        this.url = GenerateTokenBenchmark.path("/vod/segment ", 256);
+    }
+
+    @Benchmark
+    public String urlToken() throws EdgeAuthException {
+        return signer.generateURLToken(url);
+    }
+}
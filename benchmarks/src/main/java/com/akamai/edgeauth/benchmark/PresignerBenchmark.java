@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.akamai.edgeauth.benchmark;
+
+import com.akamai.edgeauth.EdgeAuth;
+import com.akamai.edgeauth.EdgeAuthBuilder;
+import com.akamai.edgeauth.EdgeAuthException;
+import com.akamai.edgeauth.EdgeAuthPresigner;
+import com.akamai.edgeauth.EdgeAuthSigner;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * One hot ACL served to all cores: signed per request, against read from {@link EdgeAuthPresigner}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class PresignerBenchmark {
+
+    static final String ACL = "/live/channel1/*";
+
+    EdgeAuthSigner signer;
+
+    EdgeAuthPresigner presigner;
+
+    @Setup
+    public void setUp() throws EdgeAuthException {
+        this.signer = new EdgeAuthBuilder()
+                .key(GenerateTokenBenchmark.KEY)
+                .startTime(EdgeAuth.NOW)
+                .windowSeconds(300)
+                .buildSigner();
+        this.presigner = new EdgeAuthPresigner(signer, 60);
+        this.presigner.register(ACL);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.presigner.close();
+    }
+
+    @Benchmark
+    public String signed() throws EdgeAuthException {
+        return signer.generateACLToken(ACL);
+    }
+
+    @Benchmark
+    public String presigned() throws EdgeAuthException {
+        return presigner.getACLToken(ACL);
+    }
+}
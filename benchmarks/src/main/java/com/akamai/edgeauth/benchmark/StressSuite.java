@@ -0,0 +1,288 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.akamai.edgeauth.benchmark;
+
+import com.akamai.edgeauth.EdgeAuth;
+import com.akamai.edgeauth.EdgeAuthBuilder;
+import com.akamai.edgeauth.EdgeAuthClock;
+import com.akamai.edgeauth.EdgeAuthException;
+import com.akamai.edgeauth.EdgeAuthSigner;
+import com.akamai.edgeauth.EdgeAuthValidator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Contention and scaling stress run, outside JMH: every scenario is driven from 1, 2, 4, ... up to N threads
+ * for a fixed time, and each result is checked against tokens signed up front on a single thread.
+ * Reports throughput, latency percentiles and the number of incorrect results.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.akamai.edgeauth.benchmark.StressSuite [maxThreads] [seconds]
+ * </pre>
+ *
+ * Scenarios:
+ * <ul>
+ * <li>shared-signer: one {@link EdgeAuthSigner} for all threads.</li>
+ * <li>per-thread-signer: an {@link EdgeAuthSigner} per thread.</li>
+ * <li>shared-edgeauth: one mutable {@link EdgeAuth} while another thread keeps switching its payload with
+ * {@code setPayload}. A token must match one payload or the other, and after the run the last one.</li>
+ * <li>shared-validator: one {@link EdgeAuthValidator} checking valid and tampered tokens.</li>
+ * </ul>
+ */
+public class StressSuite {
+
+    /** fixed issue time, so the expected tokens are known up front. */
+    private static final long NOW = 1700000000L;
+
+    private static final int PATHS = 64;
+
+    /** latencies kept per thread, the most recent ones. */
+    private static final int SAMPLES = 1 << 16;
+
+    private static final String[] SCENARIOS = {
+            "shared-signer", "per-thread-signer", "shared-edgeauth", "shared-validator" };
+
+    /** request paths. */
+    private final String[] paths = new String[PATHS];
+
+    /** tokens of {@code paths} with payload "a". */
+    private final String[] expectedA = new String[PATHS];
+
+    /** tokens of {@code paths} with payload "b". */
+    private final String[] expectedB = new String[PATHS];
+
+    /** {@code expectedA} with the last hmac digit changed. */
+    private final String[] tampered = new String[PATHS];
+
+    private StressSuite() throws EdgeAuthException {
+        EdgeAuthSigner a = builder("a").buildSigner();
+        EdgeAuthSigner b = builder("b").buildSigner();
+        for (int i = 0; i < PATHS; i++) {
+            this.paths[i] = GenerateTokenBenchmark.path("/vod/segment" + i + " ", 128);
+            this.expectedA[i] = a.generateURLToken(this.paths[i]);
+            this.expectedB[i] = b.generateURLToken(this.paths[i]);
+            char last = this.expectedA[i].charAt(this.expectedA[i].length() - 1);
+            this.tampered[i] = this.expectedA[i].substring(0, this.expectedA[i].length() - 1) + (last == '0' ? '1' : '0');
+        }
+    }
+
+    private static EdgeAuthBuilder builder(String payload) {
+        return new EdgeAuthBuilder()
+                .key(GenerateTokenBenchmark.KEY)
+                .startTime(EdgeAuth.NOW)
+                .windowSeconds(300)
+                .escapeEarly(true)
+                .payload(payload)
+                .clock(EdgeAuthClock.fixed(NOW));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5L;
+
+        StressSuite suite = new StressSuite();
+        System.out.printf("%-18s %7s %14s %10s %10s %10s %10s %10s%n",
+                "scenario", "threads", "ops/s", "p50(us)", "p99(us)", "p99.9(us)", "max(us)", "incorrect");
+        long incorrect = 0;
+        for (String scenario : SCENARIOS) {
+            for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+                incorrect += suite.run(scenario, threads, seconds);
+                if (threads == maxThreads) {
+                    break;
+                }
+            }
+        }
+        if (incorrect > 0) {
+            System.out.println(incorrect + " incorrect results");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param scenario scenario name
+     * @param threads number of threads
+     * @param seconds duration of the run
+     * @return number of incorrect results
+     * @throws Exception Exception
+     */
+    private long run(String scenario, int threads, long seconds) throws Exception {
+        EdgeAuthSigner shared = builder("a").buildSigner();
+        EdgeAuth edgeAuth = builder("a").build();
+        EdgeAuthValidator validator = builder("a").buildValidator();
+
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Worker> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Worker worker = new Worker(scenario, t, shared, edgeAuth, validator, start, stop);
+            workers.add(worker);
+            worker.start();
+        }
+        Thread churn = null;
+        if ("shared-edgeauth".equals(scenario)) {
+            churn = new Thread(() -> {
+                for (long i = 0; !stop.get(); i++) {
+                    edgeAuth.setPayload(i % 2 == 0 ? "b" : "a");
+                    Thread.yield();
+                }
+            });
+            churn.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        TimeUnit.SECONDS.sleep(seconds);
+        stop.set(true);
+        long ops = 0;
+        long incorrect = 0;
+        List<long[]> samples = new ArrayList<>();
+        for (Worker worker : workers) {
+            worker.join();
+            ops += worker.ops;
+            incorrect += worker.incorrect;
+            samples.add(Arrays.copyOf(worker.latencies, (int) Math.min(worker.ops, SAMPLES)));
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (churn != null) {
+            churn.join();
+            edgeAuth.setPayload("b");
+            for (int i = 0; i < PATHS; i++) {
+                if (!this.expectedB[i].equals(edgeAuth.generateURLToken(this.paths[i]))) {
+                    incorrect++;
+                }
+            }
+        }
+
+        long[] latencies = merge(samples);
+        System.out.printf(Locale.ROOT, "%-18s %7d %14.0f %10.1f %10.1f %10.1f %10.1f %10d%n",
+                scenario, threads, ops * 1e9 / elapsed,
+                percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                percentile(latencies, 1.0), incorrect);
+        return incorrect;
+    }
+
+    private static long[] merge(List<long[]> samples) {
+        int size = 0;
+        for (long[] s : samples) {
+            size += s.length;
+        }
+        long[] all = new long[size];
+        int pos = 0;
+        for (long[] s : samples) {
+            System.arraycopy(s, 0, all, pos, s.length);
+            pos += s.length;
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    /**
+     * @param sorted latencies in nanoseconds, sorted
+     * @param quantile quantile between 0 and 1
+     * @return latency at {@code quantile} in microseconds
+     */
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+
+    /**
+     * Thread running one scenario until stopped.
+     */
+    private final class Worker extends Thread {
+
+        private final String scenario;
+
+        private final EdgeAuthSigner signer;
+
+        private final EdgeAuth edgeAuth;
+
+        private final EdgeAuthValidator validator;
+
+        private final CountDownLatch start;
+
+        private final AtomicBoolean stop;
+
+        final long[] latencies = new long[SAMPLES];
+
+        long ops;
+
+        long incorrect;
+
+        Worker(String scenario, int index, EdgeAuthSigner shared, EdgeAuth edgeAuth, EdgeAuthValidator validator,
+                CountDownLatch start, AtomicBoolean stop) throws EdgeAuthException {
+            super("stress-" + scenario + "-" + index);
+            this.scenario = scenario;
+            this.signer = "per-thread-signer".equals(scenario) ? builder("a").buildSigner() : shared;
+            this.edgeAuth = edgeAuth;
+            this.validator = validator;
+            this.start = start;
+            this.stop = stop;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.start.await();
+                int i = (int) getId();
+                while (!this.stop.get()) {
+                    int path = i++ & (PATHS - 1);
+                    long begin = System.nanoTime();
+                    boolean correct = call(path);
+                    this.latencies[(int) (this.ops++ & (SAMPLES - 1))] = System.nanoTime() - begin;
+                    if (!correct) {
+                        this.incorrect++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (EdgeAuthException | RuntimeException e) {
+                this.incorrect++;
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * @param path index of the path
+         * @return whether the result is correct
+         * @throws EdgeAuthException EdgeAuthException
+         */
+        private boolean call(int path) throws EdgeAuthException {
+            switch (this.scenario) {
+                case "shared-edgeauth":
+                    String token = this.edgeAuth.generateURLToken(paths[path]);
+                    return token.equals(expectedA[path]) || token.equals(expectedB[path]);
+                case "shared-validator":
+                    return this.validator.validateURLToken(expectedA[path], paths[path]) == EdgeAuthValidator.Result.VALID
+                            && this.validator.validateURLToken(tampered[path], paths[path])
+                                    == EdgeAuthValidator.Result.INVALID_HMAC;
+                default:
+                    return this.signer.generateURLToken(paths[path]).equals(expectedA[path]);
+            }
+        }
+    }
+}
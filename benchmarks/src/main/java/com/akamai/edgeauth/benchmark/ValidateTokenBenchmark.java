@@ -0,0 +1,103 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth.benchmark;
+
+import com.akamai.edgeauth.EdgeAuth;
+import com.akamai.edgeauth.EdgeAuthBuilder;
+import com.akamai.edgeauth.EdgeAuthException;
+import com.akamai.edgeauth.EdgeAuthValidator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Token validation through {@link EdgeAuthValidator}, from a {@link String} and from a direct {@link ByteBuffer}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ValidateTokenBenchmark {
+
+    @Param({"sha256", "sha1", "md5"})
+    public String algorithm;
+
+    @Param({"false", "true"})
+    public boolean escapeEarly;
+
+    @Param({"16", "256", "4096"})
+    public int size;
+
+    EdgeAuthValidator validator;
+
+    String url;
+
+    String urlToken;
+
+    String aclToken;
+
+    ByteBuffer aclTokenBytes;
+
+    @Setup
+    public void setUp() throws EdgeAuthException {
+        EdgeAuthBuilder builder = new EdgeAuthBuilder()
+                .key(GenerateTokenBenchmark.KEY)
+                .algorithm(algorithm)
+                .startTime(EdgeAuth.NOW)
+                .windowSeconds(3600)
+                .escapeEarly(escapeEarly);
+        this.validator = builder.buildValidator();
+        this.url = GenerateTokenBenchmark.path("/vod/segment ", size);
+        this.urlToken = builder.buildSigner().generateURLToken(url);
+        this.aclToken = builder.buildSigner().generateACLToken(GenerateTokenBenchmark.path("/live/channel ", size) + "*");
+        byte[] bytes = aclToken.getBytes(StandardCharsets.US_ASCII);
+        this.aclTokenBytes = ByteBuffer.allocateDirect(bytes.length);
+        this.aclTokenBytes.put(bytes).flip();
+    }
+
+    @Benchmark
+    public EdgeAuthValidator.Result urlToken() {
+        return validator.validateURLToken(urlToken, url);
+    }
+
+    @Benchmark
+    public EdgeAuthValidator.Result aclToken() {
+        return validator.validateACLToken(aclToken);
+    }
+
+    @Benchmark
+    public EdgeAuthValidator.Result aclTokenByteBuffer() {
+        return validator.validateACLToken(aclTokenBytes);
+    }
+}
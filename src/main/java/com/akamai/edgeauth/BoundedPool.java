@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Lock-free pool of idle instances lent to virtual threads. It keeps at most {@code capacity} of them:
+ * instances given back to a full pool are dropped, so a burst of virtual threads does not pin its peak
+ * number of instances for the life of the process.
+ *
+ * @param <T> pooled type
+ */
+final class BoundedPool<T> {
+
+    /** idle instances kept when none is given: two per processor, enough for the carriers of virtual threads. */
+    static final int DEFAULT_CAPACITY = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+
+    /** upper bound of the number of instances in {@code idle}: raised before an offer and lowered after a poll. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final int capacity;
+
+    /**
+     * @param capacity most idle instances kept
+     */
+    BoundedPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return an idle instance, or null if there is none
+     */
+    T poll() {
+        T instance = this.idle.poll();
+        if (instance != null) {
+            this.size.decrementAndGet();
+        }
+        return instance;
+    }
+
+    /**
+     * @param instance idle instance
+     * @return false if the pool is full and {@code instance} was dropped
+     */
+    boolean offer(T instance) {
+        if (this.size.incrementAndGet() > this.capacity) {
+            this.size.decrementAndGet();
+            return false;
+        }
+        this.idle.offer(instance);
+        return true;
+    }
+
+    /**
+     * @return number of idle instances, at most {@code capacity}
+     */
+    int size() {
+        return this.size.get();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * {@link EdgeAuthClock} refreshed once per second in the background. See {@link EdgeAuthClock#coarse()}.
+ */
+final class CoarseClock implements EdgeAuthClock, Runnable {
+
+    /** created on first use of {@link EdgeAuthClock#coarse()}. */
+    static final CoarseClock INSTANCE = new CoarseClock();
+
+    /** last value read from the system clock. */
+    private volatile long epochSeconds = SYSTEM.epochSeconds();
+
+    private CoarseClock() {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "edgeauth-coarse-clock");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // a new second starts at most this far after it is due
+        long delay = 1000L - System.currentTimeMillis() % 1000L;
+        timer.scheduleAtFixedRate(this, delay, 1000L, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        this.epochSeconds = SYSTEM.epochSeconds();
+    }
+
+    @Override
+    public long epochSeconds() {
+        return this.epochSeconds;
+    }
+}
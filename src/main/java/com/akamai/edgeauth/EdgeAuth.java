@@ -19,23 +19,13 @@
 
 package com.akamai.edgeauth;
 
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.net.URLEncoder;
-import java.security.NoSuchAlgorithmException;
-import java.security.InvalidKeyException;
-import java.util.Calendar;
-import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import jakarta.xml.bind.DatatypeConverter;
+import java.util.List;
 
 
 /**
  * This is for returning authorization token string. You can build an instance 
  * using {@link EdgeAuthBuilder} and this can throw {@link EdgeAuthException}.
+ * To share one instance across threads, prefer {@link EdgeAuthSigner}.
  */
 public class EdgeAuth {
     /** Current time when using startTime */
@@ -86,6 +76,15 @@ public class EdgeAuth {
     /** print all parameters. */
     private boolean verbose;
 
+    /** source of the current time. */
+    private EdgeAuthClock clock = EdgeAuthClock.SYSTEM;
+
+    /** listener of issued tokens, failures and stage latencies. */
+    private EdgeAuthMetrics metrics = EdgeAuthMetrics.NOOP;
+
+    /** parameters compiled by {@code toSigner}, reset by every setter. Both hold the monitor of this instance. */
+    private volatile EdgeAuthSigner signer;
+
     /**
      * @param tokenType Not used
      * @param tokenName Name for the new token
@@ -160,154 +159,38 @@ public class EdgeAuth {
     }
 
     /**
-     * Causes strings to be 'url' encoded before being used.
+     * Returns an immutable snapshot of the current parameters. It is rebuilt lazily
+     * after any setter has been called, so the key is decoded only once per change.
      *
-     * @param text string
-     * @return escaped string up to {@value escapeEarly}.
+     * @return {@link EdgeAuthSigner} for the current parameters
      * @throws EdgeAuthException EdgeAuthException
      */
-    private String escapeEarly(final String text) throws EdgeAuthException {
-        if (this.escapeEarly) {
-            try {
-                StringBuilder newText = new StringBuilder(URLEncoder.encode(text, "UTF-8"));
-                Pattern pattern = Pattern.compile("%..");
-                Matcher matcher = pattern.matcher(newText);
-                String tmpText;
-                while (matcher.find()) {
-                    tmpText = newText.substring(matcher.start(), matcher.end()).toLowerCase();
-                    newText.replace(matcher.start(), matcher.end(), tmpText);
-                }
-                return newText.toString();
-            } catch (UnsupportedEncodingException e) {
-                return text;
-            } catch (Exception e) {
-                throw new EdgeAuthException(e.getMessage());
-            }
-        } else {
-            return text;
-        }
+    public EdgeAuthSigner toSigner() throws EdgeAuthException {
+        EdgeAuthSigner signer = this.signer;
+        return signer != null ? signer : buildSigner();
     }
 
     /**
-     * Generate authorization token called by
-     * {@code generateURLToken} and {@code generateACLToken}
+     * Builds the snapshot under the lock setters take, so a snapshot of parameters that a setter
+     * has replaced in the meantime is never published.
      *
-     * @param path acl or acl path
-     * @param isUrl is Url?
-     * @return authorization token string
+     * @return {@link EdgeAuthSigner} for the current parameters
      * @throws EdgeAuthException EdgeAuthException
      */
-    private String generateToken(String path, boolean isUrl) throws EdgeAuthException {
-        Long startTime = this.startTime;
-        Long endTime = this.endTime;
-
-        if (EdgeAuth.NOW.equals(startTime)) {
-            startTime = Calendar.getInstance(TimeZone.getTimeZone("UTC")).getTimeInMillis() / 1000L;
-        } else if(startTime != null && startTime < 0) {
-            throw new EdgeAuthException("startTime must be ( > 0 )");
-        }
-
-        if (endTime == null) {
-            if (this.windowSeconds != null && this.windowSeconds > 0) {
-                if (startTime == null) {
-                    endTime = (Calendar.getInstance(TimeZone.getTimeZone("UTC")).getTimeInMillis() / 1000L) +
-                            this.windowSeconds;
-                } else {
-                    endTime = startTime + this.windowSeconds;
-                }
-            } else {
-                throw new EdgeAuthException("You must provide an expiration time or a duration window ( > 0 )");
-            }
-        } else if(endTime <= 0) {
-            throw new EdgeAuthException("endTime must be ( > 0 )");
-        }
-
-        if (startTime != null && (endTime <= startTime)) {
-            throw new EdgeAuthException("Token will have already expired.");
-        }
-
-        if (this.verbose) {
-            System.out.println("Akamai Token Generation Parameters");
-            if (isUrl) {
-                System.out.println("    URL             : " + path);
-            } else {
-                System.out.println("    ACL             : " + path);
-            }
-            System.out.println("    Token Type      : " + this.tokenType);
-            System.out.println("    Token Name      : " + this.tokenName);
-            System.out.println("    Key/Secret      : " + this.key);
-            System.out.println("    Algo            : " + this.algorithm);
-            System.out.println("    Salt            : " + this.salt);
-            System.out.println("    IP              : " + this.ip);
-            System.out.println("    Payload         : " + this.payload);
-            System.out.println("    Session ID      : " + this.sessionId);
-            System.out.println("    Start Time      : " + this.startTime);
-            System.out.println("    Window(seconds) : " + this.windowSeconds);
-            System.out.println("    End Time        : " + this.endTime);
-            System.out.println("    Field Delimiter : " + this.fieldDelimiter);
-            System.out.println("    ACL Delimiter   : " + this.aclDelimiter);
-            System.out.println("    Escape Early    : " + this.escapeEarly);
-        }
-
-        StringBuilder newToken = new StringBuilder();
-        if (this.ip != null) {
-            newToken.append("ip=");
-            newToken.append(escapeEarly(this.ip));
-            newToken.append(this.fieldDelimiter);
-        }
-        if (this.startTime != null) {
-            newToken.append("st=");
-            newToken.append(startTime.toString());
-            newToken.append(this.fieldDelimiter);
-        }
-        newToken.append("exp=");
-        newToken.append(endTime.toString());
-        newToken.append(this.fieldDelimiter);
-
-        if (!isUrl) {
-            newToken.append("acl=");
-            newToken.append(escapeEarly(path));
-            newToken.append(this.fieldDelimiter);
-        }
-
-        if (this.sessionId != null) {
-            newToken.append("id=");
-            newToken.append(escapeEarly(this.sessionId));
-            newToken.append(this.fieldDelimiter);
-        }
-
-        if (this.payload != null) {
-            newToken.append("data=");
-            newToken.append(escapeEarly(this.payload));
-            newToken.append(this.fieldDelimiter);
-        }
-
-        StringBuilder hashSource = new StringBuilder(newToken);
-        if (isUrl) {
-            hashSource.append("url=");
-            hashSource.append(escapeEarly(path));
-            hashSource.append(this.fieldDelimiter);
-        }
-
-        if (this.salt != null) {
-            hashSource.append("salt=");
-            hashSource.append(this.salt);
-            hashSource.append(this.fieldDelimiter);
-        }
-        hashSource.deleteCharAt(hashSource.length() - 1);
-
-        try {
-            Mac hmac = Mac.getInstance(this.algorithm);
-            byte[] keyBytes = DatatypeConverter.parseHexBinary(this.key);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, this.algorithm);
-            hmac.init(secretKey);
-
-            byte[] hmacBytes = hmac.doFinal(hashSource.toString().getBytes());
-            return newToken + "hmac=" +
-                    String.format("%0" + (2*hmac.getMacLength()) +  "x", new BigInteger(1, hmacBytes));
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            throw new EdgeAuthException(e.toString());
+    private synchronized EdgeAuthSigner buildSigner() throws EdgeAuthException {
+        EdgeAuthSigner signer = this.signer;
+        if (signer == null) {
+            signer = new EdgeAuthSigner(
+                    tokenType, tokenName,
+                    key, algorithm, null, salt,
+                    ip, payload, sessionId,
+                    startTime, endTime, windowSeconds,
+                    fieldDelimiter, aclDelimiter, escapeEarly, verbose,
+                    clock, metrics, null, 0, null, null, null, 1
+            );
+            this.signer = signer;
         }
+        return signer;
     }
 
     /**
@@ -321,7 +204,7 @@ public class EdgeAuth {
         if (url == null || url.trim().isEmpty()) {
             throw new EdgeAuthException("You must provide a URL.");
         }
-        return generateToken(url, true);
+        return toSigner().generateURLToken(url);
     }
 
     /**
@@ -335,7 +218,7 @@ public class EdgeAuth {
         if (acl == null || acl.trim().isEmpty()) {
             throw new EdgeAuthException("You must provide an ACL.");
         }
-        return generateToken(acl, false);
+        return toSigner().generateACLToken(acl);
     }
 
     /**
@@ -349,129 +232,209 @@ public class EdgeAuth {
         if (acl == null || acl.length == 0) {
             throw new EdgeAuthException("You must provide an ACL.");
         }
+        return toSigner().generateACLToken(acl);
+    }
 
-        String newAcl = join(this.getAclDelimiter(), acl);
-        return generateToken(newAcl, false);
+    /**
+     * Call {@link EdgeAuthSigner#signUrl(String)}
+     *
+     * @param url absolute URL or path, with an optional query string and fragment
+     * @return {@code url} carrying the token in its query string
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public String signUrl(String url) throws EdgeAuthException {
+        return toSigner().signUrl(url);
+    }
+
+    /**
+     * Call {@link EdgeAuthSigner#signedCookie(String)}
+     *
+     * @param acl access control list (String)
+     * @return {@code tokenName=token} for a Cookie header
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public String signedCookie(String acl) throws EdgeAuthException {
+        return toSigner().signedCookie(acl);
+    }
+
+    /**
+     * Call {@link EdgeAuthSigner#signedCookie(String, String, String, boolean)}
+     *
+     * @param acl access control list (String)
+     * @param cookiePath Path attribute, or null
+     * @param domain Domain attribute, or null
+     * @param secure whether to add the Secure attribute
+     * @return Set-Cookie header value
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public String signedCookie(String acl, String cookiePath, String domain, boolean secure) throws EdgeAuthException {
+        return toSigner().signedCookie(acl, cookiePath, domain, secure);
+    }
+
+    /**
+     * Call {@link EdgeAuthSigner#generateURLTokens(List)}
+     *
+     * @param urls single paths
+     * @return authorization token strings in the order of {@code urls}
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public List<String> generateURLTokens(List<String> urls) throws EdgeAuthException {
+        return toSigner().generateURLTokens(urls);
+    }
+
+    /**
+     * Call {@link EdgeAuthSigner#generateACLTokens(List)}
+     *
+     * @param acls access control lists (String)
+     * @return authorization token strings in the order of {@code acls}
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public List<String> generateACLTokens(List<String> acls) throws EdgeAuthException {
+        return toSigner().generateACLTokens(acls);
     }
 
     /**
      * @param tokenType tokenType
      */
-    public void setTokenType(String tokenType) {
+    public synchronized void setTokenType(String tokenType) {
         this.tokenType = tokenType;
+        this.signer = null;
     }
 
     /**
      * @param tokenName tokenName
      * @throws EdgeAuthException EdgeAuthException
      */
-    public void setTokenName(String tokenName) throws EdgeAuthException {
+    public synchronized void setTokenName(String tokenName) throws EdgeAuthException {
         if (tokenName == null || tokenName.trim().trim().isEmpty()) {
             throw new EdgeAuthException("You must provide a token name.");
         }
         this.tokenName = tokenName;
+        this.signer = null;
     }
 
     /**
      * @param key key
      * @throws EdgeAuthException EdgeAuthException
      */
-    public void setKey(String key) throws EdgeAuthException {
+    public synchronized void setKey(String key) throws EdgeAuthException {
         if (key == null || key.trim().isEmpty()) {
             throw new EdgeAuthException("You must provide a secret in order to generate a new token.");
         }
         this.key = key;
+        this.signer = null;
     }
 
     /**
      * @param algorithm algorithm
      * @throws EdgeAuthException EdgeAuthException
      */
-    public void setAlgorithm(String algorithm) throws EdgeAuthException {
-        if (algorithm.equalsIgnoreCase("sha256"))
-            this.algorithm = "HmacSHA256";
-        else if (algorithm.equalsIgnoreCase("sha1"))
-            this.algorithm = "HmacSHA1";
-        else if (algorithm.equalsIgnoreCase("md5"))
-            this.algorithm = "HmacMD5";
-        else
-            throw new EdgeAuthException("Unknown Algorithm");
+    public synchronized void setAlgorithm(String algorithm) throws EdgeAuthException {
+        this.algorithm = HmacKey.macAlgorithm(algorithm);
+        this.signer = null;
     }
 
     /**
      * @param salt salt
      */
-    public void setSalt(String salt) {
+    public synchronized void setSalt(String salt) {
         this.salt = salt;
+        this.signer = null;
     }
 
     /**
      * @param ip ip
      */
-    public void setIp(String ip) {
+    public synchronized void setIp(String ip) {
         this.ip = ip;
+        this.signer = null;
     }
 
     /**
      * @param payload payload
      */
-    public void setPayload(String payload) {
+    public synchronized void setPayload(String payload) {
         this.payload = payload;
+        this.signer = null;
     }
 
     /**
      * @param sessionId sessionId
      */
-    public void setSessionId(String sessionId) {
+    public synchronized void setSessionId(String sessionId) {
         this.sessionId = sessionId;
+        this.signer = null;
     }
 
     /**
      * @param startTime startTime
      */
-    public void setStartTime(Long startTime) {
+    public synchronized void setStartTime(Long startTime) {
         this.startTime = startTime;
+        this.signer = null;
     }
 
     /**
      * @param endTime endTime
      */
-    public void setEndTime(Long endTime) {
+    public synchronized void setEndTime(Long endTime) {
         this.endTime = endTime;
+        this.signer = null;
     }
 
     /**
      * @param windowSeconds windowSeconds
      */
-    public void setWindowSeconds(Long windowSeconds) {
+    public synchronized void setWindowSeconds(Long windowSeconds) {
         this.windowSeconds = windowSeconds;
+        this.signer = null;
     }
 
     /**
      * @param aclDelimiter aclDelimiter
      */
-    public void setAclDelimiter(char aclDelimiter) {
+    public synchronized void setAclDelimiter(char aclDelimiter) {
         this.aclDelimiter = aclDelimiter;
+        this.signer = null;
     }
 
     /**
      * @param fieldDelimiter fieldDelimiter
      */
-    public void setFieldDelimiter(char fieldDelimiter) {
+    public synchronized void setFieldDelimiter(char fieldDelimiter) {
         this.fieldDelimiter = fieldDelimiter;
+        this.signer = null;
     }
 
     /**
      * @param escapeEarly escapeEarly
      */
-    public void setEscapeEarly(boolean escapeEarly) {
+    public synchronized void setEscapeEarly(boolean escapeEarly) {
         this.escapeEarly = escapeEarly;
+        this.signer = null;
     }
     /**
      * @param verbose verbose
      */
-    public void setVerbose(boolean verbose) {
+    public synchronized void setVerbose(boolean verbose) {
         this.verbose = verbose;
+        this.signer = null;
+    }
+
+    /**
+     * @param clock clock
+     */
+    public synchronized void setClock(EdgeAuthClock clock) {
+        this.clock = clock != null ? clock : EdgeAuthClock.SYSTEM;
+        this.signer = null;
+    }
+
+    /**
+     * @param metrics metrics
+     */
+    public synchronized void setMetrics(EdgeAuthMetrics metrics) {
+        this.metrics = metrics != null ? metrics : EdgeAuthMetrics.NOOP;
+        this.signer = null;
     }
 
     /**
@@ -577,4 +540,18 @@ public class EdgeAuth {
     public boolean isVerbose() {
         return this.verbose;
     }
+
+    /**
+     * @return clock
+     */
+    public EdgeAuthClock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * @return metrics
+     */
+    public EdgeAuthMetrics getMetrics() {
+        return this.metrics;
+    }
 }
\ No newline at end of file
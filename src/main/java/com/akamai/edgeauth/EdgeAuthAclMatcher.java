@@ -0,0 +1,304 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Checks whether a request path is covered by an acl. The acl holds one or more patterns joined by the
+ * acl delimiter, where {@code *} matches any run of characters, '/' included, and {@code ?} exactly one.
+ *
+ * All patterns of an acl are compiled together into a prefix trie, so patterns sharing a prefix such as
+ * {@code /live/} share its nodes. Matching runs the trie as an automaton whose states are sets of trie
+ * nodes; each state and its transitions are built the first time a path reaches them and reused
+ * afterwards, so a match reads each character of the path once and never backtracks. Compiled acls are
+ * cached by acl string and are safe to share between threads.
+ */
+public final class EdgeAuthAclMatcher {
+
+    /** maximum number of compiled acls kept by {@link #compile(String, char)}. */
+    private static final int CACHE_SIZE = 1024;
+
+    /** maximum number of automaton states kept per acl; later states are computed on every match. */
+    private static final int MAX_STATES = 1024;
+
+    private static final ConcurrentMap<String, EdgeAuthAclMatcher> compiled = new ConcurrentHashMap<>();
+
+    private final String acl;
+
+    private final char delimiter;
+
+    /** trie nodes by id. */
+    private final Node[] nodes;
+
+    /** automaton states by their set of trie nodes. */
+    private final ConcurrentMap<BitSet, State> states = new ConcurrentHashMap<>();
+
+    /** state before the first character. */
+    private final State start;
+
+    /**
+     * @param acl patterns joined by {@code delimiter}
+     * @param delimiter character used to delimit acl
+     */
+    private EdgeAuthAclMatcher(String acl, char delimiter) {
+        this.acl = acl;
+        this.delimiter = delimiter;
+
+        List<Node> trie = new ArrayList<>();
+        Node root = new Node(0, false);
+        trie.add(root);
+        int start = 0;
+        while (start <= acl.length()) {
+            int end = acl.indexOf(delimiter, start);
+            if (end < 0) {
+                end = acl.length();
+            }
+            Node node = root;
+            for (int i = start; i < end; i++) {
+                char c = acl.charAt(i);
+                if (c == '*') {
+                    if (!node.loop) {
+                        if (node.star == null) {
+                            node.star = new Node(trie.size(), true);
+                            trie.add(node.star);
+                        }
+                        node = node.star;
+                    }
+                } else if (c == '?') {
+                    if (node.any == null) {
+                        node.any = new Node(trie.size(), false);
+                        trie.add(node.any);
+                    }
+                    node = node.any;
+                } else {
+                    Node next = node.literals.get(c);
+                    if (next == null) {
+                        next = new Node(trie.size(), false);
+                        trie.add(next);
+                        node.literals.put(c, next);
+                    }
+                    node = next;
+                }
+            }
+            node.accept = true;
+            start = end + 1;
+        }
+        this.nodes = trie.toArray(new Node[0]);
+
+        BitSet initial = new BitSet(this.nodes.length);
+        close(initial, root);
+        this.start = state(initial);
+    }
+
+    /**
+     * Returns the compiled form of {@code acl}, compiling it on first use.
+     *
+     * @param acl patterns joined by {@code delimiter}, e.g. from {@link EdgeAuth#join(char, String[])}
+     * @param delimiter character used to delimit acl
+     * @return EdgeAuthAclMatcher
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public static EdgeAuthAclMatcher compile(String acl, char delimiter) throws EdgeAuthException {
+        if (acl == null) {
+            throw new EdgeAuthException("You must provide acl.");
+        }
+        return of(acl, delimiter);
+    }
+
+    /**
+     * @param acl patterns joined by {@code delimiter}, not null
+     * @param delimiter character used to delimit acl
+     * @return the cached or newly compiled matcher
+     */
+    static EdgeAuthAclMatcher of(String acl, char delimiter) {
+        String key = delimiter + acl;
+        EdgeAuthAclMatcher matcher = compiled.get(key);
+        if (matcher == null) {
+            if (compiled.size() >= CACHE_SIZE) {
+                compiled.clear();
+            }
+            matcher = new EdgeAuthAclMatcher(acl, delimiter);
+            EdgeAuthAclMatcher raced = compiled.putIfAbsent(key, matcher);
+            if (raced != null) {
+                matcher = raced;
+            }
+        }
+        return matcher;
+    }
+
+    /**
+     * @param path request path
+     * @return true if any pattern of the acl matches the whole of {@code path}
+     */
+    public boolean matches(CharSequence path) {
+        State state = this.start;
+        for (int i = 0, length = path.length(); i < length && state.alive; i++) {
+            state = next(state, path.charAt(i));
+        }
+        return state.accept;
+    }
+
+    /**
+     * @return the acl this matcher was compiled from
+     */
+    public String getAcl() {
+        return this.acl;
+    }
+
+    /**
+     * @return character used to delimit acl
+     */
+    public char getDelimiter() {
+        return this.delimiter;
+    }
+
+    /**
+     * @param state current state
+     * @param c next path character
+     * @return state after {@code c}
+     */
+    private State next(State state, char c) {
+        State next = state.get(c);
+        if (next != null) {
+            return next;
+        }
+        BitSet targets = new BitSet(this.nodes.length);
+        for (int id = state.nodes.nextSetBit(0); id >= 0; id = state.nodes.nextSetBit(id + 1)) {
+            Node node = this.nodes[id];
+            if (node.loop) {
+                close(targets, node);
+            }
+            if (node.any != null) {
+                close(targets, node.any);
+            }
+            Node literal = node.literals.get(c);
+            if (literal != null) {
+                close(targets, literal);
+            }
+        }
+        next = state(targets);
+        if (this.states.size() < MAX_STATES) {
+            state.put(c, next);
+        }
+        return next;
+    }
+
+    /**
+     * @param nodes set of trie nodes
+     * @param node node to add, together with the {@code *} node it leads to
+     */
+    private static void close(BitSet nodes, Node node) {
+        nodes.set(node.id);
+        if (node.star != null) {
+            nodes.set(node.star.id);
+        }
+    }
+
+    /**
+     * @param nodes set of trie nodes
+     * @return the state for {@code nodes}, shared if it is already known
+     */
+    private State state(BitSet nodes) {
+        State state = this.states.get(nodes);
+        if (state != null) {
+            return state;
+        }
+        boolean accept = false;
+        for (int id = nodes.nextSetBit(0); id >= 0 && !accept; id = nodes.nextSetBit(id + 1)) {
+            accept = this.nodes[id].accept;
+        }
+        state = new State(nodes, accept);
+        if (this.states.size() >= MAX_STATES) {
+            return state;
+        }
+        State raced = this.states.putIfAbsent(nodes, state);
+        return raced != null ? raced : state;
+    }
+
+    /**
+     * Trie node: a prefix of one or more patterns. Immutable once the matcher is built.
+     */
+    private static final class Node {
+
+        final int id;
+
+        /** whether the node was reached by {@code *} and so consumes any character while staying. */
+        final boolean loop;
+
+        final Map<Character, Node> literals = new HashMap<>();
+
+        /** node reached by {@code ?}, or null. */
+        Node any;
+
+        /** node reached by {@code *}, or null. */
+        Node star;
+
+        /** whether a pattern ends here. */
+        boolean accept;
+
+        Node(int id, boolean loop) {
+            this.id = id;
+            this.loop = loop;
+        }
+    }
+
+    /**
+     * Automaton state: the set of trie nodes a path prefix can be at.
+     */
+    private static final class State {
+
+        final BitSet nodes;
+
+        final boolean accept;
+
+        /** whether any path can still match from here. */
+        final boolean alive;
+
+        /** transitions on ASCII characters, filled in as paths reach them. */
+        final State[] ascii = new State[128];
+
+        /** transitions on other characters. */
+        final ConcurrentMap<Character, State> others = new ConcurrentHashMap<>();
+
+        State(BitSet nodes, boolean accept) {
+            this.nodes = nodes;
+            this.accept = accept;
+            this.alive = !nodes.isEmpty();
+        }
+
+        State get(char c) {
+            return c < 128 ? this.ascii[c] : this.others.get(c);
+        }
+
+        void put(char c, State next) {
+            if (c < 128) {
+                this.ascii[c] = next;
+            } else {
+                this.others.put(c, next);
+            }
+        }
+    }
+}
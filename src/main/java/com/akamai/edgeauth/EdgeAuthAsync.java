@@ -0,0 +1,181 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+
+/**
+ * Issues tokens of an {@link EdgeAuthSigner} on an {@link Executor}, so event-loop threads can hand
+ * the work off instead of signing inline. Failures complete the future exceptionally with
+ * {@link EdgeAuthException}.
+ *
+ * <pre>
+ * EdgeAuthAsync async = new EdgeAuthAsync(signer, EdgeAuthAsync.virtualThreadExecutor());
+ * async.generateACLToken("/live/*").thenAccept(token -&gt; ...);
+ * </pre>
+ */
+public final class EdgeAuthAsync {
+
+    /** signer doing the work. */
+    private final EdgeAuthSigner signer;
+
+    /** executor running the signer. */
+    private final Executor executor;
+
+    /**
+     * @param signer signer doing the work
+     * @param executor executor running the signer
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthAsync(EdgeAuthSigner signer, Executor executor) throws EdgeAuthException {
+        if (signer == null || executor == null) {
+            throw new EdgeAuthException("You must provide a signer and an executor.");
+        }
+        this.signer = signer;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per task. Virtual threads exist from
+     * Java 21 on; the library itself targets Java 8, so it is looked up reflectively.
+     *
+     * @return a new virtual-thread-per-task executor
+     * @throws EdgeAuthException if the running JVM has no virtual threads
+     */
+    public static ExecutorService virtualThreadExecutor() throws EdgeAuthException {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new EdgeAuthException("Virtual threads require Java 21 or later.");
+        } catch (InvocationTargetException e) {
+            throw new EdgeAuthException(e.getCause().toString());
+        }
+    }
+
+    /**
+     * @param url a single path
+     * @return future authorization token string
+     */
+    public CompletableFuture<String> generateURLToken(final String url) {
+        return submit(new Task<String>() {
+            @Override
+            public String call() throws EdgeAuthException {
+                return signer.generateURLToken(url);
+            }
+        });
+    }
+
+    /**
+     * @param acl access control list (String)
+     * @return future authorization token string
+     */
+    public CompletableFuture<String> generateACLToken(final String acl) {
+        return submit(new Task<String>() {
+            @Override
+            public String call() throws EdgeAuthException {
+                return signer.generateACLToken(acl);
+            }
+        });
+    }
+
+    /**
+     * @param acl access control list (String[])
+     * @return future authorization token string
+     */
+    public CompletableFuture<String> generateACLToken(final String[] acl) {
+        return submit(new Task<String>() {
+            @Override
+            public String call() throws EdgeAuthException {
+                return signer.generateACLToken(acl);
+            }
+        });
+    }
+
+    /**
+     * @param urls single paths
+     * @return future authorization token strings in the order of {@code urls}
+     */
+    public CompletableFuture<List<String>> generateURLTokens(final List<String> urls) {
+        return submit(new Task<List<String>>() {
+            @Override
+            public List<String> call() throws EdgeAuthException {
+                return signer.generateURLTokens(urls);
+            }
+        });
+    }
+
+    /**
+     * @param acls access control lists (String)
+     * @return future authorization token strings in the order of {@code acls}
+     */
+    public CompletableFuture<List<String>> generateACLTokens(final List<String> acls) {
+        return submit(new Task<List<String>>() {
+            @Override
+            public List<String> call() throws EdgeAuthException {
+                return signer.generateACLTokens(acls);
+            }
+        });
+    }
+
+    /**
+     * @return signer
+     */
+    public EdgeAuthSigner getSigner() {
+        return this.signer;
+    }
+
+    /**
+     * @param task work to run on {@code executor}
+     * @param <T> result type
+     * @return future completed by {@code task}
+     */
+    private <T> CompletableFuture<T> submit(final Task<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(task.call());
+                    } catch (EdgeAuthException | RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Signing work that may throw {@link EdgeAuthException}.
+     *
+     * @param <T> result type
+     */
+    private interface Task<T> {
+        T call() throws EdgeAuthException;
+    }
+}
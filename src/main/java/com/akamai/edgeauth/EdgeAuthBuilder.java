@@ -19,6 +19,8 @@
 
 package com.akamai.edgeauth;
 
+import java.security.Provider;
+
 
 /**
  * To build an {@link EdgeAuth} instance.
@@ -37,6 +39,18 @@ public class EdgeAuthBuilder {
     /** to use to generate the token. (sha1, sha256, or md5) */
     private String algorithm = "sha256";
 
+    /** keys to sign and verify with instead of {@code key} and {@code algorithm}. */
+    private EdgeAuthKeyRing keyRing = null;
+
+    /** provider computing the HMACs. (Default provider when null) */
+    private Provider provider = null;
+
+    /** name of the provider computing the HMACs, looked up when building. */
+    private String providerName = null;
+
+    /** picks the fastest installed provider when no provider is given. */
+    private boolean calibrateProvider = false;
+
     /** additional data validated by the token but NOT included in the token body. It will be deprecated. */
     private String salt = null;
 
@@ -70,6 +84,33 @@ public class EdgeAuthBuilder {
     /** print all parameters. */
     private boolean verbose = false;
 
+    /** source of the current time. */
+    private EdgeAuthClock clock = EdgeAuthClock.SYSTEM;
+
+    /** listener of the generation and validation hot paths. */
+    private EdgeAuthMetrics metrics = EdgeAuthMetrics.NOOP;
+
+    /** receiver of sampled tokens. (Off when null) */
+    private EdgeAuthTracer tracer = null;
+
+    /** one in how many tokens is traced. */
+    private int traceSampleRate = 1;
+
+    /** width of the start time bucket signed tokens are reused within. (Off when null) */
+    private Long cacheBucketSeconds = null;
+
+    /** maximum number of cached tokens. */
+    private int cacheMaxSize = 10000;
+
+    /** token cache shared between processes, behind the signer cache. */
+    private EdgeAuthSharedCache sharedCache = null;
+
+    /** maximum number of verified tokens a validator remembers. (Off when 0) */
+    private int verificationCacheSize = 0;
+
+    /** seen single-use tokens a validator rejects. */
+    private EdgeAuthReplayGuard replayGuard = null;
+
     /**
      * @param tokenType tokenType
      * @return EdgeAuthBuilder
@@ -106,6 +147,57 @@ public class EdgeAuthBuilder {
         return this;
     }
 
+    /**
+     * Signs with the primary key of {@code keyRing} and accepts all of its keys when verifying.
+     * It takes the place of {@code key} and {@code algorithm} for {@link #buildSigner()} and
+     * {@link #buildValidator()}. {@link #build()} still needs {@code key}.
+     *
+     * @param keyRing keyRing
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder keyRing(EdgeAuthKeyRing keyRing) {
+        this.keyRing = keyRing;
+        return this;
+    }
+
+    /**
+     * Computes the HMACs of {@link #buildSigner()} and {@link #buildValidator()} with {@code provider}
+     * instead of the first installed one. A {@code keyRing} uses the provider it was made with.
+     *
+     * @param provider provider
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder provider(Provider provider) {
+        this.provider = provider;
+        this.providerName = null;
+        return this;
+    }
+
+    /**
+     * Same as {@link #provider(Provider)} with the installed provider named {@code providerName}, e.g. SunJCE.
+     *
+     * @param providerName providerName
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder provider(String providerName) {
+        this.provider = null;
+        this.providerName = providerName;
+        return this;
+    }
+
+    /**
+     * When no provider is given, times every installed provider of the algorithm once per process
+     * and computes the HMACs with the fastest one that gives the same digests as the default provider.
+     * Calibration takes a few hundred milliseconds at the first build.
+     *
+     * @param calibrateProvider calibrateProvider [ Default: false ]
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder calibrateProvider(boolean calibrateProvider) {
+        this.calibrateProvider = calibrateProvider;
+        return this;
+    }
+
     /**
      * @param salt salt
      * @return EdgeAuthBuilder
@@ -197,6 +289,9 @@ public class EdgeAuthBuilder {
     }
 
     /**
+     * Prints the parameters and timings of every token to {@code System.out}.
+     * Use {@link #tracer(EdgeAuthTracer)} with a {@code traceSampleRate} in production.
+     *
      * @param verbose verbose
      * @return EdgeAuthBuilder
      */
@@ -205,6 +300,107 @@ public class EdgeAuthBuilder {
         return this;
     }
 
+    /**
+     * @param clock Source of the current time, e.g. {@link EdgeAuthClock#coarse()} [ Default: {@link EdgeAuthClock#SYSTEM} ]
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder clock(EdgeAuthClock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * @param metrics Listener of issued tokens, failures and stage latencies,
+     *                e.g. {@link EdgeAuthMetricsRecorder} [ Default: {@link EdgeAuthMetrics#NOOP} ]
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder metrics(EdgeAuthMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Hands about one in {@code traceSampleRate} tokens of {@link EdgeAuthSigner} to {@code tracer}, with the
+     * time each part took and the parameters, key and salt redacted. It replaces {@code verbose}.
+     *
+     * @param tracer tracer, e.g. {@link EdgeAuthTracer#STDOUT}
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder tracer(EdgeAuthTracer tracer) {
+        this.tracer = tracer;
+        return this;
+    }
+
+    /**
+     * @param traceSampleRate Trace Sample Rate, traces one in that many tokens [ Default: 1 (every token) ]
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder traceSampleRate(int traceSampleRate) {
+        this.traceSampleRate = traceSampleRate;
+        return this;
+    }
+
+    /**
+     * Reuses tokens of {@link EdgeAuthSigner} for the same URL or ACL while their start time falls
+     * in the same bucket of {@code cacheBucketSeconds}. Tokens are then issued as if at the start
+     * of the bucket, so their exp is at least {@code windowSeconds - cacheBucketSeconds} away.
+     * Only the methods returning a {@link String} use the cache.
+     *
+     * @param cacheBucketSeconds Cache Bucket Seconds (must be less than windowSeconds)
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder cacheBucketSeconds(long cacheBucketSeconds) {
+        this.cacheBucketSeconds = cacheBucketSeconds;
+        return this;
+    }
+
+    /**
+     * @param cacheMaxSize Maximum number of cached tokens [ Default: 10000 ]
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder cacheMaxSize(int cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+        return this;
+    }
+
+    /**
+     * Lets the signer cache of {@code cacheBucketSeconds} fall back to a cache shared with the other
+     * processes of the host, and store the tokens it signs there.
+     *
+     * @param sharedCache sharedCache (requires cacheBucketSeconds)
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder sharedCache(EdgeAuthSharedCache sharedCache) {
+        this.sharedCache = sharedCache;
+        return this;
+    }
+
+    /**
+     * Lets {@link EdgeAuthValidator#validateRequest(CharSequence, String)} remember up to
+     * {@code verificationCacheSize} verified tokens, so a token presented again skips the HMAC
+     * and only has its time window and request path checked.
+     * A cached token stays accepted until it expires or is evicted, even if its key is retired.
+     *
+     * @param verificationCacheSize Verification Cache Size [ Default: 0 (Off) ]
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder verificationCacheSize(int verificationCacheSize) {
+        this.verificationCacheSize = verificationCacheSize;
+        return this;
+    }
+
+    /**
+     * Makes {@link EdgeAuthValidator} accept a token with a {@code sessionId} only once; later uses
+     * are {@link EdgeAuthValidator.Result#REPLAYED}. Share one guard between the validators of a process.
+     *
+     * @param replayGuard replayGuard
+     * @return EdgeAuthBuilder
+     */
+    public EdgeAuthBuilder replayGuard(EdgeAuthReplayGuard replayGuard) {
+        this.replayGuard = replayGuard;
+        return this;
+    }
+
     /**
      * build an {@link EdgeAuth} instance
      *
@@ -212,12 +408,66 @@ public class EdgeAuthBuilder {
      * @throws EdgeAuthException EdgeAuthException
      */
     public EdgeAuth build() throws EdgeAuthException {
-        return new EdgeAuth(
+        EdgeAuth edgeAuth = new EdgeAuth(
                 tokenType, tokenName,
                 key, algorithm, salt,
                 ip, payload, sessionId,
                 startTime, endTime, windowSeconds,
                 fieldDelimiter, aclDelimiter, escapeEarly, verbose
         );
+        edgeAuth.setClock(clock);
+        edgeAuth.setMetrics(metrics);
+        return edgeAuth;
+    }
+
+    /**
+     * build an immutable, thread-safe {@link EdgeAuthSigner} instance.
+     * The key is decoded and the algorithm resolved here, once.
+     *
+     * @return {@link EdgeAuthSigner}
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthSigner buildSigner() throws EdgeAuthException {
+        return new EdgeAuthSigner(
+                tokenType, tokenName,
+                key, algorithm, keyRing, salt,
+                ip, payload, sessionId,
+                startTime, endTime, windowSeconds,
+                fieldDelimiter, aclDelimiter, escapeEarly, verbose,
+                clock, metrics, cacheBucketSeconds, cacheMaxSize, sharedCache, resolveProvider(),
+                tracer, traceSampleRate
+        );
+    }
+
+    /**
+     * build an immutable, thread-safe {@link EdgeAuthValidator} instance verifying tokens
+     * made with the same key, algorithm, salt, fieldDelimiter and escapeEarly options.
+     *
+     * @return {@link EdgeAuthValidator}
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthValidator buildValidator() throws EdgeAuthException {
+        return new EdgeAuthValidator(
+                tokenName, key, algorithm, keyRing, salt,
+                fieldDelimiter, aclDelimiter, escapeEarly, clock, metrics,
+                verificationCacheSize, replayGuard, resolveProvider()
+        );
+    }
+
+    /**
+     * @return provider to compute the HMACs with, or null for the default one
+     * @throws EdgeAuthException if the named provider is not installed or none implements the algorithm
+     */
+    private Provider resolveProvider() throws EdgeAuthException {
+        if (keyRing != null) {
+            return null;
+        } else if (provider != null) {
+            return provider;
+        } else if (providerName != null) {
+            return HmacProviders.named(providerName);
+        } else if (calibrateProvider) {
+            return HmacProviders.fastest(HmacKey.macAlgorithm(algorithm));
+        }
+        return null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,430 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Command line signer for large lists of URLs or ACLs, one per line.
+ *
+ * For each URL line it writes the line with {@code ?tokenName=token} appended (or {@code &} if it has a query),
+ * signing its path without query and fragment. For each ACL line it writes {@code tokenName=token}.
+ * Input is read in large chunks of whole lines, the chunks are signed on all cores and written in input order.
+ * All tokens of a run share one start and end time.
+ *
+ * <pre>
+ * java -jar edgeauth.jar --key KEY --window-seconds 86400 --input urls.txt --output signed.txt
+ * </pre>
+ */
+public final class EdgeAuthCli {
+
+    /** default number of input bytes signed as one task. */
+    static final int CHUNK_SIZE = 4 << 20;
+
+    /** chunks grow up to this size to hold a line longer than {@code CHUNK_SIZE}. */
+    static final int MAX_CHUNK_SIZE = 64 << 20;
+
+    private static final String USAGE = String.join("\n",
+            "Usage: java -jar edgeauth.jar --key KEY (--window-seconds N | --end-time T) [options]",
+            "",
+            "Reads URLs (or ACLs with --acl), one per line, and writes them signed in the same order.",
+            "",
+            "  --key KEY                 secret as hexadecimal digit string with even-length",
+            "  --algorithm ALG           sha256 (default), sha1 or md5",
+            "  --token-name NAME         parameter name for the token (default __token__)",
+            "  --start-time T|now        start time in epoch seconds, or now",
+            "  --end-time T              end time in epoch seconds",
+            "  --window-seconds N        how long the tokens are valid for",
+            "  --ip IP                   IP address to restrict the tokens to",
+            "  --session-id ID           session identifier",
+            "  --payload DATA            additional text added to the calculated digest",
+            "  --salt SALT               additional data validated by the token",
+            "  --field-delimiter C       character used to delimit token body fields (default ~)",
+            "  --acl-delimiter C         character used to delimit acl (default !)",
+            "  --escape-early            url encode strings before they are used",
+            "  --acl                     lines are ACLs; write tokenName=token for each",
+            "  --input FILE              input file (default standard input)",
+            "  --output FILE             output file (default standard output)",
+            "  --threads N               number of signing threads (default number of cores)",
+            "  --help                    print this help");
+
+    private EdgeAuthCli() {
+    }
+
+    /**
+     * @param args command line options
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /**
+     * @param args command line options
+     * @param stdin input if no {@code --input} is given
+     * @param stdout output if no {@code --output} is given
+     * @param stderr destination of the usage and error messages
+     * @return exit status. 0 on success, 1 if signing failed and 2 for invalid options
+     */
+    static int run(String[] args, InputStream stdin, OutputStream stdout, PrintStream stderr) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (EdgeAuthException e) {
+            stderr.println("error: " + e.getMessage());
+            stderr.println(USAGE);
+            return 2;
+        }
+        if (options == null) {
+            stderr.println(USAGE);
+            return 0;
+        }
+
+        try {
+            EdgeAuthSigner signer = options.builder.buildSigner();
+            ReadableByteChannel in = options.input != null
+                    ? FileChannel.open(Paths.get(options.input), StandardOpenOption.READ)
+                    : Channels.newChannel(stdin);
+            try {
+                WritableByteChannel out = options.output != null
+                        ? FileChannel.open(Paths.get(options.output), StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+                        : Channels.newChannel(stdout);
+                try {
+                    new BulkSigner(signer, options.acl, options.threads, CHUNK_SIZE).sign(in, out);
+                } finally {
+                    if (options.output != null) {
+                        out.close();
+                    } else {
+                        stdout.flush();
+                    }
+                }
+            } finally {
+                if (options.input != null) {
+                    in.close();
+                }
+            }
+            return 0;
+        } catch (EdgeAuthException | IOException e) {
+            stderr.println("error: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Parsed command line.
+     */
+    static final class Options {
+        final EdgeAuthBuilder builder = new EdgeAuthBuilder();
+        boolean acl;
+        String input;
+        String output;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * @param args command line options
+         * @return options, or null if help was asked for
+         * @throws EdgeAuthException for an unknown option, an invalid value or a missing required option
+         */
+        static Options parse(String[] args) throws EdgeAuthException {
+            Options options = new Options();
+            boolean key = false;
+            boolean expiry = false;
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                switch (option) {
+                    case "--help":
+                    case "-h":
+                        return null;
+                    case "--escape-early":
+                        options.builder.escapeEarly(true);
+                        continue;
+                    case "--acl":
+                        options.acl = true;
+                        continue;
+                    default:
+                        break;
+                }
+                if (i + 1 == args.length) {
+                    throw new EdgeAuthException("Missing value of " + option + ".");
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--key":
+                        options.builder.key(value);
+                        key = true;
+                        break;
+                    case "--algorithm":
+                        options.builder.algorithm(value);
+                        break;
+                    case "--token-name":
+                        options.builder.tokenName(value);
+                        break;
+                    case "--start-time":
+                        options.builder.startTime("now".equalsIgnoreCase(value) ? EdgeAuth.NOW : number(option, value));
+                        break;
+                    case "--end-time":
+                        options.builder.endTime(number(option, value));
+                        expiry = true;
+                        break;
+                    case "--window-seconds":
+                        options.builder.windowSeconds(number(option, value));
+                        expiry = true;
+                        break;
+                    case "--ip":
+                        options.builder.ip(value);
+                        break;
+                    case "--session-id":
+                        options.builder.sessionId(value);
+                        break;
+                    case "--payload":
+                        options.builder.payload(value);
+                        break;
+                    case "--salt":
+                        options.builder.salt(value);
+                        break;
+                    case "--field-delimiter":
+                        options.builder.fieldDelimiter(character(option, value));
+                        break;
+                    case "--acl-delimiter":
+                        options.builder.aclDelimiter(character(option, value));
+                        break;
+                    case "--input":
+                        options.input = value;
+                        break;
+                    case "--output":
+                        options.output = value;
+                        break;
+                    case "--threads":
+                        options.threads = (int) number(option, value);
+                        if (options.threads <= 0) {
+                            throw new EdgeAuthException("--threads must be ( > 0 )");
+                        }
+                        break;
+                    default:
+                        throw new EdgeAuthException("Unknown option " + option + ".");
+                }
+            }
+            if (!key) {
+                throw new EdgeAuthException("Missing --key.");
+            }
+            if (!expiry) {
+                throw new EdgeAuthException("Missing --window-seconds or --end-time.");
+            }
+            return options;
+        }
+
+        private static long number(String option, String value) throws EdgeAuthException {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new EdgeAuthException(option + " must be a number.");
+            }
+        }
+
+        private static char character(String option, String value) throws EdgeAuthException {
+            if (value.length() != 1) {
+                throw new EdgeAuthException(option + " must be a single character.");
+            }
+            return value.charAt(0);
+        }
+    }
+
+    /**
+     * Reads chunks of whole lines, signs them in parallel and writes the results in input order.
+     */
+    static final class BulkSigner {
+        private final EdgeAuthSigner signer;
+        private final boolean acl;
+        private final int threads;
+        private final int chunkSize;
+
+        /** {@code tokenName=} */
+        private final String tokenParameter;
+
+        BulkSigner(EdgeAuthSigner signer, boolean acl, int threads, int chunkSize) {
+            this.signer = signer;
+            this.acl = acl;
+            this.threads = threads;
+            this.chunkSize = chunkSize;
+            this.tokenParameter = signer.getTokenName() + "=";
+        }
+
+        /**
+         * @param in lines to sign
+         * @param out signed lines
+         * @return number of signed lines
+         * @throws EdgeAuthException if a line cannot be signed
+         * @throws IOException if reading or writing fails
+         */
+        long sign(ReadableByteChannel in, WritableByteChannel out) throws EdgeAuthException, IOException {
+            final TokenWindow window = this.signer.window(this.signer.getClock().epochSeconds());
+            ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+            ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+            long count = 0;
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(this.chunkSize);
+                boolean eof = false;
+                while (!eof) {
+                    while (buffer.hasRemaining() && !eof) {
+                        eof = in.read(buffer) < 0;
+                    }
+                    int end = buffer.position();
+                    if (!eof) {
+                        while (end > 0 && buffer.get(end - 1) != '\n') {
+                            end--;
+                        }
+                        if (end == 0) {
+                            buffer = grow(buffer);
+                            continue;
+                        }
+                    }
+                    if (end > 0) {
+                        final byte[] lines = Arrays.copyOf(buffer.array(), end);
+                        pending.add(executor.submit(new Callable<Chunk>() {
+                            @Override
+                            public Chunk call() throws EdgeAuthException {
+                                return signLines(lines, window);
+                            }
+                        }));
+                    }
+                    buffer.flip();
+                    buffer.position(end);
+                    buffer.compact();
+
+                    while (pending.size() > 2 * this.threads || (eof && !pending.isEmpty())) {
+                        count += write(pending.poll(), out);
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            return count;
+        }
+
+        /**
+         * @param buffer full buffer without a line feed
+         * @return buffer of twice the size holding the same bytes
+         * @throws EdgeAuthException if the line would exceed the limit
+         */
+        private static ByteBuffer grow(ByteBuffer buffer) throws EdgeAuthException {
+            if (buffer.capacity() >= MAX_CHUNK_SIZE) {
+                throw new EdgeAuthException("Input line is too long.");
+            }
+            buffer.flip();
+            return ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+        }
+
+        private static long write(Future<Chunk> future, WritableByteChannel out) throws EdgeAuthException, IOException {
+            Chunk chunk;
+            try {
+                chunk = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EdgeAuthException(e.toString());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof EdgeAuthException) {
+                    throw (EdgeAuthException) e.getCause();
+                }
+                throw new EdgeAuthException(e.getCause().toString());
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(chunk.bytes);
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            return chunk.lines;
+        }
+
+        /**
+         * @param lines whole lines, the last one possibly without line feed
+         * @param window st and exp shared by every token
+         * @return signed lines
+         * @throws EdgeAuthException if a line cannot be signed
+         */
+        Chunk signLines(byte[] lines, TokenWindow window) throws EdgeAuthException {
+            StringBuilder sb = new StringBuilder(lines.length + lines.length / 2);
+            int count = 0;
+            int start = 0;
+            while (start < lines.length) {
+                int end = start;
+                while (end < lines.length && lines[end] != '\n') {
+                    end++;
+                }
+                int next = end + 1;
+                if (end > start && lines[end - 1] == '\r') {
+                    end--;
+                }
+                String line = new String(lines, start, end - start, StandardCharsets.UTF_8).trim();
+                if (!line.isEmpty()) {
+                    signLine(line, window, sb);
+                    count++;
+                }
+                if (next <= lines.length) {
+                    sb.append('\n');
+                }
+                start = next;
+            }
+            return new Chunk(sb.toString().getBytes(StandardCharsets.UTF_8), count);
+        }
+
+        private void signLine(String line, TokenWindow window, StringBuilder sb) throws EdgeAuthException {
+            if (!this.acl) {
+                this.signer.appendSignedUrl(line, window, sb);
+                return;
+            }
+            sb.append(this.tokenParameter);
+            TokenBuffer buffer = this.signer.generateToken(line, false, window);
+            try {
+                buffer.writeTo(sb);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    /**
+     * Signed lines of a chunk.
+     */
+    static final class Chunk {
+        final byte[] bytes;
+        final int lines;
+
+        Chunk(byte[] bytes, int lines) {
+            this.bytes = bytes;
+            this.lines = lines;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+
+/**
+ * Source of the current time used for {@code NOW}, {@code windowSeconds} and token validation.
+ * Pass one to {@link EdgeAuthBuilder#clock(EdgeAuthClock)}.
+ */
+public interface EdgeAuthClock {
+
+    /** Reads {@link System#currentTimeMillis()} on every call. (Default) */
+    EdgeAuthClock SYSTEM = new EdgeAuthClock() {
+        @Override
+        public long epochSeconds() {
+            return System.currentTimeMillis() / 1000L;
+        }
+    };
+
+    /**
+     * @return seconds since 1970-01-01T00:00:00Z
+     */
+    long epochSeconds();
+
+    /**
+     * Returns a clock that is refreshed once per second by a daemon thread shared by the whole JVM,
+     * so reading it is a single volatile load. It may lag the system clock by up to a second.
+     *
+     * @return the shared coarse clock
+     */
+    static EdgeAuthClock coarse() {
+        return CoarseClock.INSTANCE;
+    }
+
+    /**
+     * @param epochSeconds the time the clock always returns
+     * @return a clock stopped at {@code epochSeconds}, for deterministic tests
+     */
+    static EdgeAuthClock fixed(final long epochSeconds) {
+        return new EdgeAuthClock() {
+            @Override
+            public long epochSeconds() {
+                return epochSeconds;
+            }
+        };
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+
+/**
+ * Reads {@link EdgeAuthBuilder} options from a key=value file or from environment variables, so keys,
+ * windows and delimiters can change without a redeploy. See {@link EdgeAuthConfigWatcher} to pick up
+ * changes to a file while running.
+ *
+ * Options are named after the builder methods: tokenName, key, algorithm, provider (a name),
+ * calibrateProvider, salt, ip, payload, sessionId, startTime ("now" or seconds), endTime, windowSeconds,
+ * fieldDelimiter, aclDelimiter, escapeEarly, cacheBucketSeconds, cacheMaxSize and verificationCacheSize. In the environment they are upper case with
+ * underscores and the {@code EDGEAUTH_} prefix, e.g. {@code EDGEAUTH_WINDOW_SECONDS}.
+ *
+ * acceptedKeys lists, separated by commas, previous keys that validators still accept next to key, which
+ * signs. They make an {@link EdgeAuthKeyRing}, so a changed key does not reject the tokens still in flight.
+ */
+public final class EdgeAuthConfig {
+
+    /** prefix of the environment variables. */
+    public static final String ENV_PREFIX = "EDGEAUTH_";
+
+    /** every option, in the order they are applied. */
+    private static final String[] OPTIONS = {
+            "tokenName", "key", "algorithm", "provider", "calibrateProvider", "salt", "ip", "payload", "sessionId",
+            "startTime", "endTime", "windowSeconds", "fieldDelimiter", "aclDelimiter", "escapeEarly",
+            "cacheBucketSeconds", "cacheMaxSize", "verificationCacheSize", "acceptedKeys" };
+
+    private EdgeAuthConfig() {
+    }
+
+    /**
+     * @param file key=value file in {@link Properties} format, read as UTF-8
+     * @return builder holding the options of {@code file}
+     * @throws EdgeAuthException if the file cannot be read or holds an unknown or invalid option
+     */
+    public static EdgeAuthBuilder load(Path file) throws EdgeAuthException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new EdgeAuthException("Cannot read " + file + ": " + e);
+        }
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            options.put(name, properties.getProperty(name).trim());
+        }
+        return load(options);
+    }
+
+    /**
+     * @return builder holding the options of the {@code EDGEAUTH_} environment variables
+     * @throws EdgeAuthException if a variable holds an invalid value
+     */
+    public static EdgeAuthBuilder fromEnvironment() throws EdgeAuthException {
+        return fromEnvironment(System.getenv());
+    }
+
+    /**
+     * @param environment environment variables
+     * @return builder holding the options of the {@code EDGEAUTH_} variables of {@code environment}
+     * @throws EdgeAuthException if a variable holds an invalid value
+     */
+    public static EdgeAuthBuilder fromEnvironment(Map<String, String> environment) throws EdgeAuthException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String option : OPTIONS) {
+            String value = environment.get(environmentName(option));
+            if (value != null) {
+                options.put(option, value.trim());
+            }
+        }
+        return load(options);
+    }
+
+    /**
+     * @param option option name, e.g. windowSeconds
+     * @return name of its environment variable, e.g. EDGEAUTH_WINDOW_SECONDS
+     */
+    static String environmentName(String option) {
+        StringBuilder sb = new StringBuilder(ENV_PREFIX);
+        for (int i = 0; i < option.length(); i++) {
+            char c = option.charAt(i);
+            if (Character.isUpperCase(c)) {
+                sb.append('_');
+            }
+            sb.append(Character.toUpperCase(c));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param options option values by name
+     * @return builder holding {@code options}
+     * @throws EdgeAuthException if an option is unknown or invalid
+     */
+    public static EdgeAuthBuilder load(Map<String, String> options) throws EdgeAuthException {
+        for (String name : options.keySet()) {
+            if (!isOption(name)) {
+                throw new EdgeAuthException("Unknown option: " + name);
+            }
+        }
+        EdgeAuthBuilder builder = new EdgeAuthBuilder();
+        for (String option : OPTIONS) {
+            String value = options.get(option);
+            if (value != null && !option.equals("acceptedKeys")) {
+                try {
+                    apply(builder, option, value);
+                } catch (NumberFormatException e) {
+                    throw new EdgeAuthException("Invalid " + option + ": " + value);
+                }
+            }
+        }
+        String acceptedKeys = options.get("acceptedKeys");
+        if (acceptedKeys != null) {
+            builder.keyRing(keyRing(options, acceptedKeys));
+        }
+        return builder;
+    }
+
+    /**
+     * @param options option values by name
+     * @param acceptedKeys comma separated keys accepted next to {@code key}
+     * @return key ring signing with {@code key}
+     * @throws EdgeAuthException if there is no key, or a key or the algorithm is invalid
+     */
+    private static EdgeAuthKeyRing keyRing(Map<String, String> options, String acceptedKeys) throws EdgeAuthException {
+        String key = options.get("key");
+        if (key == null || key.isEmpty()) {
+            throw new EdgeAuthException("acceptedKeys requires key.");
+        }
+        List<String> accepted = new ArrayList<>();
+        for (String acceptedKey : acceptedKeys.split(",")) {
+            if (!acceptedKey.trim().isEmpty()) {
+                accepted.add(acceptedKey.trim());
+            }
+        }
+        String algorithm = options.get("algorithm");
+        String provider = options.get("provider");
+        return new EdgeAuthKeyRing(algorithm != null ? algorithm : "sha256",
+                provider != null ? HmacProviders.named(provider) : null, key, accepted.toArray(new String[0]));
+    }
+
+    /**
+     * @param name option name
+     * @return whether {@code name} is an option
+     */
+    private static boolean isOption(String name) {
+        for (String option : OPTIONS) {
+            if (option.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param builder builder to set the option on
+     * @param option option name
+     * @param value option value
+     * @throws EdgeAuthException if {@code value} is invalid
+     */
+    private static void apply(EdgeAuthBuilder builder, String option, String value) throws EdgeAuthException {
+        switch (option) {
+            case "tokenName":
+                builder.tokenName(value);
+                break;
+            case "key":
+                builder.key(value);
+                break;
+            case "algorithm":
+                builder.algorithm(value);
+                break;
+            case "provider":
+                builder.provider(value);
+                break;
+            case "calibrateProvider":
+                builder.calibrateProvider(bool(option, value));
+                break;
+            case "salt":
+                builder.salt(value);
+                break;
+            case "ip":
+                builder.ip(value);
+                break;
+            case "payload":
+                builder.payload(value);
+                break;
+            case "sessionId":
+                builder.sessionId(value);
+                break;
+            case "startTime":
+                builder.startTime("now".equalsIgnoreCase(value) ? EdgeAuth.NOW : Long.parseLong(value));
+                break;
+            case "endTime":
+                builder.endTime(Long.parseLong(value));
+                break;
+            case "windowSeconds":
+                builder.windowSeconds(Long.parseLong(value));
+                break;
+            case "fieldDelimiter":
+                builder.fieldDelimiter(delimiter(option, value));
+                break;
+            case "aclDelimiter":
+                builder.aclDelimiter(delimiter(option, value));
+                break;
+            case "escapeEarly":
+                builder.escapeEarly(bool(option, value));
+                break;
+            case "cacheBucketSeconds":
+                builder.cacheBucketSeconds(Long.parseLong(value));
+                break;
+            case "cacheMaxSize":
+                builder.cacheMaxSize(Integer.parseInt(value));
+                break;
+            case "verificationCacheSize":
+                builder.verificationCacheSize(Integer.parseInt(value));
+                break;
+            default:
+                throw new EdgeAuthException("Unknown option: " + option);
+        }
+    }
+
+    /**
+     * @param option option name
+     * @param value option value
+     * @return the single char of {@code value}
+     * @throws EdgeAuthException if {@code value} is not a single char
+     */
+    private static char delimiter(String option, String value) throws EdgeAuthException {
+        if (value.length() != 1) {
+            throw new EdgeAuthException("Invalid " + option + ": " + value);
+        }
+        return value.charAt(0);
+    }
+
+    /**
+     * @param option option name
+     * @param value option value
+     * @return true or false
+     * @throws EdgeAuthException if {@code value} is neither
+     */
+    private static boolean bool(String option, String value) throws EdgeAuthException {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "true":
+                return true;
+            case "false":
+                return false;
+            default:
+                throw new EdgeAuthException("Invalid " + option + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Keeps an {@link EdgeAuthSigner} and {@link EdgeAuthValidator} built from a configuration file
+ * (see {@link EdgeAuthConfig}) and rebuilds them whenever the file changes, using a {@link WatchService}.
+ *
+ * Both are immutable and published together through one volatile reference, so request threads never
+ * block and never see a half-updated configuration: a call either uses the previous pair or the new one.
+ * Code that needs the signer and validator of the same version takes both from one {@link #getSnapshot()}.
+ * A file that cannot be loaded is reported by {@link #getLastError()} and leaves the current pair in place.
+ * Replace the file atomically (write a temporary file, then rename it) so a partial write is never read.
+ *
+ * <pre>
+ * EdgeAuthConfigWatcher config = new EdgeAuthConfigWatcher(Paths.get("/etc/edgeauth.properties"));
+ * String token = config.getSigner().generateACLToken("/live/*");
+ * </pre>
+ */
+public final class EdgeAuthConfigWatcher implements AutoCloseable {
+
+    /** quiet time after the last change before the file is read, in milliseconds. */
+    private static final long DEBOUNCE_MILLIS = 100L;
+
+    private final Path file;
+
+    private final WatchService watchService;
+
+    private final Thread thread;
+
+    /** current signer and validator. */
+    private volatile Snapshot snapshot;
+
+    /** error of the last reload, or null if it succeeded. */
+    private volatile EdgeAuthException lastError;
+
+    /**
+     * Loads {@code file} and starts watching it on a daemon thread, stopped by {@link #close()}.
+     *
+     * @param file key=value configuration file
+     * @throws EdgeAuthException if the file cannot be loaded or watched
+     */
+    public EdgeAuthConfigWatcher(Path file) throws EdgeAuthException {
+        if (file == null) {
+            throw new EdgeAuthException("You must provide a file.");
+        }
+        this.file = file.toAbsolutePath();
+        this.snapshot = load();
+        WatchService watcher = null;
+        try {
+            watcher = this.file.getFileSystem().newWatchService();
+            this.file.getParent().register(watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException ignored) {
+                    // the registration failure is reported
+                }
+            }
+            throw new EdgeAuthException("Cannot watch " + this.file + ": " + e);
+        }
+        this.watchService = watcher;
+        this.thread = new Thread(this::watch, "edgeauth-config-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @return signer and validator built from the file
+     * @throws EdgeAuthException if the file cannot be loaded
+     */
+    private Snapshot load() throws EdgeAuthException {
+        EdgeAuthBuilder builder = EdgeAuthConfig.load(this.file);
+        return new Snapshot(builder.buildSigner(), builder.buildValidator());
+    }
+
+    /**
+     * Loads the file now and publishes the result. Reloads are serialised, so an older load never replaces a
+     * newer one.
+     *
+     * @return true if the file was loaded, false if it was not and the current signer and validator remain
+     */
+    public synchronized boolean reload() {
+        try {
+            this.snapshot = load();
+            this.lastError = null;
+            return true;
+        } catch (EdgeAuthException e) {
+            this.lastError = e;
+            return false;
+        }
+    }
+
+    /**
+     * Waits for changes to the file until the watch service is closed.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                if (!changed(this.watchService.take())) {
+                    continue;
+                }
+                // let a burst of writes settle before reading the file
+                for (WatchKey key; (key = this.watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null; ) {
+                    changed(key);
+                }
+                reload();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * @param key signalled key, reset here
+     * @return whether one of its events is about the file
+     */
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || this.file.getFileName().equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * @return signer and validator of the current configuration, from the same version of the file
+     */
+    public Snapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * A reload may happen between this and {@link #getValidator()}; use {@link #getSnapshot()} to get both.
+     *
+     * @return signer of the current configuration
+     */
+    public EdgeAuthSigner getSigner() {
+        return this.snapshot.signer;
+    }
+
+    /**
+     * A reload may happen between this and {@link #getSigner()}; use {@link #getSnapshot()} to get both.
+     *
+     * @return validator of the current configuration
+     */
+    public EdgeAuthValidator getValidator() {
+        return this.snapshot.validator;
+    }
+
+    /**
+     * @return why the last reload failed, or null if it succeeded
+     */
+    public EdgeAuthException getLastError() {
+        return this.lastError;
+    }
+
+    /**
+     * @return the watched file
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Stops watching the file. The current signer and validator remain usable.
+     *
+     * @throws IOException IOException
+     */
+    @Override
+    public void close() throws IOException {
+        this.watchService.close();
+    }
+
+    /**
+     * Signer and validator of one version of the file.
+     */
+    public static final class Snapshot {
+
+        private final EdgeAuthSigner signer;
+
+        private final EdgeAuthValidator validator;
+
+        Snapshot(EdgeAuthSigner signer, EdgeAuthValidator validator) {
+            this.signer = signer;
+            this.validator = validator;
+        }
+
+        /**
+         * @return signer of this version
+         */
+        public EdgeAuthSigner getSigner() {
+            return this.signer;
+        }
+
+        /**
+         * @return validator of this version
+         */
+        public EdgeAuthValidator getValidator() {
+            return this.validator;
+        }
+    }
+}
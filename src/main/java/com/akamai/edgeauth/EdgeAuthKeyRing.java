@@ -0,0 +1,210 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * A primary key to sign with and any number of keys still accepted when verifying.
+ * Every key is decoded when it is added. Changing the keys swaps one immutable snapshot,
+ * so signers and validators sharing the ring see either the old or the new set, never a mix,
+ * and never wait for a lock. Pass it to {@link EdgeAuthBuilder#keyRing(EdgeAuthKeyRing)}.
+ *
+ * <pre>
+ * ring.rotate(newKey);   // sign with newKey, still accept the previous primary
+ * ring.retire(oldKey);   // once every token signed with oldKey has expired
+ * </pre>
+ */
+public final class EdgeAuthKeyRing {
+
+    /** JCA name of the algorithm. */
+    private final String algorithm;
+
+    /** provider of the {@link javax.crypto.Mac}, or null for the default one. */
+    private final Provider provider;
+
+    /** current keys. */
+    private final AtomicReference<Keys> keys = new AtomicReference<>();
+
+    /**
+     * @param algorithm Algorithm to use to generate the token (sha1, sha256, or md5)
+     * @param primaryKey Secret to sign with. It must be hexadecimal digit string with even-length
+     * @param acceptedKeys Secrets accepted in addition to {@code primaryKey} when verifying
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthKeyRing(String algorithm, String primaryKey, String... acceptedKeys) throws EdgeAuthException {
+        this(algorithm, (Provider) null, primaryKey, acceptedKeys);
+    }
+
+    /**
+     * @param algorithm Algorithm to use to generate the token (sha1, sha256, or md5)
+     * @param provider Provider computing the HMACs of every key, or null for the default one
+     * @param primaryKey Secret to sign with. It must be hexadecimal digit string with even-length
+     * @param acceptedKeys Secrets accepted in addition to {@code primaryKey} when verifying
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthKeyRing(String algorithm, Provider provider, String primaryKey, String... acceptedKeys)
+            throws EdgeAuthException {
+        this.algorithm = HmacKey.macAlgorithm(algorithm);
+        this.provider = provider;
+        setKeys(primaryKey, acceptedKeys);
+    }
+
+    /**
+     * Replaces every key at once.
+     *
+     * @param primaryKey Secret to sign with. It must be hexadecimal digit string with even-length
+     * @param acceptedKeys Secrets accepted in addition to {@code primaryKey} when verifying
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public void setKeys(String primaryKey, String... acceptedKeys) throws EdgeAuthException {
+        List<HmacKey> decoded = new ArrayList<>();
+        decoded.add(new HmacKey(this.algorithm, this.provider, primaryKey));
+        if (acceptedKeys != null) {
+            for (String key : acceptedKeys) {
+                add(decoded, new HmacKey(this.algorithm, this.provider, key));
+            }
+        }
+        this.keys.set(new Keys(decoded));
+    }
+
+    /**
+     * Makes {@code newPrimaryKey} the signing key. The previous primary key stays accepted.
+     *
+     * @param newPrimaryKey Secret to sign with from now on
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public void rotate(String newPrimaryKey) throws EdgeAuthException {
+        HmacKey primary = new HmacKey(this.algorithm, this.provider, newPrimaryKey);
+        Keys current;
+        Keys next;
+        do {
+            current = this.keys.get();
+            List<HmacKey> decoded = new ArrayList<>();
+            decoded.add(primary);
+            for (HmacKey key : current.keys) {
+                add(decoded, key);
+            }
+            next = new Keys(decoded);
+        } while (!this.keys.compareAndSet(current, next));
+    }
+
+    /**
+     * Stops accepting {@code key}. The primary key cannot be retired; {@code rotate} away from it first.
+     *
+     * @param key Secret to remove
+     * @return true if {@code key} was accepted until now
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public boolean retire(String key) throws EdgeAuthException {
+        HmacKey retired = new HmacKey(this.algorithm, this.provider, key);
+        Keys current;
+        Keys next;
+        do {
+            current = this.keys.get();
+            if (current.keys[0].sameSecret(retired)) {
+                throw new EdgeAuthException("The primary key cannot be retired.");
+            }
+            List<HmacKey> decoded = new ArrayList<>();
+            for (HmacKey accepted : current.keys) {
+                if (!accepted.sameSecret(retired)) {
+                    decoded.add(accepted);
+                }
+            }
+            if (decoded.size() == current.keys.length) {
+                return false;
+            }
+            next = new Keys(decoded);
+        } while (!this.keys.compareAndSet(current, next));
+        return true;
+    }
+
+    /**
+     * @param keys keys so far
+     * @param key key to add unless it is already there
+     */
+    private static void add(List<HmacKey> keys, HmacKey key) {
+        for (HmacKey existing : keys) {
+            if (existing.sameSecret(key)) {
+                return;
+            }
+        }
+        keys.add(key);
+    }
+
+    /**
+     * @return JCA name of the algorithm
+     */
+    public String getAlgorithm() {
+        return this.algorithm;
+    }
+
+    /**
+     * @return provider computing the HMACs
+     */
+    public Provider getProvider() {
+        return primary().getProvider();
+    }
+
+    /**
+     * @return number of accepted keys, including the primary key
+     */
+    public int size() {
+        return this.keys.get().keys.length;
+    }
+
+    /**
+     * @return current snapshot
+     */
+    Keys keys() {
+        return this.keys.get();
+    }
+
+    /**
+     * @return key to sign with
+     */
+    HmacKey primary() {
+        return this.keys.get().keys[0];
+    }
+
+    /**
+     * Immutable set of keys, the primary one first.
+     */
+    static final class Keys {
+
+        /** decoded keys, the primary one first. */
+        final HmacKey[] keys;
+
+        /**
+         * Index of the key that verified the last token. Tokens arrive in bulk signed by the
+         * same key, so it is tried first. Updates may race; any value in range is fine.
+         */
+        volatile int hint;
+
+        /**
+         * @param keys decoded keys, the primary one first
+         */
+        Keys(List<HmacKey> keys) {
+            this.keys = keys.toArray(new HmacKey[0]);
+        }
+    }
+}
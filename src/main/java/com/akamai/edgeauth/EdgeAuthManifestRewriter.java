@@ -0,0 +1,709 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Appends a token query parameter to every URI of an HLS ({@code .m3u8}) or DASH ({@code .mpd}) manifest
+ * while streaming it from input to output. Only one line or tag is held at a time, so memory stays the same
+ * for any manifest size. All tokens of a manifest share one start and end time.
+ *
+ * In HLS, URI lines and the {@code URI="..."} attributes of {@code #EXT} tags (EXT-X-KEY, EXT-X-MAP, ...) are rewritten.
+ * In DASH, the {@code media}, {@code initialization}, {@code sourceURL} and {@code index} attributes are rewritten,
+ * resolved against the enclosing {@code BaseURL} elements, which are left as they are.
+ * Relative URIs are resolved against the manifest path, and URIs with a scheme other than http or https
+ * (data:, skd:, ...) are left as they are. The signed path is the resolved path without query and fragment.
+ * Instances are immutable and thread-safe.
+ */
+public final class EdgeAuthManifestRewriter {
+
+    /** manifest lines, tags and BaseURL texts longer than this are rejected. */
+    static final int MAX_UNIT_LENGTH = 1 << 20;
+
+    /** size of the input and output buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** DASH attributes holding a segment URI. */
+    private static final List<String> DASH_URI_ATTRIBUTES = Arrays.asList("media", "initialization", "sourceURL", "index");
+
+    /** query separator inside XML attribute values. */
+    private static final byte[] XML_AMPERSAND = "&amp;".getBytes(StandardCharsets.UTF_8);
+
+    private final EdgeAuthSigner signer;
+
+    /** {@code tokenName=} as ASCII bytes. */
+    private final byte[] tokenParameter;
+
+    /**
+     * @param signer Signer of the tokens
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthManifestRewriter(EdgeAuthSigner signer) throws EdgeAuthException {
+        if (signer == null) {
+            throw new EdgeAuthException("You must provide a signer.");
+        }
+        this.signer = signer;
+        this.tokenParameter = (signer.getTokenName() + "=").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param edgeAuth EdgeAuth whose current settings sign the tokens
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthManifestRewriter(EdgeAuth edgeAuth) throws EdgeAuthException {
+        this(edgeAuth != null ? edgeAuth.toSigner() : null);
+    }
+
+    /**
+     * Appends the URL token of its own path to every URI. DASH URIs with {@code $...$} template
+     * identifiers cannot carry a URL token and are left as they are; use an ACL token for those.
+     *
+     * @param in manifest. It is not closed.
+     * @param out rewritten manifest. It is flushed, not closed.
+     * @param manifestPath path or http(s) URL of the manifest, to resolve relative URIs against
+     * @return number of URIs given a token
+     * @throws EdgeAuthException EdgeAuthException
+     * @throws IOException if reading or writing fails
+     */
+    public long rewriteURLTokens(InputStream in, OutputStream out, String manifestPath)
+            throws EdgeAuthException, IOException {
+        long count = rewriteURLTokens(Channels.newChannel(in), Channels.newChannel(out), manifestPath);
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Appends the URL token of its own path to every URI. DASH URIs with {@code $...$} template
+     * identifiers cannot carry a URL token and are left as they are; use an ACL token for those.
+     *
+     * @param in manifest. It is not closed.
+     * @param out rewritten manifest. It is not closed.
+     * @param manifestPath path or http(s) URL of the manifest, to resolve relative URIs against
+     * @return number of URIs given a token
+     * @throws EdgeAuthException EdgeAuthException
+     * @throws IOException if reading or writing fails
+     */
+    public long rewriteURLTokens(ReadableByteChannel in, WritableByteChannel out, String manifestPath)
+            throws EdgeAuthException, IOException {
+        return new Rewrite(in, out, manifestPath, null).run();
+    }
+
+    /**
+     * Appends the same ACL token to every URI.
+     *
+     * @param in manifest. It is not closed.
+     * @param out rewritten manifest. It is flushed, not closed.
+     * @param manifestPath path or http(s) URL of the manifest, to resolve relative URIs against
+     * @param acl access control list (String) covering the URIs
+     * @return number of URIs given a token
+     * @throws EdgeAuthException EdgeAuthException
+     * @throws IOException if reading or writing fails
+     */
+    public long rewriteACLToken(InputStream in, OutputStream out, String manifestPath, String acl)
+            throws EdgeAuthException, IOException {
+        long count = rewriteACLToken(Channels.newChannel(in), Channels.newChannel(out), manifestPath, acl);
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Appends the same ACL token to every URI.
+     *
+     * @param in manifest. It is not closed.
+     * @param out rewritten manifest. It is not closed.
+     * @param manifestPath path or http(s) URL of the manifest, to resolve relative URIs against
+     * @param acl access control list (String) covering the URIs
+     * @return number of URIs given a token
+     * @throws EdgeAuthException EdgeAuthException
+     * @throws IOException if reading or writing fails
+     */
+    public long rewriteACLToken(ReadableByteChannel in, WritableByteChannel out, String manifestPath, String acl)
+            throws EdgeAuthException, IOException {
+        if (acl == null || acl.trim().isEmpty()) {
+            throw new EdgeAuthException("You must provide an ACL.");
+        }
+        return new Rewrite(in, out, manifestPath, acl).run();
+    }
+
+    /**
+     * @return signer
+     */
+    public EdgeAuthSigner getSigner() {
+        return this.signer;
+    }
+
+    /**
+     * Resolves {@code uri} to the path a URL token is signed for.
+     *
+     * @param base directory to resolve relative references against, ending with '/'
+     * @param uri reference as it appears in the manifest
+     * @return absolute path without query and fragment, or null if {@code uri} is not an http(s) or relative reference
+     */
+    static String signedPath(String base, String uri) {
+        int end = uri.length();
+        for (int i = 0; i < end; i++) {
+            char c = uri.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+            }
+        }
+        String ref = uri.substring(0, end);
+        if (ref.isEmpty()) {
+            return null;
+        }
+
+        String path;
+        int scheme = schemeLength(ref);
+        if (scheme > 0) {
+            String name = ref.substring(0, scheme);
+            if (!(name.equalsIgnoreCase("http") || name.equalsIgnoreCase("https")) || !ref.startsWith("//", scheme + 1)) {
+                return null;
+            }
+            path = authorityPath(ref, scheme + 3);
+        } else if (ref.startsWith("//")) {
+            path = authorityPath(ref, 2);
+        } else if (ref.charAt(0) == '/') {
+            path = ref;
+        } else {
+            path = base + ref;
+        }
+        return removeDotSegments(path);
+    }
+
+    /**
+     * @param ref reference
+     * @return length of the scheme of {@code ref}, or 0 if it has none
+     */
+    private static int schemeLength(String ref) {
+        for (int i = 0; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c == ':') {
+                return i;
+            }
+            boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+            if (!letter && (i == 0 || !((c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.'))) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param ref reference with an authority
+     * @param authorityStart index of the authority in {@code ref}
+     * @return path after the authority
+     */
+    private static String authorityPath(String ref, int authorityStart) {
+        int slash = ref.indexOf('/', authorityStart);
+        return slash < 0 ? "/" : ref.substring(slash);
+    }
+
+    /**
+     * @param path absolute path
+     * @return {@code path} without "." and ".." segments
+     */
+    private static String removeDotSegments(String path) {
+        if (path.indexOf("/.") < 0) {
+            return path;
+        }
+        String[] segments = path.split("/", -1);
+        List<String> output = new ArrayList<>();
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean last = i == segments.length - 1;
+            if (segment.equals("..")) {
+                if (!output.isEmpty()) {
+                    output.remove(output.size() - 1);
+                }
+            } else if (!segment.equals(".")) {
+                output.add(segment);
+                continue;
+            }
+            if (last) {
+                output.add("");
+            }
+        }
+        if (output.isEmpty()) {
+            return "/";
+        }
+        StringBuilder sb = new StringBuilder(path.length());
+        for (String segment : output) {
+            sb.append('/').append(segment);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param base directory
+     * @param uri reference to a file or directory
+     * @return directory of {@code uri} resolved against {@code base}, or {@code base} if it cannot be resolved
+     */
+    private static String directory(String base, String uri) {
+        String path = signedPath(base, uri.trim());
+        return path != null ? path.substring(0, path.lastIndexOf('/') + 1) : base;
+    }
+
+    /**
+     * State of a single manifest.
+     */
+    private final class Rewrite {
+
+        private final ReadableByteChannel in;
+        private final WritableByteChannel out;
+        private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /** st and exp shared by every token of the manifest. */
+        private final TokenWindow window;
+
+        /** the ACL token, or null to sign each URI. */
+        private final byte[] aclToken;
+
+        /** {@code aclToken} escaped for XML attribute values. */
+        private final byte[] xmlAclToken;
+
+        /** current line, tag or BaseURL text. */
+        private byte[] unit = new byte[1024];
+        private int unitLength;
+
+        /** DASH: base directory by element depth. */
+        private String[] bases = new String[16];
+        private int depth;
+
+        /** DASH: inside a BaseURL element. */
+        private boolean inBaseURL;
+
+        private long count;
+
+        Rewrite(ReadableByteChannel in, WritableByteChannel out, String manifestPath, String acl)
+                throws EdgeAuthException {
+            if (in == null || out == null) {
+                throw new EdgeAuthException("You must provide the manifest input and output.");
+            }
+            String path = manifestPath != null ? signedPath("", manifestPath) : null;
+            if (path == null || !path.startsWith("/")) {
+                throw new EdgeAuthException("You must provide the manifest path.");
+            }
+            EdgeAuthSigner signer = EdgeAuthManifestRewriter.this.signer;
+            this.in = in;
+            this.out = out;
+            this.window = signer.window(signer.getClock().epochSeconds());
+            this.bases[0] = path.substring(0, path.lastIndexOf('/') + 1);
+            this.input.limit(0);
+            if (acl == null) {
+                this.aclToken = null;
+                this.xmlAclToken = null;
+            } else {
+                String token;
+                TokenBuffer buffer = signer.generateToken(acl, false, this.window);
+                try {
+                    token = buffer.toString();
+                } finally {
+                    buffer.release();
+                }
+                this.aclToken = token.getBytes(StandardCharsets.UTF_8);
+                this.xmlAclToken = escapeXml(token).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        long run() throws EdgeAuthException, IOException {
+            if (fill()) {
+                if (isXml()) {
+                    dash();
+                } else {
+                    hls();
+                }
+            }
+            flush();
+            return this.count;
+        }
+
+        /**
+         * @return true if any input is left
+         * @throws IOException IOException
+         */
+        private boolean fill() throws IOException {
+            while (!this.input.hasRemaining()) {
+                this.input.clear();
+                int n = this.in.read(this.input);
+                this.input.flip();
+                if (n < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return next input byte, or -1 at the end
+         * @throws IOException IOException
+         */
+        private int next() throws IOException {
+            return fill() ? this.input.get() & 0xff : -1;
+        }
+
+        /**
+         * @return true if the buffered start of the manifest looks like XML
+         */
+        private boolean isXml() {
+            for (int i = this.input.position(); i < this.input.limit(); i++) {
+                int b = this.input.get(i) & 0xff;
+                if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != 0xef && b != 0xbb && b != 0xbf) {
+                    return b == '<';
+                }
+            }
+            return false;
+        }
+
+        private void add(int b) throws EdgeAuthException {
+            if (this.unitLength == this.unit.length) {
+                if (this.unitLength >= MAX_UNIT_LENGTH) {
+                    throw new EdgeAuthException("Manifest line is too long.");
+                }
+                this.unit = Arrays.copyOf(this.unit, this.unitLength * 2);
+            }
+            this.unit[this.unitLength++] = (byte) b;
+        }
+
+        private void put(int b) throws IOException {
+            if (!this.output.hasRemaining()) {
+                flush();
+            }
+            this.output.put((byte) b);
+        }
+
+        private void put(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!this.output.hasRemaining()) {
+                    flush();
+                }
+                int n = Math.min(length, this.output.remaining());
+                this.output.put(bytes, offset, n);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        private void flush() throws IOException {
+            this.output.flip();
+            while (this.output.hasRemaining()) {
+                this.out.write(this.output);
+            }
+            this.output.clear();
+        }
+
+        private boolean unitStartsWith(int offset, String prefix) {
+            if (this.unitLength - offset < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (this.unit[offset + i] != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean unitEndsWith(String suffix) {
+            return this.unitLength >= suffix.length() && unitStartsWith(this.unitLength - suffix.length(), suffix);
+        }
+
+        private int unitIndexOf(int b, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (this.unit[i] == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private String unitString(int start, int end) {
+            return new String(this.unit, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        private void hls() throws EdgeAuthException, IOException {
+            int b = next();
+            while (b >= 0) {
+                this.unitLength = 0;
+                while (b >= 0 && b != '\n') {
+                    add(b);
+                    b = next();
+                }
+                hlsLine();
+                if (b == '\n') {
+                    put('\n');
+                    b = next();
+                }
+            }
+        }
+
+        private void hlsLine() throws EdgeAuthException, IOException {
+            int start = 0;
+            int end = this.unitLength;
+            while (start < end && isSpace(this.unit[start])) {
+                start++;
+            }
+            while (end > start && isSpace(this.unit[end - 1])) {
+                end--;
+            }
+            if (start == end || (this.unit[start] == '#' && !unitStartsWith(start, "#EXT"))) {
+                put(this.unit, 0, this.unitLength);
+            } else if (this.unit[start] == '#') {
+                hlsAttributes();
+            } else {
+                put(this.unit, 0, start);
+                uri(start, end, false);
+                put(this.unit, end, this.unitLength - end);
+            }
+        }
+
+        /**
+         * Rewrites the {@code URI="..."} attributes of a tag line.
+         */
+        private void hlsAttributes() throws EdgeAuthException, IOException {
+            int written = 0;
+            for (int i = 1; i + 5 <= this.unitLength; i++) {
+                byte before = this.unit[i - 1];
+                if ((before == ':' || before == ',') && unitStartsWith(i, "URI=\"")) {
+                    int start = i + 5;
+                    int end = unitIndexOf('"', start, this.unitLength);
+                    if (end < 0) {
+                        break;
+                    }
+                    put(this.unit, written, start - written);
+                    uri(start, end, false);
+                    written = end;
+                    i = end;
+                }
+            }
+            put(this.unit, written, this.unitLength - written);
+        }
+
+        private void dash() throws EdgeAuthException, IOException {
+            this.unitLength = 0;
+            int b = next();
+            while (b >= 0) {
+                if (b != '<') {
+                    if (this.inBaseURL) {
+                        add(b);
+                    } else {
+                        put(b);
+                    }
+                    b = next();
+                    continue;
+                }
+                if (this.inBaseURL) {
+                    this.bases[this.depth - 1] = directory(this.bases[this.depth - 1], unitString(0, this.unitLength));
+                    put(this.unit, 0, this.unitLength);
+                    this.inBaseURL = false;
+                }
+
+                this.unitLength = 0;
+                add(b);
+                int quote = 0;
+                while ((b = next()) >= 0) {
+                    add(b);
+                    if (quote != 0) {
+                        if (b == quote) {
+                            quote = 0;
+                        }
+                    } else if ((b == '"' || b == '\'') && !unitStartsWith(0, "<!")) {
+                        quote = b;
+                    } else if (b == '>' && tagComplete()) {
+                        break;
+                    }
+                }
+                dashTag();
+                this.unitLength = 0;
+                b = next();
+            }
+            put(this.unit, 0, this.unitLength);
+        }
+
+        private boolean tagComplete() {
+            if (unitStartsWith(0, "<!--")) {
+                return this.unitLength >= 7 && unitEndsWith("-->");
+            }
+            if (unitStartsWith(0, "<![CDATA[")) {
+                return this.unitLength >= 12 && unitEndsWith("]]>");
+            }
+            return true;
+        }
+
+        private void dashTag() throws EdgeAuthException, IOException {
+            if (this.unitLength < 2 || this.unit[1] == '!' || this.unit[1] == '?') {
+                put(this.unit, 0, this.unitLength);
+                return;
+            }
+            if (this.unit[1] == '/') {
+                this.depth = Math.max(0, this.depth - 1);
+                put(this.unit, 0, this.unitLength);
+                return;
+            }
+
+            int nameEnd = 1;
+            while (nameEnd < this.unitLength && !isSpace(this.unit[nameEnd])
+                    && this.unit[nameEnd] != '/' && this.unit[nameEnd] != '>') {
+                nameEnd++;
+            }
+            boolean empty = this.unitLength >= 2 && this.unit[this.unitLength - 2] == '/';
+            dashAttributes(nameEnd);
+
+            if (!empty) {
+                if (++this.depth == this.bases.length) {
+                    this.bases = Arrays.copyOf(this.bases, this.depth * 2);
+                }
+                this.bases[this.depth] = this.bases[this.depth - 1];
+                this.inBaseURL = localName(1, nameEnd).equals("BaseURL");
+            }
+        }
+
+        /**
+         * Rewrites the URI attributes of a start tag.
+         *
+         * @param from end of the element name
+         */
+        private void dashAttributes(int from) throws EdgeAuthException, IOException {
+            int written = 0;
+            int i = from;
+            while (i < this.unitLength) {
+                while (i < this.unitLength && isSpace(this.unit[i])) {
+                    i++;
+                }
+                int nameStart = i;
+                while (i < this.unitLength && this.unit[i] != '=' && !isSpace(this.unit[i])
+                        && this.unit[i] != '/' && this.unit[i] != '>') {
+                    i++;
+                }
+                int nameEnd = i;
+                while (i < this.unitLength && isSpace(this.unit[i])) {
+                    i++;
+                }
+                if (nameStart == nameEnd || i == this.unitLength || this.unit[i] != '=') {
+                    if (nameStart == nameEnd) {
+                        i++;
+                    }
+                    continue;
+                }
+                i++;
+                while (i < this.unitLength && isSpace(this.unit[i])) {
+                    i++;
+                }
+                if (i == this.unitLength || (this.unit[i] != '"' && this.unit[i] != '\'')) {
+                    continue;
+                }
+                int start = i + 1;
+                int end = unitIndexOf(this.unit[i], start, this.unitLength);
+                if (end < 0) {
+                    break;
+                }
+                if (DASH_URI_ATTRIBUTES.contains(localName(nameStart, nameEnd))) {
+                    put(this.unit, written, start - written);
+                    uri(start, end, true);
+                    written = end;
+                }
+                i = end + 1;
+            }
+            put(this.unit, written, this.unitLength - written);
+        }
+
+        private String localName(int start, int end) {
+            int colon = unitIndexOf(':', start, end);
+            return unitString(colon < 0 ? start : colon + 1, end);
+        }
+
+        /**
+         * Writes the reference in {@code unit[start, end)} with the token appended to its query.
+         *
+         * @param xml whether it is an XML attribute value
+         */
+        private void uri(int start, int end, boolean xml) throws EdgeAuthException, IOException {
+            String uri = unitString(start, end);
+            String path = signedPath(this.bases[this.depth], uri);
+            if (path == null || (xml && this.aclToken == null && uri.indexOf('$') >= 0)) {
+                put(this.unit, start, end - start);
+                return;
+            }
+
+            int fragment = unitIndexOf('#', start, end);
+            if (fragment < 0) {
+                fragment = end;
+            }
+            put(this.unit, start, fragment - start);
+            if (unitIndexOf('?', start, fragment) < 0) {
+                put('?');
+            } else if (xml) {
+                put(XML_AMPERSAND, 0, XML_AMPERSAND.length);
+            } else {
+                put('&');
+            }
+            byte[] tokenParameter = EdgeAuthManifestRewriter.this.tokenParameter;
+            put(tokenParameter, 0, tokenParameter.length);
+            if (this.aclToken != null) {
+                byte[] aclToken = xml ? this.xmlAclToken : this.aclToken;
+                put(aclToken, 0, aclToken.length);
+            } else {
+                token(path, xml);
+            }
+            put(this.unit, fragment, end - fragment);
+            this.count++;
+        }
+
+        private void token(String path, boolean xml) throws IOException {
+            TokenBuffer buffer = EdgeAuthManifestRewriter.this.signer.generateToken(path, true, this.window);
+            try {
+                if (!xml && buffer.length() * 3 <= this.output.capacity()) {
+                    if (buffer.length() * 3 > this.output.remaining()) {
+                        flush();
+                    }
+                    buffer.writeTo(this.output);
+                    return;
+                }
+                String token = buffer.toString();
+                byte[] bytes = (xml ? escapeXml(token) : token).getBytes(StandardCharsets.UTF_8);
+                put(bytes, 0, bytes.length);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    /**
+     * @param text attribute value
+     * @return {@code text} with the characters that end an XML attribute value replaced by entities
+     */
+    private static String escapeXml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;").replace("'", "&apos;");
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+
+/**
+ * Listener of the token generation and validation hot paths. Every method does nothing by default,
+ * so implementations override only what they need. Methods are called on the signing and validating
+ * threads and must be cheap and thread-safe; {@link EdgeAuthMetricsRecorder} records them with striped counters.
+ * Pass one to {@link EdgeAuthBuilder#metrics(EdgeAuthMetrics)}.
+ */
+public interface EdgeAuthMetrics {
+
+    /**
+     * Timed parts of a token.
+     */
+    enum Stage {
+        /** url encoding of the url or acl with {@code escapeEarly}. */
+        ESCAPE,
+        /** computing the HMAC. */
+        HMAC,
+        /** assembling the token fields and hex digest, without ESCAPE and HMAC. */
+        FORMAT,
+    }
+
+    /**
+     * Reasons token generation fails.
+     */
+    enum Failure {
+        /** negative {@code startTime}, non-positive {@code endTime}, or neither {@code endTime} nor {@code windowSeconds}. */
+        INVALID_WINDOW,
+        /** {@code endTime} not after {@code startTime}. */
+        EXPIRED,
+        /** empty URL or ACL. */
+        MISSING_PATH,
+        /** URL that is neither an http(s) URL nor a path. */
+        INVALID_URL,
+        /** writing the token to an {@link Appendable} failed. */
+        OUTPUT,
+    }
+
+    /** Records nothing, and lets signers and validators skip reading the time. (Default) */
+    EdgeAuthMetrics NOOP = new EdgeAuthMetrics() {
+    };
+
+    /**
+     * A token was handed out, freshly signed or from the token cache.
+     *
+     * @param algorithm JCA name of the algorithm of the signer (HmacSHA256, HmacSHA1, or HmacMD5)
+     * @param isUrl true for a URL token, false for an ACL token
+     */
+    default void tokenIssued(String algorithm, boolean isUrl) {
+    }
+
+    /**
+     * A token was validated.
+     *
+     * @param algorithm JCA name of the algorithm of the validator (HmacSHA256, HmacSHA1, or HmacMD5)
+     * @param result outcome
+     */
+    default void tokenValidated(String algorithm, EdgeAuthValidator.Result result) {
+    }
+
+    /**
+     * Generating a token failed.
+     *
+     * @param reason why
+     * @param cause exception about to be thrown
+     */
+    default void failed(Failure reason, EdgeAuthException cause) {
+    }
+
+    /**
+     * @param stage timed part
+     * @param nanos elapsed time in nanoseconds
+     */
+    default void stageCompleted(Stage stage, long nanos) {
+    }
+}
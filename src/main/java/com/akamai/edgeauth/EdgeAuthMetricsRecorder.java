@@ -0,0 +1,197 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * {@link EdgeAuthMetrics} keeping counts and latency histograms in {@link LongAdder}s, which stripe
+ * updates across cells under contention so concurrent signing threads do not fight over one cache line.
+ * Reads sum the cells and are only approximately consistent while updates are going on.
+ */
+public final class EdgeAuthMetricsRecorder implements EdgeAuthMetrics {
+
+    /** issued tokens by algorithm, index 0 for URL and 1 for ACL tokens. */
+    private final ConcurrentHashMap<String, LongAdder[]> issued = new ConcurrentHashMap<>();
+
+    /** validated tokens by algorithm, indexed by {@link EdgeAuthValidator.Result#ordinal()}. */
+    private final ConcurrentHashMap<String, LongAdder[]> validated = new ConcurrentHashMap<>();
+
+    /** failures indexed by {@link EdgeAuthMetrics.Failure#ordinal()}. */
+    private final LongAdder[] failures = new LongAdder[Failure.values().length];
+
+    /** latencies indexed by {@link EdgeAuthMetrics.Stage#ordinal()}. */
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Stage.values().length];
+
+    public EdgeAuthMetricsRecorder() {
+        for (int i = 0; i < this.latencies.length; i++) {
+            this.latencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < this.failures.length; i++) {
+            this.failures[i] = new LongAdder();
+        }
+    }
+
+    private static LongAdder[] counters(ConcurrentHashMap<String, LongAdder[]> map, String algorithm, int size) {
+        LongAdder[] counters = map.get(algorithm);
+        if (counters == null) {
+            counters = map.computeIfAbsent(algorithm, k -> {
+                LongAdder[] adders = new LongAdder[size];
+                for (int i = 0; i < size; i++) {
+                    adders[i] = new LongAdder();
+                }
+                return adders;
+            });
+        }
+        return counters;
+    }
+
+    @Override
+    public void tokenIssued(String algorithm, boolean isUrl) {
+        counters(this.issued, algorithm, 2)[isUrl ? 0 : 1].increment();
+    }
+
+    @Override
+    public void tokenValidated(String algorithm, EdgeAuthValidator.Result result) {
+        counters(this.validated, algorithm, EdgeAuthValidator.Result.values().length)[result.ordinal()].increment();
+    }
+
+    @Override
+    public void failed(Failure reason, EdgeAuthException cause) {
+        this.failures[reason.ordinal()].increment();
+    }
+
+    @Override
+    public void stageCompleted(Stage stage, long nanos) {
+        this.latencies[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * @param algorithm JCA name of the algorithm (HmacSHA256, HmacSHA1, or HmacMD5)
+     * @param isUrl true for URL tokens, false for ACL tokens
+     * @return number of tokens issued
+     */
+    public long getIssued(String algorithm, boolean isUrl) {
+        LongAdder[] counters = this.issued.get(algorithm);
+        return counters != null ? counters[isUrl ? 0 : 1].sum() : 0L;
+    }
+
+    /**
+     * @param algorithm JCA name of the algorithm (HmacSHA256, HmacSHA1, or HmacMD5)
+     * @param result outcome
+     * @return number of tokens validated with {@code result}
+     */
+    public long getValidated(String algorithm, EdgeAuthValidator.Result result) {
+        LongAdder[] counters = this.validated.get(algorithm);
+        return counters != null ? counters[result.ordinal()].sum() : 0L;
+    }
+
+    /**
+     * @param reason why generation failed
+     * @return number of failures for {@code reason}
+     */
+    public long getFailures(Failure reason) {
+        return this.failures[reason.ordinal()].sum();
+    }
+
+    /**
+     * @param stage timed part
+     * @return latency histogram of {@code stage}
+     */
+    public LatencyHistogram getLatency(Stage stage) {
+        return this.latencies[stage.ordinal()];
+    }
+
+    /**
+     * Histogram with power-of-two buckets: bucket {@code i} counts latencies in [2^i, 2^(i+1)) nanoseconds,
+     * and bucket 0 also counts 0.
+     */
+    public static final class LatencyHistogram {
+
+        private final LongAdder[] buckets = new LongAdder[64];
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        LatencyHistogram() {
+            for (int i = 0; i < this.buckets.length; i++) {
+                this.buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            long value = Math.max(nanos, 0L);
+            this.buckets[63 - Long.numberOfLeadingZeros(value | 1L)].increment();
+            this.totalNanos.add(value);
+        }
+
+        /**
+         * @return number of recorded latencies
+         */
+        public long getCount() {
+            long count = 0;
+            for (LongAdder bucket : this.buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /**
+         * @return sum of the recorded latencies in nanoseconds
+         */
+        public long getTotalNanos() {
+            return this.totalNanos.sum();
+        }
+
+        /**
+         * @return count of each bucket
+         */
+        public long[] getBucketCounts() {
+            long[] counts = new long[this.buckets.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = this.buckets[i].sum();
+            }
+            return counts;
+        }
+
+        /**
+         * @param quantile between 0 and 1, e.g. 0.99
+         * @return upper bound in nanoseconds of the bucket holding {@code quantile}, or 0 if nothing was recorded
+         */
+        public long getQuantileNanos(double quantile) {
+            long[] counts = getBucketCounts();
+            long count = 0;
+            for (long c : counts) {
+                count += c;
+            }
+            if (count == 0) {
+                return 0L;
+            }
+            long rank = (long) Math.ceil(Math.min(Math.max(quantile, 0.0), 1.0) * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(rank, 1L)) {
+                    return i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
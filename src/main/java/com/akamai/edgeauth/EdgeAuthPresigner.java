@@ -0,0 +1,288 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Keeps the ACL tokens of a registered set of ACLs signed ahead of time, for ACLs handed out to many
+ * viewers at once such as live channels. Each token is signed again in the background {@code marginSeconds}
+ * before its {@code exp} and published atomically, so {@link #getACLToken(String)} is a map lookup and a
+ * volatile read, without HMAC work or latency spikes when the window rolls over.
+ *
+ * <pre>
+ * EdgeAuthPresigner presigner = new EdgeAuthPresigner(signer, 60);
+ * presigner.register("/live/channel1/*");
+ * String token = presigner.getACLToken("/live/channel1/*");
+ * </pre>
+ *
+ * The signer should use {@code windowSeconds}: tokens with a fixed {@code endTime} cannot be renewed.
+ */
+public final class EdgeAuthPresigner implements AutoCloseable {
+
+    /** seconds to wait before retrying a failed refresh. */
+    private static final long RETRY_SECONDS = 1L;
+
+    /** signer doing the work. */
+    private final EdgeAuthSigner signer;
+
+    /** seconds before {@code exp} to sign a new token. */
+    private final long marginSeconds;
+
+    /** runs the refreshes. */
+    private final ScheduledExecutorService scheduler;
+
+    /** whether {@code scheduler} was created here and is shut down by {@code close}. */
+    private final boolean ownsScheduler;
+
+    /** registered ACLs. */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Refreshes on a daemon thread of its own, stopped by {@link #close()}.
+     *
+     * @param signer signer doing the work
+     * @param marginSeconds seconds before {@code exp} to sign a new token
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthPresigner(EdgeAuthSigner signer, long marginSeconds) throws EdgeAuthException {
+        this(signer, marginSeconds, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "edgeauth-presigner");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * @param signer signer doing the work
+     * @param marginSeconds seconds before {@code exp} to sign a new token
+     * @param scheduler runs the refreshes. It is not shut down by {@link #close()}
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthPresigner(EdgeAuthSigner signer, long marginSeconds, ScheduledExecutorService scheduler)
+            throws EdgeAuthException {
+        this(signer, marginSeconds, scheduler, false);
+    }
+
+    private EdgeAuthPresigner(EdgeAuthSigner signer, long marginSeconds, ScheduledExecutorService scheduler,
+            boolean ownsScheduler) throws EdgeAuthException {
+        if (signer == null || scheduler == null) {
+            throw new EdgeAuthException("You must provide a signer and a scheduler.");
+        }
+        if (marginSeconds <= 0) {
+            throw new EdgeAuthException("marginSeconds must be ( > 0 )");
+        }
+        this.signer = signer;
+        this.marginSeconds = marginSeconds;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    /**
+     * Signs {@code acl} now and keeps it signed until it is unregistered. Registering it again does nothing.
+     *
+     * @param acl access control list (String)
+     * @return the current token of {@code acl}
+     * @throws EdgeAuthException if {@code acl} cannot be signed, or its tokens live no longer than {@code marginSeconds}
+     */
+    public String register(String acl) throws EdgeAuthException {
+        if (acl == null || acl.trim().isEmpty()) {
+            throw new EdgeAuthException("You must provide an ACL.");
+        }
+        Entry entry = this.entries.get(acl);
+        if (entry != null) {
+            return entry.current.token;
+        }
+        entry = new Entry(acl);
+        entry.refresh();
+        long lifetime = entry.current.endTime - this.signer.getClock().epochSeconds();
+        if (lifetime <= this.marginSeconds) {
+            throw new EdgeAuthException("Tokens must live longer than marginSeconds.");
+        }
+        Entry raced = this.entries.putIfAbsent(acl, entry);
+        if (raced != null) {
+            return raced.current.token;
+        }
+        try {
+            entry.schedule();
+        } catch (RejectedExecutionException e) {
+            this.entries.remove(acl, entry);
+            throw new EdgeAuthException(e.toString());
+        }
+        return entry.current.token;
+    }
+
+    /**
+     * Stops refreshing {@code acl}.
+     *
+     * @param acl access control list (String)
+     */
+    public void unregister(String acl) {
+        Entry entry = this.entries.remove(acl);
+        if (entry != null) {
+            entry.cancel();
+        }
+    }
+
+    /**
+     * Returns the pre-signed token of a registered ACL. Others, and registered ACLs whose refresh
+     * is late so that the token has expired, are signed on the calling thread.
+     *
+     * @param acl access control list (String)
+     * @return authorization token string
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public String getACLToken(String acl) throws EdgeAuthException {
+        Entry entry = this.entries.get(acl);
+        if (entry != null) {
+            Issued current = entry.current;
+            if (current.endTime > this.signer.getClock().epochSeconds()) {
+                this.signer.getMetrics().tokenIssued(this.signer.getAlgorithm(), false);
+                return current.token;
+            }
+        }
+        return this.signer.generateACLToken(acl);
+    }
+
+    /**
+     * @return registered ACLs
+     */
+    public Set<String> getRegistered() {
+        return Collections.unmodifiableSet(this.entries.keySet());
+    }
+
+    /**
+     * @return seconds before {@code exp} a new token is signed
+     */
+    public long getMarginSeconds() {
+        return this.marginSeconds;
+    }
+
+    /**
+     * Unregisters every ACL, and shuts the scheduler down if it was created by this instance.
+     */
+    @Override
+    public void close() {
+        for (String acl : this.entries.keySet()) {
+            unregister(acl);
+        }
+        if (this.ownsScheduler) {
+            this.scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * A token and its exp, published together.
+     */
+    private static final class Issued {
+
+        final String token;
+
+        final long endTime;
+
+        Issued(String token, long endTime) {
+            this.token = token;
+            this.endTime = endTime;
+        }
+    }
+
+    /**
+     * A registered ACL and its current token.
+     */
+    private final class Entry implements Runnable {
+
+        private final String acl;
+
+        /** current token, replaced as a whole by the refresh. */
+        volatile Issued current;
+
+        /** next refresh, or null once cancelled. */
+        private ScheduledFuture<?> task;
+
+        private boolean cancelled;
+
+        Entry(String acl) {
+            this.acl = acl;
+        }
+
+        /**
+         * Signs a new token and publishes it.
+         *
+         * @throws EdgeAuthException EdgeAuthException
+         */
+        void refresh() throws EdgeAuthException {
+            EdgeAuthSigner signer = EdgeAuthPresigner.this.signer;
+            TokenWindow window = signer.window(signer.getClock().epochSeconds());
+            TokenBuffer buffer = signer.generateToken(this.acl, false, window);
+            try {
+                this.current = new Issued(buffer.toString(), window.endTime);
+            } finally {
+                buffer.release();
+            }
+        }
+
+        /**
+         * Schedules the next refresh {@code marginSeconds} before the current exp, or shortly if that has passed.
+         */
+        synchronized void schedule() {
+            schedule(this.current.endTime - EdgeAuthPresigner.this.marginSeconds
+                    - EdgeAuthPresigner.this.signer.getClock().epochSeconds());
+        }
+
+        /**
+         * @param delaySeconds seconds to the next refresh
+         */
+        private synchronized void schedule(long delaySeconds) {
+            if (!this.cancelled) {
+                this.task = EdgeAuthPresigner.this.scheduler.schedule(
+                        this, Math.max(RETRY_SECONDS, delaySeconds), TimeUnit.SECONDS);
+            }
+        }
+
+        synchronized void cancel() {
+            this.cancelled = true;
+            if (this.task != null) {
+                this.task.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                refresh();
+                schedule();
+            } catch (EdgeAuthException | RuntimeException e) {
+                // keep serving the current token until it expires, and try again shortly
+                try {
+                    schedule(RETRY_SECONDS);
+                } catch (RejectedExecutionException stopped) {
+                    // the scheduler is shut down
+                }
+            }
+        }
+    }
+}
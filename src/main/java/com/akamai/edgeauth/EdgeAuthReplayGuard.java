@@ -0,0 +1,391 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Remembers which single-use tokens have been seen, keyed by their {@code id} and {@code hmac},
+ * until their {@code exp}. Pass one to {@link EdgeAuthBuilder#replayGuard(EdgeAuthReplayGuard)}, and
+ * validators report a token carrying an {@code id} as {@link EdgeAuthValidator.Result#REPLAYED} on every
+ * use after the first.
+ *
+ * Entries live in a timer wheel of {@code exp} buckets, each split into stripes that are small
+ * open-addressing tables of 64-bit fingerprints with their own lock. The bucket of a token follows
+ * from its {@code exp}, so an insert or check touches one stripe only, and a bucket is cleared in one
+ * pass when the wheel comes back to it, instead of expiring entries one by one. Stripes are allocated
+ * up front, on the heap or off it, for {@code maxEntries} spread over the horizon. A burst of tokens
+ * sharing one {@code exp} doubles a full stripe, drawing the extra slots from a budget shared by the
+ * whole guard of room for {@code maxEntries} tokens, and the stripe hands them back when its bucket is
+ * reused or, once the budget runs out, as soon as its tokens have expired. Memory therefore stays within
+ * what is allocated up front plus that budget.
+ *
+ * It fails closed: a token whose {@code exp} is past, beyond {@code horizonSeconds}, or whose stripe
+ * is full when the budget is spent is reported as already used.
+ */
+public final class EdgeAuthReplayGuard {
+
+    /** fraction of a stripe that may be filled before it rejects new tokens. */
+    private static final double MAX_LOAD = 0.75;
+
+    /** source of the current time. */
+    private final EdgeAuthClock clock;
+
+    /** seconds covered by one bucket. */
+    private final long resolution;
+
+    /** number of buckets. */
+    private final int wheelSize;
+
+    /** number of stripes per bucket, a power of two. */
+    private final int stripes;
+
+    /** stripes of every bucket, {@code stripes} per bucket. */
+    private final Stripe[] table;
+
+    /** slots the stripes may still allocate beyond their initial capacity. */
+    private final AtomicLong spareSlots;
+
+    /** second of the last sweep for expired grown stripes, so a spent budget is swept at most once a second. */
+    private final AtomicLong lastReclaim = new AtomicLong(-1L);
+
+    /**
+     * @param maxEntries number of live tokens to make room for, spread over {@code horizonSeconds}
+     * @param horizonSeconds longest time from now to the {@code exp} of a token, e.g. {@code windowSeconds}
+     * @param offHeap whether to keep the fingerprints in direct buffers
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthReplayGuard(long maxEntries, long horizonSeconds, boolean offHeap) throws EdgeAuthException {
+        this(maxEntries, horizonSeconds, offHeap, EdgeAuthClock.SYSTEM);
+    }
+
+    /**
+     * @param maxEntries number of live tokens to make room for, spread over {@code horizonSeconds}
+     * @param horizonSeconds longest time from now to the {@code exp} of a token, e.g. {@code windowSeconds}
+     * @param offHeap whether to keep the fingerprints in direct buffers
+     * @param clock Source of the current time
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthReplayGuard(long maxEntries, long horizonSeconds, boolean offHeap, EdgeAuthClock clock)
+            throws EdgeAuthException {
+        if (maxEntries <= 0 || horizonSeconds <= 0) {
+            throw new EdgeAuthException("maxEntries and horizonSeconds must be ( > 0 )");
+        }
+        this.clock = clock != null ? clock : EdgeAuthClock.SYSTEM;
+        this.resolution = Math.max(1L, (horizonSeconds + 59) / 60);
+        this.wheelSize = (int) ((horizonSeconds + this.resolution - 1) / this.resolution) + 2;
+        this.stripes = Math.min(64, Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+        long stripeCount = (long) this.wheelSize * this.stripes;
+        long perStripe = (maxEntries + stripeCount - 1) / stripeCount;
+        long minCapacity = Math.max(8L, (long) Math.ceil(perStripe / MAX_LOAD));
+        long capacity = Long.highestOneBit(minCapacity * 2 - 1);
+        if (capacity * this.wheelSize * this.stripes > Integer.MAX_VALUE) {
+            throw new EdgeAuthException("maxEntries is too large.");
+        }
+        long maxCapacity = Math.max(capacity,
+                Long.highestOneBit(Math.min(Stripe.MAX_CAPACITY, (long) Math.ceil(maxEntries / MAX_LOAD)) * 2 - 1));
+        this.spareSlots = new AtomicLong(Long.highestOneBit((long) Math.ceil(maxEntries / MAX_LOAD) * 2 - 1));
+        this.table = new Stripe[this.wheelSize * this.stripes];
+        for (int i = 0; i < this.table.length; i++) {
+            this.table[i] = new Stripe((int) capacity, (int) maxCapacity, offHeap, this.spareSlots);
+        }
+    }
+
+    /**
+     * Records a use of {@code token}. Tokens without an {@code id} are not single-use and always pass.
+     *
+     * @param token parsed, verified token
+     * @return true on the first use of the token, false if it was used before
+     */
+    public boolean firstUse(EdgeAuthToken token) {
+        int idStart = token.start(EdgeAuthToken.ID);
+        if (idStart < 0) {
+            return true;
+        }
+        CharSequence source = token.source();
+        long fingerprint = fingerprint(source, idStart, token.end(EdgeAuthToken.ID),
+                source, token.start(EdgeAuthToken.HMAC), token.end(EdgeAuthToken.HMAC));
+        return firstUse(fingerprint, token.getEndTime());
+    }
+
+    /**
+     * @param sessionId id field of the token
+     * @param hmac hmac field of the token
+     * @param endTime exp field of the token
+     * @return true on the first use of the token, false if it was used before
+     */
+    public boolean firstUse(String sessionId, String hmac, long endTime) {
+        return firstUse(fingerprint(sessionId, 0, sessionId.length(), hmac, 0, hmac.length()), endTime);
+    }
+
+    /**
+     * @param fingerprint fingerprint of id and hmac
+     * @param endTime exp of the token
+     * @return true on the first use of the token
+     */
+    private boolean firstUse(long fingerprint, long endTime) {
+        long now = this.clock.epochSeconds();
+        if (endTime <= now) {
+            return false;
+        }
+        long epoch = (endTime + this.resolution - 1) / this.resolution;
+        if (epoch - now / this.resolution >= this.wheelSize) {
+            return false;
+        }
+        int stripe = (int) (fingerprint >>> 40) & (this.stripes - 1);
+        Stripe entries = this.table[(int) (epoch % this.wheelSize) * this.stripes + stripe];
+        int result;
+        synchronized (entries) {
+            result = entries.add(epoch, fingerprint);
+        }
+        if (result == Stripe.FULL && reclaim(now)) {
+            synchronized (entries) {
+                result = entries.add(epoch, fingerprint);
+            }
+        }
+        return result == Stripe.ADDED;
+    }
+
+    /**
+     * Shrinks the grown stripes whose tokens have all expired, returning their slots to the budget.
+     * Takes one stripe lock at a time.
+     *
+     * @param now current time in seconds
+     * @return false if another call already swept during this second
+     */
+    private boolean reclaim(long now) {
+        long last = this.lastReclaim.get();
+        if (last == now || !this.lastReclaim.compareAndSet(last, now)) {
+            return false;
+        }
+        long expired = now / this.resolution;
+        for (Stripe stripe : this.table) {
+            synchronized (stripe) {
+                stripe.reclaim(expired);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a over both fields, then the MurmurHash3 finalizer. Never 0, which marks a free slot.
+     *
+     * @param a chars of the first field
+     * @param aStart start of the first field
+     * @param aEnd end of the first field
+     * @param b chars of the second field
+     * @param bStart start of the second field
+     * @param bEnd end of the second field
+     * @return 64-bit fingerprint
+     */
+    static long fingerprint(CharSequence a, int aStart, int aEnd, CharSequence b, int bStart, int bEnd) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = aStart; i < aEnd; i++) {
+            h = (h ^ a.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ 0xffff) * 0x100000001b3L;
+        for (int i = bStart; i < bEnd; i++) {
+            h = (h ^ b.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1L;
+    }
+
+    /**
+     * @return number of fingerprint slots currently allocated, each taking 8 bytes
+     */
+    public long getCapacity() {
+        long capacity = 0;
+        for (Stripe stripe : this.table) {
+            synchronized (stripe) {
+                capacity += stripe.mask + 1;
+            }
+        }
+        return capacity;
+    }
+
+    /**
+     * @return seconds covered by one bucket of the wheel. Entries are kept up to this long after their exp.
+     */
+    public long getResolutionSeconds() {
+        return this.resolution;
+    }
+
+    /**
+     * Open-addressing set of the fingerprints of one bucket and stripe, for a single exp epoch.
+     * Guarded by its own monitor.
+     */
+    private static final class Stripe {
+
+        /** result of {@code add} for a new token. */
+        static final int ADDED = 0;
+
+        /** result of {@code add} for a token that was there, or whose epoch the stripe has left behind. */
+        static final int PRESENT = 1;
+
+        /** result of {@code add} for a new token that the stripe has no room for. */
+        static final int FULL = 2;
+
+        /** largest number of slots, so that a direct buffer of them ({@code 8 * MAX_CAPACITY} bytes) fits in an int. */
+        static final int MAX_CAPACITY = 1 << 27;
+
+        /** number of slots allocated up front, and restored when the stripe is cleared. */
+        private final int initialCapacity;
+
+        /** number of slots the stripe may grow to. */
+        private final int maxCapacity;
+
+        private final boolean offHeap;
+
+        /** budget of the guard, shared by its stripes. */
+        private final AtomicLong spareSlots;
+
+        private LongBuffer slots;
+
+        private int mask;
+
+        private int maxSize;
+
+        /** exp epoch of the entries, or -1 when empty. */
+        private long epoch = -1;
+
+        private int size;
+
+        Stripe(int capacity, int maxCapacity, boolean offHeap, AtomicLong spareSlots) {
+            this.initialCapacity = capacity;
+            this.maxCapacity = maxCapacity;
+            this.offHeap = offHeap;
+            this.spareSlots = spareSlots;
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            this.slots = this.offHeap
+                    ? ByteBuffer.allocateDirect(capacity * 8).asLongBuffer()
+                    : LongBuffer.allocate(capacity);
+            this.mask = capacity - 1;
+            this.maxSize = (int) (capacity * MAX_LOAD);
+        }
+
+        /**
+         * @param epoch exp epoch of the token
+         * @param fingerprint fingerprint of the token, not 0
+         * @return {@link #ADDED}, {@link #PRESENT} or {@link #FULL}
+         */
+        int add(long epoch, long fingerprint) {
+            if (epoch != this.epoch) {
+                if (epoch < this.epoch) {
+                    return PRESENT;
+                }
+                clear();
+                this.epoch = epoch;
+            }
+            int i = (int) fingerprint & this.mask;
+            for (long slot; (slot = this.slots.get(i)) != 0; i = (i + 1) & this.mask) {
+                if (slot == fingerprint) {
+                    return PRESENT;
+                }
+            }
+            if (this.size >= this.maxSize) {
+                if (this.mask + 1 >= this.maxCapacity || !reserve(this.mask + 1)) {
+                    return FULL;
+                }
+                grow();
+                i = (int) fingerprint & this.mask;
+                while (this.slots.get(i) != 0) {
+                    i = (i + 1) & this.mask;
+                }
+            }
+            this.slots.put(i, fingerprint);
+            this.size++;
+            return ADDED;
+        }
+
+        /**
+         * @param expiredEpoch last epoch whose tokens have all expired
+         */
+        void reclaim(long expiredEpoch) {
+            if (this.epoch <= expiredEpoch && this.mask + 1 != this.initialCapacity) {
+                clear();
+            }
+        }
+
+        /**
+         * @param slots slots to take from the budget of the guard
+         * @return false if the budget does not have them
+         */
+        private boolean reserve(long slots) {
+            long spare;
+            do {
+                spare = this.spareSlots.get();
+                if (spare < slots) {
+                    return false;
+                }
+            } while (!this.spareSlots.compareAndSet(spare, spare - slots));
+            return true;
+        }
+
+        /**
+         * Doubles the slots and reinserts the fingerprints.
+         */
+        private void grow() {
+            LongBuffer old = this.slots;
+            int oldCapacity = this.mask + 1;
+            allocate(oldCapacity * 2);
+            for (int j = 0; j < oldCapacity; j++) {
+                long fingerprint = old.get(j);
+                if (fingerprint != 0) {
+                    int i = (int) fingerprint & this.mask;
+                    while (this.slots.get(i) != 0) {
+                        i = (i + 1) & this.mask;
+                    }
+                    this.slots.put(i, fingerprint);
+                }
+            }
+        }
+
+        private void clear() {
+            if (this.mask + 1 != this.initialCapacity) {
+                this.spareSlots.addAndGet(this.mask + 1 - this.initialCapacity);
+                allocate(this.initialCapacity);
+                this.size = 0;
+                return;
+            }
+            if (this.size == 0) {
+                return;
+            }
+            if (this.slots.hasArray()) {
+                Arrays.fill(this.slots.array(), 0L);
+            } else {
+                for (int i = 0; i <= this.mask; i++) {
+                    this.slots.put(i, 0L);
+                }
+            }
+            this.size = 0;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Set;
+
+
+/**
+ * Token cache in a memory-mapped file, shared by the processes of one host that sign the same paths,
+ * and kept across restarts so a process starts warm. Pass one to
+ * {@link EdgeAuthBuilder#sharedCache(EdgeAuthSharedCache)} together with {@code cacheBucketSeconds}:
+ * signers look in it when their own cache misses, and store every token they sign.
+ *
+ * The file holds a fixed number of fixed-size slots. A token goes to the slot picked by a hash of
+ * its path and bucket, replacing what was there, and is ignored once its stored {@code exp} has passed.
+ * Entries are also keyed by a namespace the signer derives from its key and parameters with HMAC, so
+ * signers with other keys or parameters never see each other's tokens.
+ *
+ * Nothing is locked. A writer checksums the entry it built, clears the checksum of the slot, copies the
+ * entry in and then stores its checksum, and readers take an entry only if its checksum matches, so a torn
+ * or concurrent write is read as a miss. The file holds bearer tokens and is created readable by its owner only
+ * where the file system supports POSIX permissions.
+ */
+public final class EdgeAuthSharedCache implements Closeable {
+
+    /** "EASCACHE". */
+    private static final long MAGIC = 0x4541534341434845L;
+
+    private static final int VERSION = 1;
+
+    /** magic, version, slots, slotSize. */
+    private static final int FILE_HEADER = 24;
+
+    /** checksum, namespace, bucket, exp, type, path length, token length. */
+    private static final int SLOT_HEADER = 40;
+
+    /** default size of a slot in bytes. */
+    public static final int DEFAULT_SLOT_SIZE = 512;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final int slots;
+
+    private final int slotSize;
+
+    /**
+     * @param file file to map, created if it does not exist
+     * @param slots number of slots
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthSharedCache(Path file, int slots) throws EdgeAuthException {
+        this(file, slots, DEFAULT_SLOT_SIZE);
+    }
+
+    /**
+     * @param file file to map, created if it does not exist. Every process must pass the same slots and slotSize
+     * @param slots number of slots
+     * @param slotSize size of a slot in bytes, which bounds the length of the path and token it can hold
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthSharedCache(Path file, int slots, int slotSize) throws EdgeAuthException {
+        if (file == null) {
+            throw new EdgeAuthException("You must provide a file.");
+        }
+        if (slots <= 0 || slotSize < SLOT_HEADER + 64 || slotSize > 0xffff) {
+            throw new EdgeAuthException("slots must be ( > 0 ) and slotSize ( >= 104 and <= 65535 )");
+        }
+        long size = FILE_HEADER + (long) slots * slotSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new EdgeAuthException("slots * slotSize is too large.");
+        }
+        this.slots = slots;
+        this.slotSize = slotSize;
+
+        FileChannel channel = null;
+        try {
+            Set<StandardOpenOption> options =
+                    EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                FileAttribute<?> ownerOnly =
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+                channel = FileChannel.open(file, options, ownerOnly);
+            } else {
+                channel = FileChannel.open(file, options);
+            }
+            FileLock lock = channel.lock();
+            try {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+                if (channel.size() == 0) {
+                    header.putLong(MAGIC).putInt(VERSION).putInt(slots).putInt(slotSize).flip();
+                    channel.write(header, 0);
+                } else {
+                    channel.read(header, 0);
+                    header.flip();
+                    if (header.remaining() < FILE_HEADER || header.getLong() != MAGIC || header.getInt() != VERSION) {
+                        throw new EdgeAuthException(file + " is not an EdgeAuth cache file.");
+                    }
+                    if (header.getInt() != slots || header.getInt() != slotSize) {
+                        throw new EdgeAuthException(file + " was created with other slots or slotSize.");
+                    }
+                }
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                lock.release();
+            }
+            this.channel = channel;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new EdgeAuthException(e.toString());
+        } catch (EdgeAuthException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * @param channel channel to close, or null
+     */
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already failing
+            }
+        }
+    }
+
+    /**
+     * @param namespace signer namespace
+     * @param path acl or url
+     * @param isUrl is Url?
+     * @param bucket start of the bucket the token was signed in
+     * @param now current time in seconds
+     * @return the token, or null if there is none that is current
+     */
+    String get(long namespace, String path, boolean isUrl, long bucket, long now) {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        int slot = slot(namespace, pathBytes, isUrl, bucket);
+        ByteBuffer b = this.buffer;
+        long checksum = b.getLong(slot);
+        int tokenLength = b.getShort(slot + 38) & 0xffff;
+        if (checksum == 0 || tokenLength <= 0 || SLOT_HEADER + pathBytes.length + tokenLength > this.slotSize) {
+            return null;
+        }
+        // copy the entry once and check only the copy, which a concurrent writer cannot change under us
+        byte[] entry = new byte[SLOT_HEADER - 8 + pathBytes.length + tokenLength];
+        for (int i = 0; i < entry.length; i++) {
+            entry[i] = b.get(slot + 8 + i);
+        }
+        ByteBuffer copy = ByteBuffer.wrap(entry);
+        if (copy.getLong(0) != namespace
+                || copy.getLong(8) != bucket
+                || copy.getLong(16) <= now
+                || copy.getInt(24) != (isUrl ? 1 : 2)
+                || (copy.getShort(28) & 0xffff) != pathBytes.length
+                || (copy.getShort(30) & 0xffff) != tokenLength) {
+            return null;
+        }
+        int pos = SLOT_HEADER - 8;
+        for (byte c : pathBytes) {
+            if (entry[pos++] != c) {
+                return null;
+            }
+        }
+        if (checksum(copy, 0, entry.length) != checksum) {
+            return null;
+        }
+        return new String(entry, pos, tokenLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stores a token, unless it does not fit in a slot.
+     *
+     * @param namespace signer namespace
+     * @param path acl or url
+     * @param isUrl is Url?
+     * @param bucket start of the bucket the token was signed in
+     * @param endTime exp of the token
+     * @param token signed token
+     */
+    void put(long namespace, String path, boolean isUrl, long bucket, long endTime, String token) {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+        if (SLOT_HEADER + pathBytes.length + tokenBytes.length > this.slotSize) {
+            return;
+        }
+        // build and checksum the entry privately, so a writer racing on the slot cannot get its bytes checksummed
+        ByteBuffer entry = ByteBuffer.allocate(SLOT_HEADER - 8 + pathBytes.length + tokenBytes.length);
+        entry.putLong(namespace).putLong(bucket).putLong(endTime).putInt(isUrl ? 1 : 2)
+                .putShort((short) pathBytes.length).putShort((short) tokenBytes.length)
+                .put(pathBytes).put(tokenBytes);
+        long checksum = checksum(entry, 0, entry.capacity());
+
+        int slot = slot(namespace, pathBytes, isUrl, bucket);
+        ByteBuffer b = this.buffer;
+        b.putLong(slot, 0L);
+        byte[] bytes = entry.array();
+        for (int i = 0; i < bytes.length; i++) {
+            b.put(slot + 8 + i, bytes[i]);
+        }
+        b.putLong(slot, checksum);
+    }
+
+    /**
+     * @param namespace signer namespace
+     * @param path UTF-8 path
+     * @param isUrl is Url?
+     * @param bucket start of the bucket
+     * @return offset of the slot in the file
+     */
+    private int slot(long namespace, byte[] path, boolean isUrl, long bucket) {
+        long h = mix(namespace ^ mix(bucket) ^ (isUrl ? 0x9e3779b97f4a7c15L : 0L));
+        for (byte c : path) {
+            h = (h ^ (c & 0xff)) * 0x100000001b3L;
+        }
+        return FILE_HEADER + (int) ((mix(h) >>> 1) % this.slots) * this.slotSize;
+    }
+
+    /**
+     * @param b buffer holding an entry without its checksum
+     * @param from offset of the namespace of the entry
+     * @param to end of the token of the entry
+     * @return checksum of the entry, never 0
+     */
+    private static long checksum(ByteBuffer b, int from, int to) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (b.get(i) & 0xff)) * 0x100000001b3L;
+        }
+        h = mix(h);
+        return h != 0 ? h : 1L;
+    }
+
+    /**
+     * MurmurHash3 finalizer.
+     *
+     * @param h value to mix
+     * @return mixed value
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @return number of slots
+     */
+    public int getSlots() {
+        return this.slots;
+    }
+
+    /**
+     * @return size of a slot in bytes
+     */
+    public int getSlotSize() {
+        return this.slotSize;
+    }
+
+    /**
+     * Closes the file. The mapping itself is released when the cache is garbage collected.
+     *
+     * @throws IOException IOException
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
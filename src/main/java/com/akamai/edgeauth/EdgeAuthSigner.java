@@ -0,0 +1,1088 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Provider;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.crypto.Mac;
+
+
+/**
+ * Immutable and thread-safe counterpart of {@link EdgeAuth}. The key is decoded and the
+ * algorithm resolved once when it is built, and every thread reuses its own initialized
+ * {@link Mac}, so a single instance can serve all request threads.
+ * You can build an instance using {@link EdgeAuthBuilder#buildSigner()}.
+ */
+public final class EdgeAuthSigner {
+
+    /** select a preset. (Not Supported Yet) */
+    private final String tokenType;
+
+    /** parameter name for the new token. */
+    private final String tokenName;
+
+    /** decoded secrets bound to the algorithm. The primary one signs. */
+    private final EdgeAuthKeyRing keyRing;
+
+    /** additional data validated by the token but NOT included in the token body. It will be deprecated. */
+    private final String salt;
+
+    /** IP Address to restrict this token to. Troublesome in many cases (roaming, NAT, etc) so not often used. */
+    private final String ip;
+
+    /** additional text added to the calculated digest. */
+    private final String payload;
+
+    /** the session identifier for single use tokens or other advanced cases. */
+    private final String sessionId;
+
+    /** {@code ip} escaped up to {@code escapeEarly}. */
+    private final String escapedIp;
+
+    /** {@code payload} escaped up to {@code escapeEarly}. */
+    private final String escapedPayload;
+
+    /** {@code sessionId} escaped up to {@code escapeEarly}. */
+    private final String escapedSessionId;
+
+    /** what is the start time? ({@code NOW} for the current time) */
+    private final Long startTime;
+
+    /** when does this token expire? It overrides {@code windowSeconds} */
+    private final Long endTime;
+
+    /** How long is this token valid for? */
+    private final Long windowSeconds;
+
+    /** character used to delimit token body fields. */
+    private final char fieldDelimiter;
+
+    /** Character used to delimit acl. */
+    private final char aclDelimiter;
+
+    /** causes strings to be url encoded before being used. */
+    private final boolean escapeEarly;
+
+    /** print the parameters and timings of every token. */
+    private final boolean verbose;
+
+    /** receiver of sampled tokens, or null not to trace. */
+    private final EdgeAuthTracer tracer;
+
+    /** one in how many tokens is traced. */
+    private final int traceSampleRate;
+
+    /** source of the current time. */
+    private final EdgeAuthClock clock;
+
+    /** listener of issued tokens, failures and stage latencies. */
+    private final EdgeAuthMetrics metrics;
+
+    /** layout of URL tokens. */
+    private final TokenTemplate urlTemplate;
+
+    /** layout of ACL tokens. */
+    private final TokenTemplate aclTemplate;
+
+    /** tokens reused within a start time bucket, or null. */
+    private final TokenCache cache;
+
+    /** tokens shared with the other processes of the host, or null. */
+    private final EdgeAuthSharedCache sharedCache;
+
+    /** parameters that decide the token of a path and bucket, hashed into the namespace of {@code sharedCache}. */
+    private final String sharedCacheParameters;
+
+    /** namespace of {@code sharedCache} for the current primary key. */
+    private volatile SharedCacheNamespace sharedCacheNamespace;
+
+    /**
+     * @param tokenType Not used
+     * @param tokenName Name for the new token
+     * @param key Secret required to generate the token. It must be hexadecimal digit string with even-length
+     * @param algorithm Algorithm to use to generate the token (sha1, sha256, or md5)
+     * @param keyRing Keys to sign with the primary key of, instead of {@code key} and {@code algorithm}. (Optional)
+     * @param salt Additional data validated by the token but NOT included in the token body. It will be deprecated
+     * @param ip IP Address to restrict this token to. Troublesome in many cases (roaming, NAT, etc) so not often used
+     * @param payload Additional text added to the calculated digest
+     * @param sessionId The session identifier for single use tokens or other advanced cases
+     * @param startTime What is the start time? ({@code NOW} for the current time)
+     * @param endTime When does this token expire? It overrides {@code windowSeconds}
+     * @param windowSeconds How long is this token valid for
+     * @param fieldDelimiter Character used to delimit token body fields
+     * @param aclDelimiter Character used to delimit acl
+     * @param escapeEarly Causes strings to be url encoded before being used
+     * @param verbose Print the parameters and timings of every token, unless {@code tracer} is given
+     * @param clock Source of the current time
+     * @param metrics Listener of issued tokens, failures and stage latencies
+     * @param cacheBucketSeconds Width of the start time bucket tokens are reused within, or null for no cache
+     * @param cacheMaxSize Maximum number of cached tokens
+     * @param sharedCache Token cache shared between processes, used with {@code cacheBucketSeconds}. (Optional)
+     * @param provider Provider computing the HMACs, unless {@code keyRing} is given. (Optional)
+     * @param tracer Receiver of sampled tokens, {@link EdgeAuthTracer#STDOUT} with {@code verbose} if null. (Optional)
+     * @param traceSampleRate One in how many tokens is traced
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    EdgeAuthSigner(
+            String tokenType,
+            String tokenName,
+            String key,
+            String algorithm,
+            EdgeAuthKeyRing keyRing,
+            String salt,
+            String ip,
+            String payload,
+            String sessionId,
+            Long startTime,
+            Long endTime,
+            Long windowSeconds,
+            char fieldDelimiter,
+            char aclDelimiter,
+            boolean escapeEarly,
+            boolean verbose,
+            EdgeAuthClock clock,
+            EdgeAuthMetrics metrics,
+            Long cacheBucketSeconds,
+            int cacheMaxSize,
+            EdgeAuthSharedCache sharedCache,
+            Provider provider,
+            EdgeAuthTracer tracer,
+            int traceSampleRate) throws EdgeAuthException
+    {
+        if (tokenName == null || tokenName.trim().isEmpty()) {
+            throw new EdgeAuthException("You must provide a token name.");
+        }
+        this.tokenType = tokenType;
+        this.tokenName = tokenName;
+        this.keyRing = keyRing != null ? keyRing : new EdgeAuthKeyRing(algorithm, provider, key);
+        this.salt = salt;
+        this.ip = ip;
+        this.payload = payload;
+        this.sessionId = sessionId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.windowSeconds = windowSeconds;
+        this.fieldDelimiter = fieldDelimiter;
+        this.aclDelimiter = aclDelimiter;
+        this.escapeEarly = escapeEarly;
+        this.verbose = verbose;
+        this.tracer = tracer != null ? tracer : verbose ? EdgeAuthTracer.STDOUT : null;
+        this.traceSampleRate = tracer != null ? traceSampleRate : 1;
+        if (this.traceSampleRate <= 0) {
+            throw new EdgeAuthException("traceSampleRate must be ( > 0 )");
+        }
+        this.clock = clock != null ? clock : EdgeAuthClock.SYSTEM;
+        this.metrics = metrics != null ? metrics : EdgeAuthMetrics.NOOP;
+        this.escapedIp = ip != null ? escapeEarly(ip) : null;
+        this.escapedPayload = payload != null ? escapeEarly(payload) : null;
+        this.escapedSessionId = sessionId != null ? escapeEarly(sessionId) : null;
+        this.urlTemplate = new TokenTemplate(
+                this.escapedIp, this.escapedSessionId, this.escapedPayload, salt, fieldDelimiter, true);
+        this.aclTemplate = new TokenTemplate(
+                this.escapedIp, this.escapedSessionId, this.escapedPayload, salt, fieldDelimiter, false);
+
+        if (cacheBucketSeconds == null) {
+            this.cache = null;
+        } else if (cacheBucketSeconds <= 0 || cacheMaxSize <= 0) {
+            throw new EdgeAuthException("cacheBucketSeconds and cacheMaxSize must be ( > 0 )");
+        } else if (endTime == null && windowSeconds != null && cacheBucketSeconds >= windowSeconds) {
+            throw new EdgeAuthException("cacheBucketSeconds must be less than windowSeconds");
+        } else {
+            this.cache = new TokenCache(cacheBucketSeconds, cacheMaxSize);
+        }
+        if (sharedCache != null && this.cache == null) {
+            throw new EdgeAuthException("sharedCache requires cacheBucketSeconds");
+        }
+        this.sharedCache = sharedCache;
+        this.sharedCacheParameters = sharedCache == null ? null : String.join("\n", "edgeauth-shared-cache",
+                this.keyRing.getAlgorithm(), ip, sessionId, payload, salt, String.valueOf(startTime),
+                String.valueOf(endTime), String.valueOf(windowSeconds), String.valueOf(fieldDelimiter),
+                String.valueOf(escapeEarly));
+    }
+
+    /**
+     * Causes strings to be 'url' encoded before being used.
+     *
+     * @param text string
+     * @return escaped string up to {@code escapeEarly}.
+     */
+    private String escapeEarly(final String text) {
+        if (!this.escapeEarly) {
+            return text;
+        }
+        TokenBuffer buffer = TokenBuffer.acquire();
+        try {
+            return buffer.appendEscaped(text).toString();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * @param reason failure reported to {@code metrics}
+     * @param message exception message
+     * @return the exception to throw, after reporting it to {@code metrics}
+     */
+    private EdgeAuthException failure(EdgeAuthMetrics.Failure reason, String message) {
+        EdgeAuthException e = new EdgeAuthException(message);
+        this.metrics.failed(reason, e);
+        return e;
+    }
+
+    /**
+     * @return current time in seconds
+     */
+    private long now() {
+        return this.clock.epochSeconds();
+    }
+
+    /**
+     * Resolves {@code st} and {@code exp} for a token issued at {@code now}.
+     *
+     * @param now issue time in seconds
+     * @return {@link TokenWindow}
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    TokenWindow window(long now) throws EdgeAuthException {
+        Long startTime = this.startTime;
+        Long endTime = this.endTime;
+
+        if (EdgeAuth.NOW.equals(startTime)) {
+            startTime = now;
+        } else if(startTime != null && startTime < 0) {
+            throw failure(EdgeAuthMetrics.Failure.INVALID_WINDOW, "startTime must be ( > 0 )");
+        }
+
+        if (endTime == null) {
+            if (this.windowSeconds != null && this.windowSeconds > 0) {
+                if (startTime == null) {
+                    endTime = now + this.windowSeconds;
+                } else {
+                    endTime = startTime + this.windowSeconds;
+                }
+            } else {
+                throw failure(EdgeAuthMetrics.Failure.INVALID_WINDOW, "You must provide an expiration time or a duration window ( > 0 )");
+            }
+        } else if(endTime <= 0) {
+            throw failure(EdgeAuthMetrics.Failure.INVALID_WINDOW, "endTime must be ( > 0 )");
+        }
+
+        if (startTime != null && (endTime <= startTime)) {
+            throw failure(EdgeAuthMetrics.Failure.EXPIRED, "Token will have already expired.");
+        }
+        return new TokenWindow(startTime != null ? startTime : -1L, endTime);
+    }
+
+    /**
+     * Generate authorization token called by
+     * {@code generateURLToken} and {@code generateACLToken}
+     *
+     * @param path acl or acl path
+     * @param isUrl is Url?
+     * @return buffer of the current thread holding the token. The caller must release it.
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    private TokenBuffer generateToken(String path, boolean isUrl) throws EdgeAuthException {
+        if (!sampled()) {
+            return generateToken(path, isUrl, window(now()), this.keyRing.primary(), false, -1L);
+        }
+        long start = System.nanoTime();
+        TokenWindow window = window(now());
+        return generateToken(path, isUrl, window, this.keyRing.primary(), true, System.nanoTime() - start);
+    }
+
+    /**
+     * @param path acl or acl path
+     * @param isUrl is Url?
+     * @param window resolved st and exp
+     * @return buffer of the current thread holding the token. The caller must release it.
+     */
+    TokenBuffer generateToken(String path, boolean isUrl, TokenWindow window) {
+        return generateToken(path, isUrl, window, this.keyRing.primary(), sampled(), -1L);
+    }
+
+    /**
+     * Costs a single branch unless a tracer is set.
+     *
+     * @return whether to trace the next token
+     */
+    private boolean sampled() {
+        return this.tracer != null
+                && (this.traceSampleRate == 1 || ThreadLocalRandom.current().nextInt(this.traceSampleRate) == 0);
+    }
+
+    /**
+     * @param path acl or acl path
+     * @param isUrl is Url?
+     * @param window resolved st and exp
+     * @param hmacKey key to sign with
+     * @param traced whether to hand the token to {@code tracer}
+     * @param windowNanos nanoseconds spent resolving {@code window}, or -1 if it is shared with other tokens
+     * @return buffer of the current thread holding the token. The caller must release it.
+     */
+    private TokenBuffer generateToken(String path, boolean isUrl, TokenWindow window, HmacKey hmacKey,
+            boolean traced, long windowNanos) {
+        boolean timed = traced || this.metrics != EdgeAuthMetrics.NOOP;
+        TokenBuffer buffer = TokenBuffer.acquire();
+        long[] nanos = timed ? buffer.nanos() : null;
+        try {
+            TokenTemplate template = isUrl ? this.urlTemplate : this.aclTemplate;
+            Mac mac = hmacKey.mac();
+            try {
+                template.sign(buffer, mac, window, path, this.escapeEarly, nanos);
+            } finally {
+                hmacKey.release(mac);
+            }
+
+            if (timed) {
+                if (this.escapeEarly) {
+                    this.metrics.stageCompleted(EdgeAuthMetrics.Stage.ESCAPE, nanos[TokenTemplate.ESCAPE_NANOS]);
+                }
+                this.metrics.stageCompleted(EdgeAuthMetrics.Stage.HMAC, nanos[TokenTemplate.HMAC_NANOS]);
+                this.metrics.stageCompleted(EdgeAuthMetrics.Stage.FORMAT,
+                        nanos[TokenTemplate.HASH_SOURCE_NANOS] + nanos[TokenTemplate.HEX_NANOS]);
+            }
+            this.metrics.tokenIssued(this.keyRing.getAlgorithm(), isUrl);
+            if (traced) {
+                this.tracer.traced(new EdgeAuthTrace(this, path, isUrl, window, windowNanos, nanos.clone()));
+            }
+            return buffer;
+        } catch (RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @param path acl or acl path
+     * @param isUrl is Url?
+     * @return authorization token string
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    private String generateTokenString(String path, boolean isUrl) throws EdgeAuthException {
+        if (this.cache != null) {
+            return generateCachedToken(path, isUrl);
+        }
+        TokenBuffer buffer = generateToken(path, isUrl);
+        try {
+            return buffer.toString();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Issues the token as if at the start of the current cache bucket, so every call within
+     * the bucket yields the same token and its exp is at least {@code windowSeconds - bucket} away.
+     *
+     * @param path acl or acl path
+     * @param isUrl is Url?
+     * @return authorization token string
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    private String generateCachedToken(String path, boolean isUrl) throws EdgeAuthException {
+        return generateCachedToken(path, isUrl, now());
+    }
+
+    /**
+     * @param path acl or acl path
+     * @param isUrl is Url?
+     * @param now current time in seconds
+     * @return authorization token string, issued at {@code cache.bucketStart(now)}
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    private String generateCachedToken(String path, boolean isUrl, long now) throws EdgeAuthException {
+        long bucket = this.cache.bucketStart(now);
+        HmacKey hmacKey = this.keyRing.primary();
+        String token = this.cache.get(path, isUrl, bucket, hmacKey);
+        if (token == null && this.sharedCache != null) {
+            token = this.sharedCache.get(sharedCacheNamespace(hmacKey), path, isUrl, bucket, now);
+            if (token != null) {
+                this.cache.put(path, isUrl, bucket, hmacKey, token);
+            }
+        }
+        if (token != null) {
+            this.metrics.tokenIssued(this.keyRing.getAlgorithm(), isUrl);
+            return token;
+        }
+
+        TokenWindow window = window(bucket);
+        if (this.startTime != null && window.endTime <= now) {
+            throw failure(EdgeAuthMetrics.Failure.EXPIRED, "Token will have already expired.");
+        }
+        TokenBuffer buffer = generateToken(path, isUrl, window, hmacKey, sampled(), -1L);
+        try {
+            token = buffer.toString();
+        } finally {
+            buffer.release();
+        }
+        this.cache.put(path, isUrl, bucket, hmacKey, token);
+        if (this.sharedCache != null) {
+            this.sharedCache.put(sharedCacheNamespace(hmacKey), path, isUrl, bucket, window.endTime, token);
+        }
+        return token;
+    }
+
+    /**
+     * @param hmacKey key tokens are signed with
+     * @return namespace of the tokens of this signer and {@code hmacKey} in {@code sharedCache}
+     */
+    private long sharedCacheNamespace(HmacKey hmacKey) {
+        SharedCacheNamespace namespace = this.sharedCacheNamespace;
+        if (namespace == null || namespace.hmacKey != hmacKey) {
+            Mac mac = hmacKey.mac();
+            byte[] digest;
+            try {
+                digest = mac.doFinal(this.sharedCacheParameters.getBytes(StandardCharsets.UTF_8));
+            } finally {
+                hmacKey.release(mac);
+            }
+            long id = 0L;
+            for (int i = 0; i < 8; i++) {
+                id = (id << 8) | (digest[i] & 0xff);
+            }
+            namespace = this.sharedCacheNamespace = new SharedCacheNamespace(hmacKey, id);
+        }
+        return namespace.id;
+    }
+
+    /**
+     * Namespace derived from one key, so that a rotation starts a new one.
+     */
+    private static final class SharedCacheNamespace {
+
+        final HmacKey hmacKey;
+
+        final long id;
+
+        SharedCacheNamespace(HmacKey hmacKey, long id) {
+            this.hmacKey = hmacKey;
+            this.id = id;
+        }
+    }
+
+    /**
+     * @param path acl or acl path
+     * @param isUrl is Url?
+     * @param dst destination array
+     * @param offset position in {@code dst} to write to
+     * @return number of chars written
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    private int generateToken(String path, boolean isUrl, char[] dst, int offset) throws EdgeAuthException {
+        TokenBuffer buffer = generateToken(path, isUrl);
+        try {
+            return buffer.writeTo(dst, offset);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * @param path acl or acl path
+     * @param isUrl is Url?
+     * @param dst destination buffer
+     * @return number of bytes written
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    private int generateToken(String path, boolean isUrl, ByteBuffer dst) throws EdgeAuthException {
+        TokenBuffer buffer = generateToken(path, isUrl);
+        try {
+            return buffer.writeTo(dst);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * @param path acl or acl path
+     * @param isUrl is Url?
+     * @param out destination
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    private void generateToken(String path, boolean isUrl, Appendable out) throws EdgeAuthException {
+        TokenBuffer buffer = generateToken(path, isUrl);
+        try {
+            buffer.writeTo(out);
+        } catch (IOException e) {
+            throw failure(EdgeAuthMetrics.Failure.OUTPUT, e.toString());
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * @param url a single path
+     * @throws EdgeAuthException if {@code url} is empty
+     */
+    private void checkURL(String url) throws EdgeAuthException {
+        if (url == null || url.trim().isEmpty()) {
+            throw failure(EdgeAuthMetrics.Failure.MISSING_PATH, "You must provide a URL.");
+        }
+    }
+
+    /**
+     * @param acl access control list (String)
+     * @throws EdgeAuthException if {@code acl} is empty
+     */
+    private void checkACL(String acl) throws EdgeAuthException {
+        if (acl == null || acl.trim().isEmpty()) {
+            throw failure(EdgeAuthMetrics.Failure.MISSING_PATH, "You must provide an ACL.");
+        }
+    }
+
+    /**
+     * Call {@code generateToken}
+     *
+     * @param url a single path
+     * @return authorization token string
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public String generateURLToken(String url) throws EdgeAuthException {
+        checkURL(url);
+        return generateTokenString(url, true);
+    }
+
+    /**
+     * Call {@code generateToken}
+     *
+     * @param acl access control list (String)
+     * @return authorization token string
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public String generateACLToken(String acl) throws EdgeAuthException {
+        checkACL(acl);
+        return generateTokenString(acl, false);
+    }
+
+    /**
+     * Call {@code generateToken}
+     *
+     * @param acl access control list (String[])
+     * @return authorization token string
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public String generateACLToken(String[] acl) throws EdgeAuthException {
+        if (acl == null || acl.length == 0) {
+            throw failure(EdgeAuthMetrics.Failure.MISSING_PATH, "You must provide an ACL.");
+        }
+        return generateTokenString(EdgeAuth.join(this.aclDelimiter, acl), false);
+    }
+
+    /**
+     * Signs the path of {@code url} and appends {@code tokenName=token} to its query string, before any
+     * fragment, with '?' or '&' as needed. Only the path is signed, as for the 'Ignore query string' option.
+     * A relative path is resolved against '/' and dot segments are removed, as a client would before
+     * requesting it.
+     *
+     * @param url absolute http(s) URL ({@code https://host/path?query#fragment}) or a path, with an optional
+     *            query and fragment
+     * @return {@code url} carrying the token
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public String signUrl(String url) throws EdgeAuthException {
+        StringBuilder sb = new StringBuilder(url != null ? url.length() + this.tokenName.length() + 160 : 0);
+        appendSignedUrl(url, null, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends {@code url} carrying {@code tokenName=token} to {@code out}. The one place URLs are canonicalised
+     * and joined with their token, so {@link #signUrl(String)}, {@link EdgeAuthSigningProcessor} and
+     * {@link EdgeAuthCli} sign the same path for the same URL.
+     *
+     * @param url absolute http(s) URL or a path, with an optional query and fragment
+     * @param window st and exp to sign with, or null to sign as of now, through the token cache if there is one
+     * @param out destination
+     * @return index of the token in {@code out}
+     * @throws EdgeAuthException if {@code url} is empty or neither an http(s) URL nor a path
+     */
+    int appendSignedUrl(String url, TokenWindow window, StringBuilder out) throws EdgeAuthException {
+        checkURL(url);
+        String path = EdgeAuthManifestRewriter.signedPath("/", url);
+        if (path == null) {
+            throw failure(EdgeAuthMetrics.Failure.INVALID_URL, "Not an http(s) URL or path: " + url);
+        }
+        int end = url.indexOf('#');
+        if (end < 0) {
+            end = url.length();
+        }
+        int query = url.indexOf('?');
+        if (query > end) {
+            query = -1;
+        }
+        boolean separator = query < 0 || (url.charAt(end - 1) != '?' && url.charAt(end - 1) != '&');
+
+        String cached = window == null && this.cache != null ? generateCachedToken(path, true) : null;
+        TokenBuffer buffer = cached != null ? null
+                : window == null ? generateToken(path, true) : generateToken(path, true, window);
+        try {
+            out.append(url, 0, end);
+            if (separator) {
+                out.append(query < 0 ? '?' : '&');
+            }
+            out.append(this.tokenName).append('=');
+            int tokenStart = out.length();
+            if (cached != null) {
+                out.append(cached);
+            } else {
+                buffer.writeTo(out);
+            }
+            out.append(url, end, url.length());
+            return tokenStart;
+        } finally {
+            if (buffer != null) {
+                buffer.release();
+            }
+        }
+    }
+
+    /**
+     * @param acl access control list (String)
+     * @return {@code tokenName=token} with an ACL token, for a Cookie header
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public String signedCookie(String acl) throws EdgeAuthException {
+        checkACL(acl);
+        if (this.cache != null) {
+            return this.tokenName + '=' + generateCachedToken(acl, false);
+        }
+        TokenBuffer buffer = generateToken(acl, false);
+        try {
+            StringBuilder sb = new StringBuilder(this.tokenName.length() + 1 + buffer.length());
+            buffer.writeTo(sb.append(this.tokenName).append('='));
+            return sb.toString();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Set-Cookie header value carrying an ACL token. The cookie expires with the token:
+     * {@code Max-Age} is the number of seconds left until its {@code exp}.
+     *
+     * @param acl access control list (String)
+     * @param cookiePath Path attribute, or null
+     * @param domain Domain attribute, or null
+     * @param secure whether to add the Secure attribute
+     * @return {@code tokenName=token; Max-Age=seconds[; Path=cookiePath][; Domain=domain][; Secure]; HttpOnly}
+     * @throws EdgeAuthException if {@code cookiePath} or {@code domain} contains ';', ',', CR or LF
+     */
+    public String signedCookie(String acl, String cookiePath, String domain, boolean secure) throws EdgeAuthException {
+        checkACL(acl);
+        checkCookieAttribute("cookiePath", cookiePath);
+        checkCookieAttribute("domain", domain);
+        long now = now();
+        String cached = null;
+        TokenWindow window;
+        if (this.cache != null) {
+            cached = generateCachedToken(acl, false, now);
+            window = window(this.cache.bucketStart(now));
+        } else {
+            window = window(now);
+        }
+        TokenBuffer buffer = cached == null ? generateToken(acl, false, window) : null;
+        try {
+            StringBuilder sb = new StringBuilder(this.tokenName.length() + 64
+                    + (cached != null ? cached.length() : buffer.length())
+                    + (cookiePath != null ? cookiePath.length() : 0) + (domain != null ? domain.length() : 0));
+            sb.append(this.tokenName).append('=');
+            if (cached != null) {
+                sb.append(cached);
+            } else {
+                buffer.writeTo(sb);
+            }
+            sb.append("; Max-Age=").append(Math.max(0L, window.endTime - now));
+            if (cookiePath != null) {
+                sb.append("; Path=").append(cookiePath);
+            }
+            if (domain != null) {
+                sb.append("; Domain=").append(domain);
+            }
+            if (secure) {
+                sb.append("; Secure");
+            }
+            return sb.append("; HttpOnly").toString();
+        } finally {
+            if (buffer != null) {
+                buffer.release();
+            }
+        }
+    }
+
+    /**
+     * @param name name of the attribute
+     * @param value attribute value, or null
+     * @throws EdgeAuthException if {@code value} would end the attribute or the header
+     */
+    private static void checkCookieAttribute(String name, String value) throws EdgeAuthException {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ';' || c == ',' || c == '\r' || c == '\n') {
+                throw new EdgeAuthException(name + " must not contain ';', ',', CR or LF.");
+            }
+        }
+    }
+
+    /**
+     * Generates the tokens of many URLs at once. They share one start and end time and one
+     * signing key, and large batches are spread over the common {@link ForkJoinPool}.
+     *
+     * @param urls single paths
+     * @return authorization token strings in the order of {@code urls}
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public List<String> generateURLTokens(List<String> urls) throws EdgeAuthException {
+        if (urls == null) {
+            throw failure(EdgeAuthMetrics.Failure.MISSING_PATH, "You must provide a URL.");
+        }
+        for (String url : urls) {
+            checkURL(url);
+        }
+        return generateTokens(urls.toArray(new String[0]), true);
+    }
+
+    /**
+     * Generates the tokens of many ACLs at once. They share one start and end time and one
+     * signing key, and large batches are spread over the common {@link ForkJoinPool}.
+     *
+     * @param acls access control lists (String)
+     * @return authorization token strings in the order of {@code acls}
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public List<String> generateACLTokens(List<String> acls) throws EdgeAuthException {
+        if (acls == null) {
+            throw failure(EdgeAuthMetrics.Failure.MISSING_PATH, "You must provide an ACL.");
+        }
+        for (String acl : acls) {
+            checkACL(acl);
+        }
+        return generateTokens(acls.toArray(new String[0]), false);
+    }
+
+    /**
+     * @param paths acls or urls
+     * @param isUrl is Url?
+     * @return authorization token strings in the order of {@code paths}
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    private List<String> generateTokens(String[] paths, boolean isUrl) throws EdgeAuthException {
+        String[] tokens = new String[paths.length];
+        if (paths.length > 0) {
+            BatchTask task = new BatchTask(paths, isUrl, window(now()), this.keyRing.primary(), tokens, 0, paths.length);
+            if (paths.length < BatchTask.PARALLEL_THRESHOLD) {
+                task.sign();
+            } else {
+                ForkJoinPool.commonPool().invoke(task);
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(tokens));
+    }
+
+    /**
+     * Signs {@code paths[from, to)} into {@code tokens}, splitting the range in halves while it is large.
+     * Each worker signs with the {@link javax.crypto.Mac} of its own thread.
+     */
+    private final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        /** batches smaller than this are signed on the calling thread. */
+        static final int PARALLEL_THRESHOLD = 256;
+
+        /** ranges smaller than this are not split any further. */
+        private static final int SPLIT_THRESHOLD = 64;
+
+        private final String[] paths;
+        private final boolean isUrl;
+        private final TokenWindow window;
+        private final HmacKey hmacKey;
+        private final String[] tokens;
+        private final int from;
+        private final int to;
+
+        BatchTask(String[] paths, boolean isUrl, TokenWindow window, HmacKey hmacKey,
+                  String[] tokens, int from, int to) {
+            this.paths = paths;
+            this.isUrl = isUrl;
+            this.window = window;
+            this.hmacKey = hmacKey;
+            this.tokens = tokens;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Splits large ranges even when run by the thread that called {@code invoke}, which
+         * may take the task back off the pool queue: {@code invokeAll} then forks into the common pool.
+         */
+        @Override
+        protected void compute() {
+            if (this.to - this.from > SPLIT_THRESHOLD) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new BatchTask(this.paths, this.isUrl, this.window, this.hmacKey, this.tokens, this.from, middle),
+                        new BatchTask(this.paths, this.isUrl, this.window, this.hmacKey, this.tokens, middle, this.to));
+                return;
+            }
+            sign();
+        }
+
+        /**
+         * Signs the whole range on the current thread.
+         */
+        void sign() {
+            for (int i = this.from; i < this.to; i++) {
+                TokenBuffer buffer = generateToken(this.paths[i], this.isUrl, this.window, this.hmacKey, sampled(), -1L);
+                try {
+                    this.tokens[i] = buffer.toString();
+                } finally {
+                    buffer.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the token to {@code dst} without creating any string.
+     *
+     * @param url a single path
+     * @param dst destination array
+     * @param offset position in {@code dst} to write to
+     * @return number of chars written
+     * @throws EdgeAuthException EdgeAuthException
+     * @throws IndexOutOfBoundsException if {@code dst} is too small
+     */
+    public int generateURLToken(String url, char[] dst, int offset) throws EdgeAuthException {
+        checkURL(url);
+        return generateToken(url, true, dst, offset);
+    }
+
+    /**
+     * Writes the token to {@code dst} from its position. The token is plain ASCII
+     * unless {@code escapeEarly} is off and the input carries non-ASCII characters, which are written as UTF-8.
+     *
+     * @param url a single path
+     * @param dst destination buffer
+     * @return number of bytes written
+     * @throws EdgeAuthException EdgeAuthException
+     * @throws java.nio.BufferOverflowException if {@code dst} is too small
+     */
+    public int generateURLToken(String url, ByteBuffer dst) throws EdgeAuthException {
+        checkURL(url);
+        return generateToken(url, true, dst);
+    }
+
+    /**
+     * Appends the token to {@code out}. {@link StringBuilder}, {@link java.io.Writer} and
+     * {@link java.nio.CharBuffer} receive it without any copy in between.
+     *
+     * @param url a single path
+     * @param out destination
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public void generateURLToken(String url, Appendable out) throws EdgeAuthException {
+        checkURL(url);
+        generateToken(url, true, out);
+    }
+
+    /**
+     * Writes the token to {@code dst} without creating any string.
+     *
+     * @param acl access control list (String)
+     * @param dst destination array
+     * @param offset position in {@code dst} to write to
+     * @return number of chars written
+     * @throws EdgeAuthException EdgeAuthException
+     * @throws IndexOutOfBoundsException if {@code dst} is too small
+     */
+    public int generateACLToken(String acl, char[] dst, int offset) throws EdgeAuthException {
+        checkACL(acl);
+        return generateToken(acl, false, dst, offset);
+    }
+
+    /**
+     * Writes the token to {@code dst} from its position. The token is plain ASCII
+     * unless {@code escapeEarly} is off and the input carries non-ASCII characters, which are written as UTF-8.
+     *
+     * @param acl access control list (String)
+     * @param dst destination buffer
+     * @return number of bytes written
+     * @throws EdgeAuthException EdgeAuthException
+     * @throws java.nio.BufferOverflowException if {@code dst} is too small
+     */
+    public int generateACLToken(String acl, ByteBuffer dst) throws EdgeAuthException {
+        checkACL(acl);
+        return generateToken(acl, false, dst);
+    }
+
+    /**
+     * Appends the token to {@code out}. {@link StringBuilder}, {@link java.io.Writer} and
+     * {@link java.nio.CharBuffer} receive it without any copy in between.
+     *
+     * @param acl access control list (String)
+     * @param out destination
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public void generateACLToken(String acl, Appendable out) throws EdgeAuthException {
+        checkACL(acl);
+        generateToken(acl, false, out);
+    }
+
+    /**
+     * @return tokenType
+     */
+    public String getTokenType() {
+        return this.tokenType;
+    }
+
+    /**
+     * @return tokenName
+     */
+    public String getTokenName() {
+        return this.tokenName;
+    }
+
+    /**
+     * @return algorithm
+     */
+    public String getAlgorithm() {
+        return this.keyRing.getAlgorithm();
+    }
+
+    /**
+     * @return provider computing the HMACs
+     */
+    public Provider getProvider() {
+        return this.keyRing.getProvider();
+    }
+
+    /**
+     * @return salt
+     */
+    public String getSalt() {
+        return this.salt;
+    }
+
+    /**
+     * @return ip
+     */
+    public String getIp() {
+        return this.ip;
+    }
+
+    /**
+     * @return payload
+     */
+    public String getPayload() {
+        return this.payload;
+    }
+
+    /**
+     * @return sessionId
+     */
+    public String getSessionId() {
+        return this.sessionId;
+    }
+
+    /**
+     * @return startTime
+     */
+    public Long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * @return endTime
+     */
+    public Long getEndTime() {
+        return this.endTime;
+    }
+
+    /**
+     * @return windowSeconds
+     */
+    public Long getWindowSeconds() {
+        return this.windowSeconds;
+    }
+
+    /**
+     * @return fieldDelimiter
+     */
+    public char getFieldDelimiter() {
+        return this.fieldDelimiter;
+    }
+
+    /**
+     * @return aclDelimiter
+     */
+    public char getAclDelimiter() {
+        return this.aclDelimiter;
+    }
+
+    /**
+     * @return escapeEarly
+     */
+    public boolean isEscapeEarly() {
+        return this.escapeEarly;
+    }
+
+    /**
+     * @return verbose
+     */
+    public boolean isVerbose() {
+        return this.verbose;
+    }
+
+    /**
+     * @return clock
+     */
+    public EdgeAuthClock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * @return metrics
+     */
+    public EdgeAuthMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @return tracer, or null if none
+     */
+    public EdgeAuthTracer getTracer() {
+        return this.tracer;
+    }
+
+    /**
+     * @return traceSampleRate
+     */
+    public int getTraceSampleRate() {
+        return this.traceSampleRate;
+    }
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+
+/**
+ * Reactive Streams {@link Processor} signing a stream of URLs (or ACLs) with an {@link EdgeAuthSigner},
+ * for unbounded sources such as a catalog sync, without buffering the stream.
+ *
+ * It only requests as many items from upstream as its subscriber has requested, and never holds more than
+ * {@code batchSize * parallelism} of them. Items are signed in batches of {@code batchSize}, sharing one
+ * st/exp resolution and the thread's {@code Mac}; a smaller batch is only signed when upstream has completed
+ * or every item the subscriber asked for has arrived. Up to {@code parallelism} batches are signed at once
+ * on the executor, and the tokens are emitted in input order.
+ * An item that cannot be signed cancels upstream and fails the stream with its {@link EdgeAuthException}.
+ *
+ * It accepts one subscriber. The Reactive Streams API is an optional dependency
+ * ({@code org.reactivestreams:reactive-streams}); on Java 9+ {@code FlowAdapters.toFlowProcessor}
+ * turns it into a {@code java.util.concurrent.Flow.Processor}. To sign with an {@link EdgeAuth},
+ * pass {@link EdgeAuth#toSigner()}.
+ */
+public final class EdgeAuthSigningProcessor implements Processor<String, EdgeAuthSigningProcessor.SignedToken> {
+
+    /** items per batch when none is given. */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /** subscription handed to a rejected subscriber. */
+    private static final Subscription EMPTY = new Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final EdgeAuthSigner signer;
+
+    /** true to sign ACLs, false to sign URLs. */
+    private final boolean acl;
+
+    private final Executor executor;
+
+    private final int batchSize;
+
+    private final int parallelism;
+
+    /** most items requested from upstream but not yet emitted. */
+    private final long capacity;
+
+    private final AtomicReference<Subscription> upstream = new AtomicReference<>();
+
+    private final AtomicReference<Subscriber<? super SignedToken>> downstream = new AtomicReference<>();
+
+    /** set once the subscriber returned from {@code onSubscribe}. */
+    private volatile boolean subscribed;
+
+    /** items requested by the subscriber, capped at {@link Long#MAX_VALUE}. */
+    private final AtomicLong demand = new AtomicLong();
+
+    /** items delivered by {@code onNext} and not yet taken by the draining thread. */
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+    /** set by {@code onComplete} and {@code onError}. */
+    private volatile boolean upstreamDone;
+
+    /** error to end the stream with. */
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    /** set when the subscriber cancelled or the stream ended. */
+    private volatile boolean cancelled;
+
+    /** number of drain requests; only the caller raising it from 0 drains. */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    // accessed by the draining thread only
+
+    /** batches not fully emitted, in input order. */
+    private final Queue<Batch> batches = new ArrayDeque<>();
+
+    /** items taken from {@code pending} and not yet in a batch. */
+    private final Queue<String> staged = new ArrayDeque<>();
+
+    /** items requested from upstream. */
+    private long requested;
+
+    /** items received from upstream. */
+    private long received;
+
+    /** items emitted to the subscriber. */
+    private long emitted;
+
+    /**
+     * Signs on the threads delivering items and requests, one batch at a time.
+     *
+     * @param signer signer
+     * @param acl true to sign ACLs, false to sign URLs
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthSigningProcessor(EdgeAuthSigner signer, boolean acl) throws EdgeAuthException {
+        this(signer, acl, Runnable::run, DEFAULT_BATCH_SIZE, 1);
+    }
+
+    /**
+     * @param signer signer
+     * @param acl true to sign ACLs, false to sign URLs
+     * @param executor executor signing the batches
+     * @param batchSize most items signed per batch
+     * @param parallelism most batches signed at once
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthSigningProcessor(EdgeAuthSigner signer, boolean acl, Executor executor, int batchSize,
+            int parallelism) throws EdgeAuthException {
+        if (signer == null || executor == null) {
+            throw new EdgeAuthException("You must provide a signer and an executor.");
+        }
+        if (batchSize <= 0 || parallelism <= 0) {
+            throw new EdgeAuthException("batchSize and parallelism must be ( > 0 )");
+        }
+        this.signer = signer;
+        this.acl = acl;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.capacity = (long) batchSize * parallelism;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super SignedToken> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!this.downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(EMPTY);
+            subscriber.onError(new IllegalStateException("EdgeAuthSigningProcessor accepts one subscriber."));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("Requested " + n + " items; it must be ( > 0 )"));
+                    return;
+                }
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!demand.compareAndSet(current, next));
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                drain();
+            }
+        });
+        this.subscribed = true;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("subscription");
+        }
+        if (!this.upstream.compareAndSet(null, subscription) || this.cancelled) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(String item) {
+        if (item == null) {
+            throw new NullPointerException("item");
+        }
+        this.pending.offer(item);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (t == null) {
+            throw new NullPointerException("throwable");
+        }
+        this.error.compareAndSet(null, t);
+        this.upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        this.upstreamDone = true;
+        drain();
+    }
+
+    /**
+     * Ends the stream with {@code cause} and cancels upstream.
+     *
+     * @param cause error for the subscriber
+     */
+    private void fail(Throwable cause) {
+        this.error.compareAndSet(null, cause);
+        cancelUpstream();
+        drain();
+    }
+
+    private void cancelUpstream() {
+        Subscription subscription = this.upstream.get();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Emits signed tokens in order, starts batches and requests items, on one thread at a time.
+     */
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            if (this.subscribed) {
+                drainLoop();
+            }
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainLoop() {
+        Subscriber<? super SignedToken> subscriber = this.downstream.get();
+        while (true) {
+            if (this.cancelled) {
+                this.pending.clear();
+                this.staged.clear();
+                this.batches.clear();
+                return;
+            }
+            Throwable t = this.error.get();
+            if (t != null) {
+                this.cancelled = true;
+                this.pending.clear();
+                this.staged.clear();
+                this.batches.clear();
+                subscriber.onError(t);
+                return;
+            }
+
+            long demand = this.demand.get();
+            Batch batch;
+            while ((batch = this.batches.peek()) != null && batch.done) {
+                if (batch.next == batch.length) {
+                    if (batch.error != null) {
+                        fail(batch.error);
+                        break;
+                    }
+                    this.batches.poll();
+                    continue;
+                }
+                if (this.emitted == demand) {
+                    break;
+                }
+                SignedToken token = batch.results[batch.next];
+                batch.results[batch.next++] = null;
+                this.emitted++;
+                subscriber.onNext(token);
+                if (this.cancelled) {
+                    break;
+                }
+            }
+            if (this.cancelled || this.error.get() != null) {
+                continue;
+            }
+
+            boolean done = this.upstreamDone;
+            for (String item; (item = this.pending.poll()) != null; ) {
+                this.staged.offer(item);
+                this.received++;
+            }
+            // a partial batch waits for more items, unless none are coming or the subscriber wants no more yet
+            if (this.batches.size() < this.parallelism && !this.staged.isEmpty()
+                    && (this.staged.size() >= this.batchSize || done || this.received >= demand)) {
+                List<String> items = new ArrayList<>();
+                for (String item; items.size() < this.batchSize && (item = this.staged.poll()) != null; ) {
+                    items.add(item);
+                }
+                batch = new Batch(items.toArray(new String[0]));
+                this.batches.offer(batch);
+                try {
+                    this.executor.execute(batch);
+                } catch (RejectedExecutionException e) {
+                    fail(new EdgeAuthException("Cannot sign: " + e));
+                }
+                continue;
+            }
+            if (done && this.staged.isEmpty() && this.batches.isEmpty()) {
+                this.cancelled = true;
+                subscriber.onComplete();
+                return;
+            }
+
+            Subscription subscription = this.upstream.get();
+            if (subscription != null && !done) {
+                long inPipeline = this.requested - this.emitted;
+                long toRequest = Math.min(demand - this.emitted, this.capacity) - inPipeline;
+                if (toRequest > 0 && (toRequest >= this.batchSize || this.received == this.requested)) {
+                    this.requested += toRequest;
+                    subscription.request(toRequest);
+                    continue;
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Items signed together with one st/exp, emitted in order once {@code done}.
+     */
+    private final class Batch implements Runnable {
+
+        final String[] items;
+
+        final SignedToken[] results;
+
+        /** number of signed items, less than {@code items.length} if one failed. */
+        int length;
+
+        /** why item {@code length} failed, or null. */
+        Throwable error;
+
+        /** set after {@code results}, {@code length} and {@code error}. */
+        volatile boolean done;
+
+        /** next result to emit. (draining thread only) */
+        int next;
+
+        Batch(String[] items) {
+            this.items = items;
+            this.results = new SignedToken[items.length];
+        }
+
+        @Override
+        public void run() {
+            try {
+                TokenWindow window = signer.window(signer.getClock().epochSeconds());
+                for (String item : this.items) {
+                    this.results[this.length] = sign(item, window);
+                    this.length++;
+                }
+            } catch (EdgeAuthException | RuntimeException e) {
+                this.error = e;
+            }
+            this.done = true;
+            drain();
+        }
+    }
+
+    /**
+     * @param item url or acl
+     * @param window resolved st and exp of the batch
+     * @return signed token
+     * @throws EdgeAuthException if {@code item} is not an http(s) URL or path
+     */
+    private SignedToken sign(String item, TokenWindow window) throws EdgeAuthException {
+        if (!this.acl) {
+            StringBuilder sb = new StringBuilder(item.length() + 192);
+            int tokenStart = this.signer.appendSignedUrl(item, window, sb);
+            int fragment = item.indexOf('#');
+            int tokenEnd = sb.length() - (fragment < 0 ? 0 : item.length() - fragment);
+            String signedUrl = sb.toString();
+            String token = signedUrl.substring(tokenStart, tokenEnd);
+            return new SignedToken(item, this.signer.getTokenName(), token, signedUrl);
+        }
+        if (item.isEmpty()) {
+            throw new EdgeAuthException("You must provide an ACL.");
+        }
+        TokenBuffer buffer = this.signer.generateToken(item, false, window);
+        try {
+            return new SignedToken(item, this.signer.getTokenName(), buffer.toString(), null);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * @return signer
+     */
+    public EdgeAuthSigner getSigner() {
+        return this.signer;
+    }
+
+    /**
+     * @return batchSize
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * @return parallelism
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * A URL or ACL with its token.
+     */
+    public static final class SignedToken {
+
+        private final String input;
+
+        private final String tokenName;
+
+        private final String token;
+
+        /** input carrying the token, or null for an ACL token. */
+        private final String signedUrl;
+
+        SignedToken(String input, String tokenName, String token, String signedUrl) {
+            this.input = input;
+            this.tokenName = tokenName;
+            this.token = token;
+            this.signedUrl = signedUrl;
+        }
+
+        /**
+         * @return url or acl as received
+         */
+        public String getInput() {
+            return this.input;
+        }
+
+        /**
+         * @return token, without the token name
+         */
+        public String getToken() {
+            return this.token;
+        }
+
+        /**
+         * @return true for a URL token, false for an ACL token
+         */
+        public boolean isUrl() {
+            return this.signedUrl != null;
+        }
+
+        /**
+         * @return the URL with {@code tokenName=token} added to its query string, or null for an ACL token
+         */
+        public String getSignedUrl() {
+            return this.signedUrl;
+        }
+
+        @Override
+        public String toString() {
+            return this.tokenName + "=" + this.token;
+        }
+    }
+}
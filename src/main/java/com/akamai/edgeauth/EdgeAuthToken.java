@@ -0,0 +1,330 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * A parsed token. It keeps the offsets of every field in the original chars rather than
+ * copying them, so parsing does not create any substring. String values are only created
+ * when their getter is called. Use {@link EdgeAuthValidator#parse(CharSequence)} to get one.
+ */
+public final class EdgeAuthToken {
+
+    /** field names in the order {@code generateToken} writes them. */
+    private static final String[] NAMES = { "ip", "st", "exp", "acl", "id", "data", "hmac" };
+
+    static final int IP = 0;
+    static final int ST = 1;
+    static final int EXP = 2;
+    static final int ACL = 3;
+    static final int ID = 4;
+    static final int DATA = 5;
+    static final int HMAC = 6;
+
+    /** the token as received. */
+    private final CharSequence source;
+
+    /** start of each field value in {@code source}, or -1 if the field is absent. */
+    private final int[] starts = new int[NAMES.length];
+
+    /** end of each field value in {@code source}. */
+    private final int[] ends = new int[NAMES.length];
+
+    /** start of the {@code hmac} field, which is where the hash source ends. */
+    private int hmacFieldStart;
+
+    /** st field. ({@code -1} if absent) */
+    private long startTime = -1;
+
+    /** exp field. */
+    private long endTime;
+
+    /**
+     * @param source the token as received
+     */
+    private EdgeAuthToken(CharSequence source) {
+        this.source = source;
+    }
+
+    /**
+     * @param token token chars
+     * @param fieldDelimiter character used to delimit token body fields
+     * @return the parsed token, or null if it is malformed
+     */
+    static EdgeAuthToken parse(CharSequence token, char fieldDelimiter) {
+        EdgeAuthToken parsed = new EdgeAuthToken(token);
+        int[] starts = parsed.starts;
+        int[] ends = parsed.ends;
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = -1;
+        }
+
+        int length = token.length();
+        int pos = 0;
+        int last = -1;
+        while (pos < length) {
+            int fieldStart = pos;
+            int field = fieldAt(token, pos, length);
+            if (field == NAMES.length || field <= last) {
+                // unknown, repeated or out of order
+                return null;
+            }
+            pos += NAMES[field].length() + 1;
+            int end = pos;
+            if (field == HMAC) {
+                // hmac always comes last, so the delimiter cannot end it
+                end = length;
+            } else {
+                while (end < length && token.charAt(end) != fieldDelimiter) {
+                    end++;
+                }
+                if (end == length) {
+                    return null;
+                }
+            }
+            starts[field] = pos;
+            ends[field] = end;
+            if (field == HMAC) {
+                parsed.hmacFieldStart = fieldStart;
+            }
+            last = field;
+            pos = end + 1;
+        }
+
+        if (starts[EXP] < 0 || starts[HMAC] < 0 || ends[HMAC] == starts[HMAC]) {
+            return null;
+        }
+        parsed.endTime = parseTime(token, starts[EXP], ends[EXP]);
+        if (parsed.endTime < 0) {
+            return null;
+        }
+        if (starts[ST] >= 0) {
+            parsed.startTime = parseTime(token, starts[ST], ends[ST]);
+            if (parsed.startTime < 0) {
+                return null;
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * @param token token bytes from the buffer position to its limit. They are not copied
+     *              and the position is left as it is.
+     * @param fieldDelimiter character used to delimit token body fields
+     * @return the parsed token, or null if it is malformed
+     */
+    static EdgeAuthToken parse(ByteBuffer token, char fieldDelimiter) {
+        return parse(new AsciiSequence(token, token.position(), token.limit()), fieldDelimiter);
+    }
+
+    /**
+     * @param token token chars
+     * @param pos start of a field
+     * @param length length of {@code token}
+     * @return index of the field name followed by '=', or {@code NAMES.length} if unknown
+     */
+    private static int fieldAt(CharSequence token, int pos, int length) {
+        for (int field = 0; field < NAMES.length; field++) {
+            String name = NAMES[field];
+            int n = name.length();
+            if (pos + n < length && token.charAt(pos + n) == '=') {
+                boolean matches = true;
+                for (int i = 0; i < n && matches; i++) {
+                    matches = token.charAt(pos + i) == name.charAt(i);
+                }
+                if (matches) {
+                    return field;
+                }
+            }
+        }
+        return NAMES.length;
+    }
+
+    /**
+     * @param token token chars
+     * @param start first digit
+     * @param end char to stop before
+     * @return the decimal value, or -1 if it is not a valid time
+     */
+    private static long parseTime(CharSequence token, int start, int end) {
+        if (start == end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * @return the token as received
+     */
+    CharSequence source() {
+        return this.source;
+    }
+
+    /**
+     * @return end of the hash source part of the token, which includes the delimiter before {@code hmac}
+     */
+    int hmacFieldStart() {
+        return this.hmacFieldStart;
+    }
+
+    /**
+     * @param field field index
+     * @return start of the field value, or -1 if the field is absent
+     */
+    int start(int field) {
+        return this.starts[field];
+    }
+
+    /**
+     * @param field field index
+     * @return end of the field value
+     */
+    int end(int field) {
+        return this.ends[field];
+    }
+
+    /**
+     * @param field field index
+     * @return field value, or null if the field is absent
+     */
+    private String value(int field) {
+        int start = this.starts[field];
+        return start < 0 ? null : this.source.subSequence(start, this.ends[field]).toString();
+    }
+
+    /**
+     * @return st field, or null if the token has none
+     */
+    public Long getStartTime() {
+        return this.startTime < 0 ? null : this.startTime;
+    }
+
+    /**
+     * @return exp field
+     */
+    public long getEndTime() {
+        return this.endTime;
+    }
+
+    /**
+     * @return ip field as found in the token, or null
+     */
+    public String getIp() {
+        return value(IP);
+    }
+
+    /**
+     * @return acl field as found in the token (escaped if it was generated with escapeEarly), or null
+     */
+    public String getAcl() {
+        return value(ACL);
+    }
+
+    /**
+     * @return id field as found in the token, or null
+     */
+    public String getSessionId() {
+        return value(ID);
+    }
+
+    /**
+     * @return data field as found in the token, or null
+     */
+    public String getPayload() {
+        return value(DATA);
+    }
+
+    /**
+     * @return hmac field
+     */
+    public String getHmac() {
+        return value(HMAC);
+    }
+
+    /**
+     * @return true if the token carries an acl field
+     */
+    public boolean isAclToken() {
+        return this.starts[ACL] >= 0;
+    }
+
+    /**
+     * @return the token as received
+     */
+    @Override
+    public String toString() {
+        return this.source.toString();
+    }
+
+    /**
+     * Read-only view of ASCII bytes as chars, used to parse a {@link ByteBuffer} in place.
+     */
+    static final class AsciiSequence implements CharSequence {
+
+        private final ByteBuffer bytes;
+
+        private final int start;
+
+        private final int end;
+
+        /**
+         * @param bytes buffer to read with absolute gets
+         * @param start index of the first byte
+         * @param end index of the byte to stop before
+         */
+        AsciiSequence(ByteBuffer bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return this.end - this.start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (this.bytes.get(this.start + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiSequence(this.bytes, this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Timings and parameters of one sampled token, handed to an {@link EdgeAuthTracer}.
+ * Parameters are read from the signer only when asked for, and never include the key or the salt.
+ */
+public final class EdgeAuthTrace {
+
+    /** text shown instead of a secret. */
+    private static final String REDACTED = "(redacted)";
+
+    private final EdgeAuthSigner signer;
+
+    private final String path;
+
+    private final boolean isUrl;
+
+    private final TokenWindow window;
+
+    private final long windowNanos;
+
+    /** timings of {@link TokenTemplate#sign}. */
+    private final long[] nanos;
+
+    /**
+     * @param signer signer of the token
+     * @param path acl or url
+     * @param isUrl is Url?
+     * @param window resolved st and exp
+     * @param windowNanos nanoseconds spent resolving {@code window}, or -1 if it was shared with other tokens
+     * @param nanos timings of {@link TokenTemplate#sign}
+     */
+    EdgeAuthTrace(EdgeAuthSigner signer, String path, boolean isUrl, TokenWindow window, long windowNanos, long[] nanos) {
+        this.signer = signer;
+        this.path = path;
+        this.isUrl = isUrl;
+        this.window = window;
+        this.windowNanos = windowNanos;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return signer of the token
+     */
+    public EdgeAuthSigner getSigner() {
+        return this.signer;
+    }
+
+    /**
+     * @return url or acl the token was made for, before escaping
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * @return true for a URL token, false for an ACL token
+     */
+    public boolean isUrl() {
+        return this.isUrl;
+    }
+
+    /**
+     * @return {@code st} of the token, or -1 if it has none
+     */
+    public long getStartTime() {
+        return this.window.startTime;
+    }
+
+    /**
+     * @return {@code exp} of the token
+     */
+    public long getEndTime() {
+        return this.window.endTime;
+    }
+
+    /**
+     * @return nanoseconds spent reading the clock and resolving {@code st} and {@code exp},
+     *         or -1 if they were resolved once for a batch or cache bucket
+     */
+    public long getTimeNanos() {
+        return this.windowNanos;
+    }
+
+    /**
+     * @return nanoseconds spent url encoding the path, 0 without {@code escapeEarly}
+     */
+    public long getEscapeNanos() {
+        return this.nanos[TokenTemplate.ESCAPE_NANOS];
+    }
+
+    /**
+     * @return nanoseconds spent assembling the token body and the hash source, without escaping
+     */
+    public long getHashSourceNanos() {
+        return this.nanos[TokenTemplate.HASH_SOURCE_NANOS];
+    }
+
+    /**
+     * @return nanoseconds spent computing the HMAC
+     */
+    public long getHmacNanos() {
+        return this.nanos[TokenTemplate.HMAC_NANOS];
+    }
+
+    /**
+     * @return nanoseconds spent appending the hex digest
+     */
+    public long getHexNanos() {
+        return this.nanos[TokenTemplate.HEX_NANOS];
+    }
+
+    /**
+     * @return parameters of the signer by name, the key and salt redacted
+     */
+    public Map<String, Object> getParameters() {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("Token Type", this.signer.getTokenType());
+        parameters.put("Token Name", this.signer.getTokenName());
+        parameters.put("Key/Secret", REDACTED);
+        parameters.put("Algo", this.signer.getAlgorithm());
+        parameters.put("Provider", this.signer.getProvider().getName());
+        parameters.put("Salt", this.signer.getSalt() != null ? REDACTED : null);
+        parameters.put("IP", this.signer.getIp());
+        parameters.put("Payload", this.signer.getPayload());
+        parameters.put("Session ID", this.signer.getSessionId());
+        parameters.put("Start Time", this.signer.getStartTime());
+        parameters.put("Window(seconds)", this.signer.getWindowSeconds());
+        parameters.put("End Time", this.signer.getEndTime());
+        parameters.put("Field Delimiter", this.signer.getFieldDelimiter());
+        parameters.put("ACL Delimiter", this.signer.getAclDelimiter());
+        parameters.put("Escape Early", this.signer.isEscapeEarly());
+        return parameters;
+    }
+
+    /**
+     * @return parameters and timings, one per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Akamai Token Generation Parameters");
+        line(sb, this.isUrl ? "URL" : "ACL", this.path);
+        for (Map.Entry<String, Object> parameter : getParameters().entrySet()) {
+            line(sb, parameter.getKey(), parameter.getValue());
+        }
+        line(sb, "st", getStartTime());
+        line(sb, "exp", getEndTime());
+        sb.append("\nAkamai Token Generation Timings (ns)");
+        line(sb, "Time", getTimeNanos());
+        line(sb, "Escape", getEscapeNanos());
+        line(sb, "Hash Source", getHashSourceNanos());
+        line(sb, "HMAC", getHmacNanos());
+        line(sb, "Hex", getHexNanos());
+        return sb.toString();
+    }
+
+    /**
+     * @param sb output
+     * @param name name, padded to a column
+     * @param value value
+     */
+    private static void line(StringBuilder sb, String name, Object value) {
+        sb.append("\n    ").append(name);
+        for (int i = name.length(); i < 16; i++) {
+            sb.append(' ');
+        }
+        sb.append(": ").append(value);
+    }
+}
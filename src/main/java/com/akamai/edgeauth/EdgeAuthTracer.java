@@ -0,0 +1,38 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+
+/**
+ * Receives a sample of the tokens a signer generates, with the time each part took and the
+ * parameters they were made with. Signers pick about one call in {@code traceSampleRate} and only
+ * then read the time and create the {@link EdgeAuthTrace}, so tracing costs nothing on the others.
+ * Called on the signing threads; implementations must be thread-safe.
+ * Pass one to {@link EdgeAuthBuilder#tracer(EdgeAuthTracer)}.
+ */
+@FunctionalInterface
+public interface EdgeAuthTracer {
+
+    /** Prints every trace to {@code System.out}. {@code verbose} traces every call with it. */
+    EdgeAuthTracer STDOUT = trace -> System.out.println(trace);
+
+    /**
+     * @param trace sampled token
+     */
+    void traced(EdgeAuthTrace trace);
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.security.Provider;
+import javax.crypto.Mac;
+
+
+/**
+ * Verifies tokens made by {@link EdgeAuth} or {@link EdgeAuthSigner}. It recomputes the HMAC
+ * over the same layout {@code generateToken} uses, compares digests in constant time and
+ * checks the {@code st}/{@code exp} window. Instances are immutable and thread-safe.
+ * You can build an instance using {@link EdgeAuthBuilder#buildValidator()}.
+ *
+ * The {@code ip} field is covered by the HMAC but not compared with the client address;
+ * use {@link EdgeAuthToken#getIp()} for that.
+ */
+public final class EdgeAuthValidator {
+
+    /**
+     * Outcome of a validation.
+     */
+    public enum Result {
+        /** the token is authentic and within its time window. */
+        VALID,
+        /** the token could not be parsed. */
+        MALFORMED,
+        /** the HMAC does not match, so the token was not made with this key and options, or for this URL. */
+        INVALID_HMAC,
+        /** the token's {@code st} is in the future. */
+        NOT_YET_VALID,
+        /** the token's {@code exp} has passed. */
+        EXPIRED,
+        /** the token is authentic and current, but its acl does not cover the request path. */
+        ACL_MISMATCH,
+        /** the single-use token (with an {@code id}) was valid but has been used before. */
+        REPLAYED,
+    }
+
+    /** parameter name for the token. */
+    private final String tokenName;
+
+    /** decoded secrets bound to the algorithm. Any of them may have signed a token. */
+    private final EdgeAuthKeyRing keyRing;
+
+    /** additional data validated by the token but NOT included in the token body. */
+    private final String salt;
+
+    /** character used to delimit token body fields. */
+    private final char fieldDelimiter;
+
+    /** Character used to delimit acl. */
+    private final char aclDelimiter;
+
+    /** whether the url was url encoded before being signed. */
+    private final boolean escapeEarly;
+
+    /** source of the current time. */
+    private final EdgeAuthClock clock;
+
+    /** listener of validation results and stage latencies. */
+    private final EdgeAuthMetrics metrics;
+
+    /** tokens verified by {@code validateRequest}, or null. */
+    private final VerificationCache cache;
+
+    /** seen single-use tokens, or null to allow reuse. */
+    private final EdgeAuthReplayGuard replayGuard;
+
+    /**
+     * @param tokenName Name for the token
+     * @param key Secret required to verify the token. It must be hexadecimal digit string with even-length
+     * @param algorithm Algorithm used to generate the token (sha1, sha256, or md5)
+     * @param keyRing Keys to accept instead of {@code key} and {@code algorithm}. (Optional)
+     * @param salt Additional data validated by the token but NOT included in the token body
+     * @param fieldDelimiter Character used to delimit token body fields
+     * @param aclDelimiter Character used to delimit acl
+     * @param escapeEarly Whether strings were url encoded before being used
+     * @param clock Source of the current time
+     * @param metrics Listener of validation results and stage latencies
+     * @param verificationCacheSize Maximum number of verified tokens {@code validateRequest} remembers, or 0 for none
+     * @param replayGuard Store of seen single-use tokens. (Optional)
+     * @param provider Provider computing the HMACs, unless {@code keyRing} is given. (Optional)
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    EdgeAuthValidator(
+            String tokenName,
+            String key,
+            String algorithm,
+            EdgeAuthKeyRing keyRing,
+            String salt,
+            char fieldDelimiter,
+            char aclDelimiter,
+            boolean escapeEarly,
+            EdgeAuthClock clock,
+            EdgeAuthMetrics metrics,
+            int verificationCacheSize,
+            EdgeAuthReplayGuard replayGuard,
+            Provider provider) throws EdgeAuthException
+    {
+        if (tokenName == null || tokenName.trim().isEmpty()) {
+            throw new EdgeAuthException("You must provide a token name.");
+        }
+        this.tokenName = tokenName;
+        this.keyRing = keyRing != null ? keyRing : new EdgeAuthKeyRing(algorithm, provider, key);
+        this.salt = salt;
+        this.fieldDelimiter = fieldDelimiter;
+        this.aclDelimiter = aclDelimiter;
+        this.escapeEarly = escapeEarly;
+        this.clock = clock != null ? clock : EdgeAuthClock.SYSTEM;
+        this.metrics = metrics != null ? metrics : EdgeAuthMetrics.NOOP;
+        if (verificationCacheSize < 0) {
+            throw new EdgeAuthException("verificationCacheSize must be ( >= 0 )");
+        }
+        this.cache = verificationCacheSize > 0 ? new VerificationCache(verificationCacheSize) : null;
+        this.replayGuard = replayGuard;
+    }
+
+    /**
+     * Parses a token without verifying it.
+     *
+     * @param token token chars
+     * @return the parsed token, or null if it is malformed
+     */
+    public EdgeAuthToken parse(CharSequence token) {
+        return token == null ? null : EdgeAuthToken.parse(token, this.fieldDelimiter);
+    }
+
+    /**
+     * Parses the token bytes between the position and the limit of {@code token} in place.
+     * The parsed token reads from {@code token}, which must not change while it is in use.
+     *
+     * @param token ASCII token bytes
+     * @return the parsed token, or null if it is malformed
+     */
+    public EdgeAuthToken parse(ByteBuffer token) {
+        return token == null ? null : EdgeAuthToken.parse(token, this.fieldDelimiter);
+    }
+
+    /**
+     * @param token token made by {@code generateURLToken}
+     * @param url the path the token must have been generated for
+     * @return {@link Result}
+     */
+    public Result validateURLToken(CharSequence token, String url) {
+        return validate(parse(token), url);
+    }
+
+    /**
+     * @param token ASCII token bytes made by {@code generateURLToken}, between position and limit
+     * @param url the path the token must have been generated for
+     * @return {@link Result}
+     */
+    public Result validateURLToken(ByteBuffer token, String url) {
+        return validate(parse(token), url);
+    }
+
+    /**
+     * Verifies an ACL token. Whether the request path is covered by its acl is up to the caller.
+     *
+     * @param token token made by {@code generateACLToken}
+     * @return {@link Result}
+     */
+    public Result validateACLToken(CharSequence token) {
+        return validate(parse(token), null);
+    }
+
+    /**
+     * Verifies an ACL token. Whether the request path is covered by its acl is up to the caller.
+     *
+     * @param token ASCII token bytes made by {@code generateACLToken}, between position and limit
+     * @return {@link Result}
+     */
+    public Result validateACLToken(ByteBuffer token) {
+        return validate(parse(token), null);
+    }
+
+    /**
+     * Verifies a token presented with a request for {@code path}, as an origin does after the edge:
+     * a URL token must have been generated for {@code path}, and the acl of an ACL token must cover it.
+     * With a verification cache, a token that passed before only has its time window and path checked.
+     *
+     * @param token token from the query string, a cookie or a header
+     * @param path request path, decoded
+     * @return {@link Result}
+     */
+    public Result validateRequest(CharSequence token, String path) {
+        EdgeAuthToken[] parsed = new EdgeAuthToken[1];
+        Result result = firstUse(checkRequest(token, path, parsed), parsed[0]);
+        this.metrics.tokenValidated(this.keyRing.getAlgorithm(), result);
+        return result;
+    }
+
+    /**
+     * @param result result of the checks
+     * @param token the checked token
+     * @return {@code result}, or REPLAYED if it is VALID for a single-use token that was seen before
+     */
+    private Result firstUse(Result result, EdgeAuthToken token) {
+        if (result == Result.VALID && this.replayGuard != null && !this.replayGuard.firstUse(token)) {
+            return Result.REPLAYED;
+        }
+        return result;
+    }
+
+    /**
+     * @param token token chars
+     * @param path request path
+     * @param checked receives the parsed token
+     * @return {@link Result}
+     */
+    private Result checkRequest(CharSequence token, String path, EdgeAuthToken[] checked) {
+        if (token == null || path == null) {
+            return Result.MALFORMED;
+        }
+        if (this.cache == null) {
+            EdgeAuthToken parsed = checked[0] = parse(token);
+            return parsed != null && parsed.isAclToken() ? checkAcl(parsed, path, null) : check(parsed, path);
+        }
+
+        String source = token.toString();
+        VerificationCache.Entry entry = this.cache.get(source);
+        if (entry != null && (entry.url == null || entry.url.equals(path))) {
+            checked[0] = entry.token;
+            Result result = checkTime(entry.token);
+            if (result != Result.VALID) {
+                this.cache.remove(source);
+                return result;
+            }
+            return entry.acl == null || entry.acl.matches(path)
+                    ? Result.VALID : Result.ACL_MISMATCH;
+        }
+
+        EdgeAuthToken parsed = checked[0] = parse(source);
+        if (parsed == null || !parsed.isAclToken()) {
+            Result result = check(parsed, path);
+            if (result == Result.VALID) {
+                this.cache.put(source, new VerificationCache.Entry(parsed, path, null), this.clock.epochSeconds());
+            }
+            return result;
+        }
+        EdgeAuthAclMatcher[] acl = new EdgeAuthAclMatcher[1];
+        Result result = checkAcl(parsed, path, acl);
+        if (result == Result.VALID || result == Result.ACL_MISMATCH) {
+            this.cache.put(source, new VerificationCache.Entry(parsed, null, acl[0]), this.clock.epochSeconds());
+        }
+        return result;
+    }
+
+    /**
+     * @param token parsed ACL token
+     * @param path request path
+     * @param acl receives the compiled acl if the token is authentic and current. (Optional)
+     * @return {@link Result}
+     */
+    private Result checkAcl(EdgeAuthToken token, String path, EdgeAuthAclMatcher[] acl) {
+        Result result = check(token, null);
+        if (result != Result.VALID) {
+            return result;
+        }
+        String patterns = unescapeEarly(token.getAcl());
+        if (patterns == null) {
+            return Result.MALFORMED;
+        }
+        EdgeAuthAclMatcher matcher = EdgeAuthAclMatcher.of(patterns, this.aclDelimiter);
+        if (acl != null) {
+            acl[0] = matcher;
+        }
+        return matcher.matches(path) ? Result.VALID : Result.ACL_MISMATCH;
+    }
+
+    /**
+     * @param acl acl as it appears in the token
+     * @return {@code acl} url decoded up to {@code escapeEarly}, or null if it is not validly encoded
+     */
+    private String unescapeEarly(String acl) {
+        if (!this.escapeEarly) {
+            return acl;
+        }
+        try {
+            return URLDecoder.decode(acl, "UTF-8");
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param token parsed token, or null if it was malformed
+     * @param url the path of a URL token, or null for an ACL token
+     * @return {@link Result}
+     */
+    public Result validate(EdgeAuthToken token, String url) {
+        Result result = firstUse(check(token, url), token);
+        this.metrics.tokenValidated(this.keyRing.getAlgorithm(), result);
+        return result;
+    }
+
+    /**
+     * @param token parsed token, or null if it was malformed
+     * @param url the path of a URL token, or null for an ACL token
+     * @return {@link Result}
+     */
+    private Result check(EdgeAuthToken token, String url) {
+        if (token == null || token.isAclToken() == (url != null)) {
+            return Result.MALFORMED;
+        }
+        if (!verifyHmac(token, url)) {
+            return Result.INVALID_HMAC;
+        }
+        return checkTime(token);
+    }
+
+    /**
+     * @param token parsed token
+     * @return {@link Result}
+     */
+    private Result checkTime(EdgeAuthToken token) {
+        long now = this.clock.epochSeconds();
+        Long startTime = token.getStartTime();
+        if (startTime != null && now < startTime) {
+            return Result.NOT_YET_VALID;
+        }
+        if (now >= token.getEndTime()) {
+            return Result.EXPIRED;
+        }
+        return Result.VALID;
+    }
+
+    /**
+     * Rebuilds the hash source {@code generateToken} digested: the token body up to {@code hmac},
+     * then the {@code url} and {@code salt} fields, without the final delimiter.
+     *
+     * @param token parsed token
+     * @param url the path of a URL token, or null for an ACL token
+     * @return true if the HMAC of the token matches
+     */
+    private boolean verifyHmac(EdgeAuthToken token, String url) {
+        boolean timed = this.metrics != EdgeAuthMetrics.NOOP;
+        TokenBuffer buffer = TokenBuffer.acquire();
+        try {
+            buffer.append(token.source(), 0, token.hmacFieldStart());
+            if (url != null) {
+                buffer.append("url=");
+                if (this.escapeEarly) {
+                    long start = timed ? System.nanoTime() : 0L;
+                    buffer.appendEscaped(url);
+                    if (timed) {
+                        this.metrics.stageCompleted(EdgeAuthMetrics.Stage.ESCAPE, System.nanoTime() - start);
+                    }
+                } else {
+                    buffer.append(url);
+                }
+                buffer.append(this.fieldDelimiter);
+            }
+            if (this.salt != null) {
+                buffer.append("salt=").append(this.salt).append(this.fieldDelimiter);
+            }
+            long start = timed ? System.nanoTime() : 0L;
+            boolean verified = verifyHmac(buffer, token);
+            if (timed) {
+                this.metrics.stageCompleted(EdgeAuthMetrics.Stage.HMAC, System.nanoTime() - start);
+            }
+            return verified;
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Tries the key that verified the previous token first, so a rotation does not
+     * double the HMAC work while most tokens are still signed with one key.
+     *
+     * @param buffer buffer holding the hash source
+     * @param token parsed token
+     * @return true if any accepted key yields the HMAC of the token
+     */
+    private boolean verifyHmac(TokenBuffer buffer, EdgeAuthToken token) {
+        EdgeAuthKeyRing.Keys keys = this.keyRing.keys();
+        HmacKey[] candidates = keys.keys;
+        int hint = keys.hint;
+        int hashLength = buffer.length() - 1;
+        int hmacStart = token.start(EdgeAuthToken.HMAC);
+        int hmacEnd = token.end(EdgeAuthToken.HMAC);
+        for (int i = 0; i < candidates.length; i++) {
+            int index = (hint + i) % candidates.length;
+            Mac mac = candidates[index].mac();
+            int digestLength;
+            try {
+                digestLength = buffer.digest(mac, hashLength);
+            } finally {
+                candidates[index].release(mac);
+            }
+            if (buffer.digestEquals(digestLength, token.source(), hmacStart, hmacEnd)) {
+                if (index != hint) {
+                    keys.hint = index;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return tokenName
+     */
+    public String getTokenName() {
+        return this.tokenName;
+    }
+
+    /**
+     * @return algorithm
+     */
+    public String getAlgorithm() {
+        return this.keyRing.getAlgorithm();
+    }
+
+    /**
+     * @return provider computing the HMACs
+     */
+    public Provider getProvider() {
+        return this.keyRing.getProvider();
+    }
+
+    /**
+     * @return fieldDelimiter
+     */
+    public char getFieldDelimiter() {
+        return this.fieldDelimiter;
+    }
+
+    /**
+     * @return aclDelimiter
+     */
+    public char getAclDelimiter() {
+        return this.aclDelimiter;
+    }
+
+    /**
+     * @return escapeEarly
+     */
+    public boolean isEscapeEarly() {
+        return this.escapeEarly;
+    }
+
+    /**
+     * @return clock
+     */
+    public EdgeAuthClock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * @return metrics
+     */
+    public EdgeAuthMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @return replayGuard, or null
+     */
+    public EdgeAuthReplayGuard getReplayGuard() {
+        return this.replayGuard;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+/**
+ * A secret decoded once and bound to one HMAC algorithm. Every platform thread gets its own
+ * initialized {@link Mac}, so signing never repeats {@code Mac.getInstance} or {@code Mac.init}.
+ * Virtual threads are short-lived, so they borrow one from a bounded lock-free pool instead and give it back.
+ */
+final class HmacKey {
+
+    /** JCA name of the algorithm. (HmacSHA256, HmacSHA1 or HmacMD5) */
+    private final String algorithm;
+
+    /** decoded secret. */
+    private final SecretKeySpec secretKey;
+
+    /** initialized {@link Mac} the per thread instances are cloned from. */
+    private final Mac prototype;
+
+    /** whether {@code prototype} can be cloned. */
+    private final boolean cloneable;
+
+    /** guards cloning {@code prototype}; a lock rather than a monitor so virtual threads do not pin their carrier. */
+    private final ReentrantLock cloneLock = new ReentrantLock();
+
+    /** idle instances lent to virtual threads. */
+    final BoundedPool<Mac> pool = new BoundedPool<>(BoundedPool.DEFAULT_CAPACITY);
+
+    /** initialized {@link Mac} of the current thread. */
+    private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            return newMac();
+        }
+    };
+
+    /**
+     * @param algorithm JCA name of the algorithm
+     * @param provider provider of the {@link Mac}, or null for the default one
+     * @param key secret. It must be hexadecimal digit string with even-length
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    HmacKey(String algorithm, Provider provider, String key) throws EdgeAuthException {
+        if (key == null || key.trim().isEmpty()) {
+            throw new EdgeAuthException("You must provide a secret in order to generate a new token.");
+        }
+
+        byte[] keyBytes = parseHex(key);
+
+        this.algorithm = algorithm;
+        this.secretKey = new SecretKeySpec(keyBytes, algorithm);
+        try {
+            this.prototype = provider != null ? Mac.getInstance(algorithm, provider) : Mac.getInstance(algorithm);
+            this.prototype.init(this.secretKey);
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new EdgeAuthException(e.toString());
+        }
+
+        boolean cloneable;
+        try {
+            this.prototype.clone();
+            cloneable = true;
+        } catch (CloneNotSupportedException e) {
+            cloneable = false;
+        }
+        this.cloneable = cloneable;
+    }
+
+    /**
+     * @param hex hexadecimal digits, upper or lower case
+     * @return decoded bytes
+     * @throws EdgeAuthException if {@code hex} has an odd length or a char that is not a hexadecimal digit
+     */
+    static byte[] parseHex(String hex) throws EdgeAuthException {
+        if (hex.length() % 2 != 0) {
+            throw new EdgeAuthException("key must be hexadecimal digit string with even-length.");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = hexDigit(hex.charAt(2 * i));
+            int low = hexDigit(hex.charAt(2 * i + 1));
+            if (high < 0 || low < 0) {
+                throw new EdgeAuthException("key must be hexadecimal digit string with even-length.");
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+
+    /**
+     * @param c char
+     * @return value of the ASCII hexadecimal digit {@code c}, or -1
+     */
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Maps the {@code algorithm} option to its JCA name.
+     *
+     * @param algorithm sha256, sha1 or md5 (case insensitive), or the JCA name itself
+     * @return JCA name of the algorithm
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    static String macAlgorithm(String algorithm) throws EdgeAuthException {
+        if ("sha256".equalsIgnoreCase(algorithm) || "HmacSHA256".equalsIgnoreCase(algorithm))
+            return "HmacSHA256";
+        else if ("sha1".equalsIgnoreCase(algorithm) || "HmacSHA1".equalsIgnoreCase(algorithm))
+            return "HmacSHA1";
+        else if ("md5".equalsIgnoreCase(algorithm) || "HmacMD5".equalsIgnoreCase(algorithm))
+            return "HmacMD5";
+        else
+            throw new EdgeAuthException("Unknown Algorithm");
+    }
+
+    /**
+     * @return JCA name of the algorithm
+     */
+    String getAlgorithm() {
+        return this.algorithm;
+    }
+
+    /**
+     * @return provider of the {@link Mac}
+     */
+    Provider getProvider() {
+        return this.prototype.getProvider();
+    }
+
+    /**
+     * @param other another key
+     * @return true if both keys hold the same secret
+     */
+    boolean sameSecret(HmacKey other) {
+        return MessageDigest.isEqual(this.secretKey.getEncoded(), other.secretKey.getEncoded());
+    }
+
+    /**
+     * The returned instance belongs to the calling thread and is always in its initial state
+     * because {@code doFinal} resets it. It must not be handed to another thread, and must be
+     * given back with {@link #release(Mac)}.
+     *
+     * @return initialized {@link Mac} of the current thread, or one borrowed from the pool on a virtual thread
+     */
+    Mac mac() {
+        return VirtualThreads.current() ? borrow() : this.macs.get();
+    }
+
+    /**
+     * @param mac instance returned by {@link #mac()} on the current thread
+     */
+    void release(Mac mac) {
+        if (VirtualThreads.current()) {
+            giveBack(mac);
+        }
+    }
+
+    /**
+     * @return an idle pooled instance, or a new one
+     */
+    Mac borrow() {
+        Mac mac = this.pool.poll();
+        return mac != null ? mac : newMac();
+    }
+
+    /**
+     * @param mac instance returned by {@link #borrow()}, dropped if the pool is full
+     */
+    void giveBack(Mac mac) {
+        mac.reset();
+        this.pool.offer(mac);
+    }
+
+    /**
+     * @return a new initialized {@link Mac}
+     */
+    private Mac newMac() {
+        try {
+            if (this.cloneable) {
+                this.cloneLock.lock();
+                try {
+                    return (Mac) this.prototype.clone();
+                } finally {
+                    this.cloneLock.unlock();
+                }
+            }
+            Mac mac = Mac.getInstance(this.algorithm, this.prototype.getProvider());
+            mac.init(this.secretKey);
+            return mac;
+        } catch (CloneNotSupportedException | NoSuchAlgorithmException | InvalidKeyException e) {
+            // the prototype was created and initialized with the very same arguments
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+/**
+ * Finds the JCA provider to compute HMACs with: by name, or by timing every installed provider
+ * of the algorithm against the default one.
+ */
+final class HmacProviders {
+
+    /** size of the calibration message, about a token body with a short ACL. */
+    private static final int MESSAGE_SIZE = 160;
+
+    /** HMACs computed before timing, to let the JIT compile each provider. */
+    private static final int WARMUP = 20000;
+
+    /** timed rounds per provider; the fastest round counts. */
+    private static final int ROUNDS = 5;
+
+    /** HMACs per timed round. */
+    private static final int ITERATIONS = 5000;
+
+    /** calibrated providers by JCA algorithm name, so rebuilding a signer does not calibrate again. */
+    private static final ConcurrentMap<String, Provider> FASTEST = new ConcurrentHashMap<>();
+
+    /** keeps the JIT from dropping the timed HMACs. */
+    private static volatile int sink;
+
+    private HmacProviders() {
+    }
+
+    /**
+     * @param name name of an installed provider, e.g. SunJCE
+     * @return the provider
+     * @throws EdgeAuthException if no provider of that name is installed
+     */
+    static Provider named(String name) throws EdgeAuthException {
+        Provider provider = Security.getProvider(name);
+        if (provider == null) {
+            throw new EdgeAuthException("Unknown provider: " + name);
+        }
+        return provider;
+    }
+
+    /**
+     * Calibrates once per algorithm and process.
+     *
+     * @param algorithm JCA name of the algorithm
+     * @return the fastest installed provider computing the same HMACs as the default one
+     * @throws EdgeAuthException if no provider implements {@code algorithm}
+     */
+    static Provider fastest(String algorithm) throws EdgeAuthException {
+        Provider provider = FASTEST.get(algorithm);
+        if (provider == null) {
+            provider = calibrate(algorithm);
+            FASTEST.putIfAbsent(algorithm, provider);
+        }
+        return provider;
+    }
+
+    /**
+     * Providers that cannot be initialized with a plain secret key, or disagree with the
+     * default provider on a reference HMAC, are skipped.
+     *
+     * @param algorithm JCA name of the algorithm
+     * @return the fastest installed provider computing the same HMACs as the default one
+     * @throws EdgeAuthException if no provider implements {@code algorithm}
+     */
+    static Provider calibrate(String algorithm) throws EdgeAuthException {
+        byte[] key = new byte[32];
+        byte[] message = new byte[MESSAGE_SIZE];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) ('a' + i % 26);
+            key[i % key.length] ^= (byte) (i * 31);
+        }
+        SecretKeySpec secretKey = new SecretKeySpec(key, algorithm);
+
+        byte[] expected;
+        try {
+            Mac reference = Mac.getInstance(algorithm);
+            reference.init(secretKey);
+            expected = reference.doFinal(message);
+        } catch (GeneralSecurityException e) {
+            throw new EdgeAuthException(e.toString());
+        }
+
+        Provider fastest = null;
+        long fastestNanos = Long.MAX_VALUE;
+        for (Provider provider : Security.getProviders("Mac." + algorithm)) {
+            Mac mac;
+            try {
+                mac = Mac.getInstance(algorithm, provider);
+                mac.init(secretKey);
+                if (!MessageDigest.isEqual(expected, mac.doFinal(message))) {
+                    continue;
+                }
+            } catch (GeneralSecurityException | RuntimeException e) {
+                continue;
+            }
+            long nanos = time(mac, message);
+            if (nanos < fastestNanos) {
+                fastest = provider;
+                fastestNanos = nanos;
+            }
+        }
+        if (fastest == null) {
+            throw new EdgeAuthException("No provider computes " + algorithm + " as expected.");
+        }
+        return fastest;
+    }
+
+    /**
+     * @param mac initialized {@link Mac}
+     * @param message message to authenticate
+     * @return nanoseconds of the fastest round of {@code ITERATIONS} HMACs
+     */
+    private static long time(Mac mac, byte[] message) {
+        int sum = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            mac.update(message);
+            sum += mac.doFinal()[0];
+        }
+        long fastest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                mac.update(message);
+                sum += mac.doFinal()[0];
+            }
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        sink += sum;
+        return fastest;
+    }
+}
@@ -0,0 +1,530 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+
+
+/**
+ * Per thread scratch space used to assemble a token without intermediate strings.
+ * The token body and the hash source share one char array: the body comes first,
+ * followed by the fields which are only part of the digest ({@code url} and {@code salt}).
+ */
+final class TokenBuffer {
+
+    /** lowercase hexadecimal digits. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** chars {@code escapeEarly} keeps as they are. (the same set as {@link java.net.URLEncoder}) */
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) UNRESERVED[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) UNRESERVED[c] = true;
+        for (char c = '0'; c <= '9'; c++) UNRESERVED[c] = true;
+        UNRESERVED['-'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['*'] = true;
+    }
+
+    /** idle buffers lent to virtual threads, which would otherwise each allocate their own. */
+    static final BoundedPool<TokenBuffer> POOL = new BoundedPool<>(BoundedPool.DEFAULT_CAPACITY);
+
+    /** buffer of the current thread. */
+    private static final ThreadLocal<TokenBuffer> BUFFERS = new ThreadLocal<TokenBuffer>() {
+        @Override
+        protected TokenBuffer initialValue() {
+            return new TokenBuffer();
+        }
+    };
+
+    /** token body followed by the digest-only fields. */
+    private char[] chars = new char[256];
+
+    /** number of chars in use. */
+    private int length;
+
+    /** hash source encoded to bytes. */
+    private byte[] bytes = new byte[256];
+
+    /** number of hash source bytes assembled by {@code appendSegment} and {@code hash}. */
+    private int hashLength;
+
+    /** digest of the hash source. (64 bytes fits any supported algorithm) */
+    private final byte[] digest = new byte[64];
+
+    /** timings of {@link TokenTemplate#sign}, reused by every token signed into this buffer. */
+    private final long[] nanos = new long[TokenTemplate.TIMINGS];
+
+    /** {@code chars} wrapped for {@link Appendable} targets. */
+    private CharBuffer view = CharBuffer.wrap(this.chars);
+
+    /** set while the buffer is handed out by {@code acquire}. */
+    private boolean inUse;
+
+    /** whether {@code release} returns the buffer to {@code POOL}. */
+    private boolean pooled;
+
+    /**
+     * Returns the buffer of the current thread, or a fresh one if it is already in use further up the stack.
+     * Virtual threads borrow one from a pool instead. Callers must {@code release} it when they are done.
+     *
+     * @return an empty buffer
+     */
+    static TokenBuffer acquire() {
+        TokenBuffer buffer;
+        if (VirtualThreads.current()) {
+            buffer = POOL.poll();
+            if (buffer == null) {
+                buffer = new TokenBuffer();
+                buffer.pooled = true;
+            }
+        } else {
+            buffer = BUFFERS.get();
+            if (buffer.inUse) {
+                buffer = new TokenBuffer();
+            }
+        }
+        buffer.inUse = true;
+        buffer.length = 0;
+        buffer.hashLength = 0;
+        return buffer;
+    }
+
+    /**
+     * Hands the buffer back to the current thread, or to the pool.
+     */
+    void release() {
+        this.inUse = false;
+        if (this.pooled) {
+            POOL.offer(this);
+        }
+    }
+
+    /**
+     * @return timing slots for {@link TokenTemplate#sign}, overwritten by the next token
+     */
+    long[] nanos() {
+        return this.nanos;
+    }
+
+    /**
+     * @return number of chars in use
+     */
+    int length() {
+        return this.length;
+    }
+
+    /**
+     * Drops every char from {@code length} onwards.
+     *
+     * @param length new length
+     */
+    void truncate(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @param minCapacity required number of chars
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > this.chars.length) {
+            this.chars = Arrays.copyOf(this.chars, Math.max(minCapacity, this.chars.length * 2));
+            this.view = CharBuffer.wrap(this.chars);
+        }
+    }
+
+    /**
+     * @param c char to append
+     * @return this
+     */
+    TokenBuffer append(char c) {
+        ensureCapacity(this.length + 1);
+        this.chars[this.length++] = c;
+        return this;
+    }
+
+    /**
+     * @param s string to append
+     * @return this
+     */
+    TokenBuffer append(String s) {
+        int n = s.length();
+        ensureCapacity(this.length + n);
+        s.getChars(0, n, this.chars, this.length);
+        this.length += n;
+        return this;
+    }
+
+    /**
+     * @param s chars to append
+     * @param start first char of {@code s} to append
+     * @param end char of {@code s} to stop before
+     * @return this
+     */
+    TokenBuffer append(CharSequence s, int start, int end) {
+        ensureCapacity(this.length + (end - start));
+        char[] chars = this.chars;
+        int pos = this.length;
+        for (int i = start; i < end; i++) {
+            chars[pos++] = s.charAt(i);
+        }
+        this.length = pos;
+        return this;
+    }
+
+    /**
+     * Appends {@code s} 'url' encoded in a single pass. The result is identical to
+     * {@code URLEncoder.encode(s, "UTF-8")} with every escape sequence lowercased:
+     * a space becomes '+', other reserved characters become their UTF-8 bytes as
+     * {@code %xx}, and unpaired surrogates become {@code %3f} ('?').
+     *
+     * @param s string to append
+     * @return this
+     */
+    TokenBuffer appendEscaped(String s) {
+        int n = s.length();
+        ensureCapacity(this.length + n);
+        char[] chars = this.chars;
+        int pos = this.length;
+        for (int i = 0; i < n; i++) {
+            // the longest expansion of one iteration is a surrogate pair: 4 bytes, 12 chars
+            if (pos + 12 > chars.length) {
+                this.length = pos;
+                ensureCapacity(pos + 12 + (n - i));
+                chars = this.chars;
+            }
+            int c = s.charAt(i);
+            if (c < 0x80) {
+                if (UNRESERVED[c]) {
+                    chars[pos++] = (char) c;
+                } else if (c == ' ') {
+                    chars[pos++] = '+';
+                } else {
+                    pos = putEscaped(chars, pos, c);
+                }
+            } else if (c < 0x800) {
+                pos = putEscaped(chars, pos, 0xc0 | (c >> 6));
+                pos = putEscaped(chars, pos, 0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate((char) c)) {
+                if (Character.isHighSurrogate((char) c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint((char) c, s.charAt(++i));
+                    pos = putEscaped(chars, pos, 0xf0 | (cp >> 18));
+                    pos = putEscaped(chars, pos, 0x80 | ((cp >> 12) & 0x3f));
+                    pos = putEscaped(chars, pos, 0x80 | ((cp >> 6) & 0x3f));
+                    pos = putEscaped(chars, pos, 0x80 | (cp & 0x3f));
+                } else {
+                    // malformed input is replaced the same way String.getBytes does
+                    pos = putEscaped(chars, pos, '?');
+                }
+            } else {
+                pos = putEscaped(chars, pos, 0xe0 | (c >> 12));
+                pos = putEscaped(chars, pos, 0x80 | ((c >> 6) & 0x3f));
+                pos = putEscaped(chars, pos, 0x80 | (c & 0x3f));
+            }
+        }
+        this.length = pos;
+        return this;
+    }
+
+    /**
+     * @param chars destination
+     * @param pos position in {@code chars}
+     * @param b byte to escape
+     * @return position after the escape sequence
+     */
+    private static int putEscaped(char[] chars, int pos, int b) {
+        chars[pos] = '%';
+        chars[pos + 1] = HEX[(b >>> 4) & 0x0f];
+        chars[pos + 2] = HEX[b & 0x0f];
+        return pos + 3;
+    }
+
+    /**
+     * Appends a non-negative number in decimal.
+     *
+     * @param value number to append
+     * @return this
+     */
+    TokenBuffer append(long value) {
+        if (value < 0) {
+            return append(Long.toString(value));
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        ensureCapacity(this.length + digits);
+        int pos = this.length + digits;
+        do {
+            this.chars[--pos] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        this.length += digits;
+        return this;
+    }
+
+    /**
+     * @param minCapacity required number of hash source bytes
+     */
+    private void ensureHashCapacity(int minCapacity) {
+        if (minCapacity > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(minCapacity, this.bytes.length * 2));
+        }
+    }
+
+    /**
+     * Appends a constant segment of a {@link TokenTemplate}.
+     *
+     * @param body chars to append to the token
+     * @param hash encoded bytes to append to the hash source
+     * @return this
+     */
+    TokenBuffer appendSegment(char[] body, byte[] hash) {
+        ensureCapacity(this.length + body.length);
+        System.arraycopy(body, 0, this.chars, this.length, body.length);
+        this.length += body.length;
+        ensureHashCapacity(this.hashLength + hash.length);
+        System.arraycopy(hash, 0, this.bytes, this.hashLength, hash.length);
+        this.hashLength += hash.length;
+        return this;
+    }
+
+    /**
+     * Appends a non-negative number in decimal to both the token and the hash source.
+     *
+     * @param value number to append
+     * @return this
+     */
+    TokenBuffer appendHashed(long value) {
+        int from = this.length;
+        return append(value).hash(from);
+    }
+
+    /**
+     * Appends {@code chars[from, length)} to the hash source, encoded the same way as {@code String.getBytes()} would.
+     *
+     * @param from first char to hash
+     * @return this
+     */
+    TokenBuffer hash(int from) {
+        int n = this.length - from;
+        ensureHashCapacity(this.hashLength + n);
+        char[] chars = this.chars;
+        byte[] bytes = this.bytes;
+        int pos = this.hashLength;
+        for (int i = from; i < this.length; i++) {
+            char c = chars[i];
+            if (c >= 0x80) {
+                // not plain ASCII, so leave the encoding to the platform default charset
+                byte[] encoded = new String(chars, from, n).getBytes();
+                ensureHashCapacity(this.hashLength + encoded.length);
+                System.arraycopy(encoded, 0, this.bytes, this.hashLength, encoded.length);
+                this.hashLength += encoded.length;
+                return this;
+            }
+            bytes[pos++] = (byte) c;
+        }
+        this.hashLength = pos;
+        return this;
+    }
+
+    /**
+     * Digests the hash source assembled by {@code appendSegment} and {@code hash}.
+     *
+     * @param mac initialized {@link Mac}
+     * @return number of digest bytes written to {@code digest}
+     */
+    int digestHash(Mac mac) {
+        mac.update(this.bytes, 0, this.hashLength);
+        return doFinal(mac);
+    }
+
+    /**
+     * Digests {@code chars[0, hashLength)} the same way as {@code String.getBytes()} would encode them.
+     *
+     * @param mac initialized {@link Mac}
+     * @param hashLength number of chars to digest
+     * @return number of digest bytes written to {@code digest}
+     */
+    int digest(Mac mac, int hashLength) {
+        byte[] source = this.bytes;
+        if (source.length < hashLength) {
+            source = this.bytes = new byte[Math.max(hashLength, source.length * 2)];
+        }
+        char[] chars = this.chars;
+        for (int i = 0; i < hashLength; i++) {
+            char c = chars[i];
+            if (c >= 0x80) {
+                // not plain ASCII, so leave the encoding to the platform default charset
+                source = new String(chars, 0, hashLength).getBytes();
+                mac.update(source);
+                return doFinal(mac);
+            }
+            source[i] = (byte) c;
+        }
+        mac.update(source, 0, hashLength);
+        return doFinal(mac);
+    }
+
+    /**
+     * @param mac {@link Mac} fed with the hash source
+     * @return number of digest bytes
+     */
+    private int doFinal(Mac mac) {
+        try {
+            mac.doFinal(this.digest, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        return mac.getMacLength();
+    }
+
+    /**
+     * Appends the first {@code length} bytes of {@code digest} as lowercase hexadecimal digits.
+     *
+     * @param length number of digest bytes
+     * @return this
+     */
+    TokenBuffer appendDigest(int length) {
+        ensureCapacity(this.length + 2 * length);
+        char[] chars = this.chars;
+        int pos = this.length;
+        for (int i = 0; i < length; i++) {
+            int b = this.digest[i] & 0xff;
+            chars[pos++] = HEX[b >>> 4];
+            chars[pos++] = HEX[b & 0x0f];
+        }
+        this.length = pos;
+        return this;
+    }
+
+    /**
+     * Compares the first {@code length} bytes of {@code digest} with the hexadecimal digits in
+     * {@code hex[start, end)}. The time taken does not depend on where the first difference is.
+     *
+     * @param length number of digest bytes
+     * @param hex chars holding the expected digest
+     * @param start first hexadecimal digit in {@code hex}
+     * @param end char of {@code hex} to stop before
+     * @return true if both digests are equal
+     */
+    boolean digestEquals(int length, CharSequence hex, int start, int end) {
+        if (end - start != 2 * length) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < length; i++) {
+            int hi = hexValue(hex.charAt(start + 2 * i));
+            int lo = hexValue(hex.charAt(start + 2 * i + 1));
+            // a non hexadecimal digit yields -1, which always differs
+            diff |= (this.digest[i] & 0xff) ^ ((hi << 4) | lo);
+            diff |= (hi | lo) & ~0x0f;
+        }
+        return diff == 0;
+    }
+
+    /**
+     * @param c hexadecimal digit
+     * @return value of {@code c}, or -1 if it is not a hexadecimal digit
+     */
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+    /**
+     * @return the chars in use as a new string
+     */
+    @Override
+    public String toString() {
+        return new String(this.chars, 0, this.length);
+    }
+
+    /**
+     * @param dst destination array
+     * @param offset position in {@code dst} to write to
+     * @return number of chars written
+     * @throws IndexOutOfBoundsException if {@code dst} is too small
+     */
+    int writeTo(char[] dst, int offset) {
+        System.arraycopy(this.chars, 0, dst, offset, this.length);
+        return this.length;
+    }
+
+    /**
+     * Writes the chars in use as UTF-8, which is plain ASCII unless the token carries unescaped non-ASCII input.
+     *
+     * @param dst destination buffer, written from its position
+     * @return number of bytes written
+     * @throws BufferOverflowException if {@code dst} is too small
+     */
+    int writeTo(ByteBuffer dst) {
+        char[] chars = this.chars;
+        int n = this.length;
+        for (int i = 0; i < n; i++) {
+            if (chars[i] >= 0x80) {
+                byte[] encoded = new String(chars, 0, n).getBytes(StandardCharsets.UTF_8);
+                dst.put(encoded);
+                return encoded.length;
+            }
+        }
+        if (dst.remaining() < n) {
+            throw new BufferOverflowException();
+        }
+        for (int i = 0; i < n; i++) {
+            dst.put((byte) chars[i]);
+        }
+        return n;
+    }
+
+    /**
+     * @param out destination
+     */
+    void writeTo(StringBuilder out) {
+        out.append(this.chars, 0, this.length);
+    }
+
+    /**
+     * @param out destination
+     * @throws IOException thrown by {@code out}
+     */
+    void writeTo(Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(this.chars, 0, this.length);
+        } else if (out instanceof Writer) {
+            ((Writer) out).write(this.chars, 0, this.length);
+        } else if (out instanceof CharBuffer) {
+            ((CharBuffer) out).put(this.chars, 0, this.length);
+        } else {
+            this.view.clear();
+            out.append(this.view, 0, this.length);
+        }
+    }
+}
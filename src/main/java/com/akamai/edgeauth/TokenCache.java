@@ -0,0 +1,160 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Signed tokens of one {@link EdgeAuthSigner}, reused while their start time falls in the same bucket.
+ * ip, sessionId and payload are fixed per signer, so an entry is keyed by the path alone and
+ * remembers the bucket and key it was signed with. An entry from an earlier bucket, or signed with a key
+ * that is no longer the primary one of the key ring, is a miss and gets replaced.
+ * Lookups never lock; concurrent misses on one path may both sign and the last one wins.
+ */
+final class TokenCache {
+
+    /** width of a start time bucket in seconds. */
+    private final long bucketSeconds;
+
+    /** number of entries above which older buckets, then arbitrary entries, are evicted. */
+    private final int maxSize;
+
+    /** URL tokens by url. */
+    private final ConcurrentHashMap<String, Entry> urlTokens = new ConcurrentHashMap<>();
+
+    /** ACL tokens by acl. */
+    private final ConcurrentHashMap<String, Entry> aclTokens = new ConcurrentHashMap<>();
+
+    /** set while one thread evicts, so others do not pile up behind it. */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * @param bucketSeconds width of a start time bucket in seconds
+     * @param maxSize maximum number of tokens kept
+     */
+    TokenCache(long bucketSeconds, int maxSize) {
+        this.bucketSeconds = bucketSeconds;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param now current time in seconds
+     * @return start of the bucket {@code now} falls in
+     */
+    long bucketStart(long now) {
+        return now - now % this.bucketSeconds;
+    }
+
+    /**
+     * @param path acl or url
+     * @param isUrl is Url?
+     * @param bucket start of the current bucket
+     * @param key current primary key
+     * @return the token signed in {@code bucket} with {@code key}, or null
+     */
+    String get(String path, boolean isUrl, long bucket, HmacKey key) {
+        Entry entry = (isUrl ? this.urlTokens : this.aclTokens).get(path);
+        return entry != null && entry.bucket == bucket && entry.key == key ? entry.token : null;
+    }
+
+    /**
+     * @param path acl or url
+     * @param isUrl is Url?
+     * @param bucket start of the bucket the token was signed in
+     * @param key key the token was signed with
+     * @param token signed token
+     */
+    void put(String path, boolean isUrl, long bucket, HmacKey key, String token) {
+        ConcurrentHashMap<String, Entry> tokens = isUrl ? this.urlTokens : this.aclTokens;
+        tokens.put(path, new Entry(bucket, key, token));
+        if (this.urlTokens.size() + this.aclTokens.size() > this.maxSize) {
+            evict(bucket);
+        }
+    }
+
+    /**
+     * Drops entries of earlier buckets, then arbitrary ones until the cache is back to 3/4 of {@code maxSize}.
+     *
+     * @param bucket start of the current bucket
+     */
+    private void evict(long bucket) {
+        if (!this.evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            evictStale(this.urlTokens, bucket);
+            evictStale(this.aclTokens, bucket);
+            int target = this.maxSize - this.maxSize / 4;
+            evictAny(this.aclTokens, target - this.urlTokens.size());
+            evictAny(this.urlTokens, target - this.aclTokens.size());
+        } finally {
+            this.evicting.set(false);
+        }
+    }
+
+    /**
+     * @param tokens entries
+     * @param bucket start of the current bucket
+     */
+    private static void evictStale(ConcurrentHashMap<String, Entry> tokens, long bucket) {
+        for (Iterator<Entry> it = tokens.values().iterator(); it.hasNext(); ) {
+            if (it.next().bucket != bucket) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @param tokens entries
+     * @param target number of entries to keep
+     */
+    private static void evictAny(ConcurrentHashMap<String, Entry> tokens, int target) {
+        for (Iterator<Entry> it = tokens.values().iterator(); it.hasNext() && tokens.size() > Math.max(target, 0); ) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * @return number of cached tokens
+     */
+    int size() {
+        return this.urlTokens.size() + this.aclTokens.size();
+    }
+
+    /**
+     * A token and the bucket and key it was signed with.
+     */
+    private static final class Entry {
+
+        final long bucket;
+
+        final HmacKey key;
+
+        final String token;
+
+        Entry(long bucket, HmacKey key, String token) {
+            this.bucket = bucket;
+            this.key = key;
+            this.token = token;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import javax.crypto.Mac;
+
+
+/**
+ * Layout of the URL or ACL tokens of one signer, compiled once. The fields that are the same for every
+ * token ({@code ip}, {@code id}, {@code data}, {@code salt} and the field names) become constant segments
+ * holding both the chars they add to the token and the bytes they add to the hash source, encoded in
+ * advance. Issuing a token then formats {@code st} and {@code exp}, copies the escaped path, and hands
+ * the assembled bytes to the {@link Mac} without encoding the hash source from the token again.
+ */
+final class TokenTemplate {
+
+    /** index of the nanoseconds spent escaping the path in the timings of {@code sign}. */
+    static final int ESCAPE_NANOS = 0;
+
+    /** index of the nanoseconds spent assembling the token body and hash source, without escaping. */
+    static final int HASH_SOURCE_NANOS = 1;
+
+    /** index of the nanoseconds spent in the HMAC. */
+    static final int HMAC_NANOS = 2;
+
+    /** index of the nanoseconds spent appending the hex digest. */
+    static final int HEX_NANOS = 3;
+
+    /** number of timings of {@code sign}. */
+    static final int TIMINGS = 4;
+
+    /** {@code ip} field, or nothing. */
+    private final Segment head;
+
+    /** name of {@code st}. */
+    private final Segment startPrefix;
+
+    /** delimiter after {@code st} and the name of {@code exp}. */
+    private final Segment startSuffix;
+
+    /** name of {@code exp}, when there is no {@code st}. */
+    private final Segment endPrefix;
+
+    /** fields between {@code exp} and the path. */
+    private final Segment beforePath;
+
+    /** fields after the path, without the last delimiter in the hash source. */
+    private final Segment afterPath;
+
+    /** whether the path is part of the token body. ({@code acl}) or of the hash source only. ({@code url}) */
+    private final boolean pathInBody;
+
+    /**
+     * @param ip escaped ip, or null
+     * @param sessionId escaped sessionId, or null
+     * @param payload escaped payload, or null
+     * @param salt salt, or null
+     * @param fieldDelimiter Character used to delimit token body fields
+     * @param isUrl whether the template is for URL tokens
+     */
+    TokenTemplate(String ip, String sessionId, String payload, String salt, char fieldDelimiter, boolean isUrl) {
+        String delimiter = String.valueOf(fieldDelimiter);
+        StringBuilder fields = new StringBuilder(delimiter);
+        if (sessionId != null) {
+            fields.append("id=").append(sessionId).append(delimiter);
+        }
+        if (payload != null) {
+            fields.append("data=").append(payload).append(delimiter);
+        }
+        String saltField = salt != null ? "salt=" + salt + delimiter : "";
+
+        this.head = new Segment(ip != null ? "ip=" + ip + delimiter : "");
+        this.startPrefix = new Segment("st=");
+        this.startSuffix = new Segment(delimiter + "exp=");
+        this.endPrefix = new Segment("exp=");
+        this.pathInBody = !isUrl;
+        if (isUrl) {
+            this.beforePath = new Segment(fields.toString(), fields + "url=");
+            this.afterPath = new Segment("", withoutLast(delimiter + saltField));
+        } else {
+            this.beforePath = new Segment(delimiter + "acl=");
+            this.afterPath = new Segment(fields.toString(), withoutLast(fields + saltField));
+        }
+    }
+
+    /**
+     * @param s string ending with the field delimiter
+     * @return {@code s} without its last char
+     */
+    private static String withoutLast(String s) {
+        return s.substring(0, s.length() - 1);
+    }
+
+    /**
+     * Writes the token for {@code path} to {@code buffer}.
+     *
+     * @param buffer empty buffer
+     * @param mac initialized {@link Mac} to sign with
+     * @param window resolved st and exp
+     * @param path acl or url
+     * @param escapeEarly whether to url encode {@code path}
+     * @param nanos receives the nanoseconds of each part at the {@code _NANOS} indexes, or null not to time
+     */
+    void sign(TokenBuffer buffer, Mac mac, TokenWindow window, String path, boolean escapeEarly, long[] nanos) {
+        long start = nanos != null ? System.nanoTime() : 0L;
+        buffer.appendSegment(this.head.body, this.head.hash);
+        if (window.startTime >= 0) {
+            buffer.appendSegment(this.startPrefix.body, this.startPrefix.hash).appendHashed(window.startTime)
+                    .appendSegment(this.startSuffix.body, this.startSuffix.hash);
+        } else {
+            buffer.appendSegment(this.endPrefix.body, this.endPrefix.hash);
+        }
+        buffer.appendHashed(window.endTime).appendSegment(this.beforePath.body, this.beforePath.hash);
+
+        int bodyLength = buffer.length();
+        if (!escapeEarly) {
+            buffer.append(path);
+            if (nanos != null) {
+                nanos[ESCAPE_NANOS] = 0L;
+            }
+        } else if (nanos == null) {
+            buffer.appendEscaped(path);
+        } else {
+            long escapeStart = System.nanoTime();
+            buffer.appendEscaped(path);
+            nanos[ESCAPE_NANOS] = System.nanoTime() - escapeStart;
+        }
+        buffer.hash(bodyLength);
+        if (this.pathInBody) {
+            buffer.appendSegment(this.afterPath.body, this.afterPath.hash);
+            bodyLength = buffer.length();
+        } else {
+            buffer.truncate(bodyLength);
+            buffer.appendSegment(this.afterPath.body, this.afterPath.hash);
+        }
+
+        long hmacStart = nanos != null ? System.nanoTime() : 0L;
+        int digestLength = buffer.digestHash(mac);
+        long hmacEnd = nanos != null ? System.nanoTime() : 0L;
+        buffer.truncate(bodyLength);
+        buffer.append("hmac=").appendDigest(digestLength);
+        if (nanos != null) {
+            nanos[HASH_SOURCE_NANOS] = hmacStart - start - nanos[ESCAPE_NANOS];
+            nanos[HMAC_NANOS] = hmacEnd - hmacStart;
+            nanos[HEX_NANOS] = System.nanoTime() - hmacEnd;
+        }
+    }
+
+    /**
+     * Constant part of the token, pre-encoded for the hash source.
+     */
+    private static final class Segment {
+
+        /** chars added to the token body. */
+        final char[] body;
+
+        /** bytes added to the hash source. (platform default charset, like {@code String.getBytes()}) */
+        final byte[] hash;
+
+        Segment(String both) {
+            this(both, both);
+        }
+
+        Segment(String body, String hash) {
+            this.body = body.toCharArray();
+            this.hash = hash.getBytes();
+        }
+    }
+}
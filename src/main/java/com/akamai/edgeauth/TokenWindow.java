@@ -0,0 +1,40 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+
+/**
+ * Resolved {@code st} and {@code exp} of a token. Resolving them once lets many tokens share the same window.
+ */
+final class TokenWindow {
+
+    /** st field, or -1 if the token has none. */
+    final long startTime;
+
+    /** exp field. */
+    final long endTime;
+
+    /**
+     * @param startTime st field, or -1 if the token has none
+     * @param endTime exp field
+     */
+    TokenWindow(long startTime, long endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Tokens an {@link EdgeAuthValidator} has verified, so requests presenting them again skip the HMAC.
+ * Only the time window and the request path are checked on a hit. Entries are keyed by the token
+ * string; lookups never lock, and expired entries are dropped when the cache grows past its size.
+ */
+final class VerificationCache {
+
+    /** number of entries above which expired, then arbitrary entries are evicted. */
+    private final int maxSize;
+
+    /** verified tokens by token string. */
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** set while one thread evicts, so others do not pile up behind it. */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * @param maxSize maximum number of tokens kept
+     */
+    VerificationCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param token token string
+     * @return the entry of a token verified before, or null
+     */
+    Entry get(String token) {
+        return this.entries.get(token);
+    }
+
+    /**
+     * @param token token string
+     * @param entry verified token
+     * @param now current time in seconds
+     */
+    void put(String token, Entry entry, long now) {
+        this.entries.put(token, entry);
+        if (this.entries.size() > this.maxSize) {
+            evict(now);
+        }
+    }
+
+    /**
+     * @param token token string
+     */
+    void remove(String token) {
+        this.entries.remove(token);
+    }
+
+    /**
+     * Drops expired entries, then arbitrary ones until the cache is back to 3/4 of {@code maxSize}.
+     *
+     * @param now current time in seconds
+     */
+    private void evict(long now) {
+        if (!this.evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (Iterator<Entry> it = this.entries.values().iterator(); it.hasNext(); ) {
+                if (it.next().token.getEndTime() <= now) {
+                    it.remove();
+                }
+            }
+            int target = this.maxSize - this.maxSize / 4;
+            for (Iterator<Entry> it = this.entries.values().iterator(); it.hasNext() && this.entries.size() > target; ) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            this.evicting.set(false);
+        }
+    }
+
+    /**
+     * @return number of cached tokens
+     */
+    int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * A verified token with the path it was verified for.
+     */
+    static final class Entry {
+
+        /** the parsed token, read from an immutable string. */
+        final EdgeAuthToken token;
+
+        /** the url of a URL token, or null. */
+        final String url;
+
+        /** the compiled acl of an ACL token, or null. */
+        final EdgeAuthAclMatcher acl;
+
+        Entry(EdgeAuthToken token, String url, EdgeAuthAclMatcher acl) {
+            this.token = token;
+            this.url = url;
+            this.acl = acl;
+        }
+    }
+}
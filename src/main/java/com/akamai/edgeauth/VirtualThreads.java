@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+
+/**
+ * Tells virtual threads (Java 21+) apart from platform threads. Per thread state such as an
+ * initialized {@link javax.crypto.Mac} would be created again for every virtual thread, so callers pool it instead.
+ * The library targets Java 8, so {@code Thread.isVirtual} is looked up reflectively.
+ */
+final class VirtualThreads {
+
+    /** {@code Thread.isVirtual()}, or null before Java 21. */
+    private static final MethodHandle IS_VIRTUAL = isVirtual();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return handle of {@code Thread.isVirtual()}, or null if there is none
+     */
+    private static MethodHandle isVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the current thread is a virtual thread
+     */
+    static boolean current() {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth.filter;
+
+import com.akamai.edgeauth.EdgeAuthException;
+import com.akamai.edgeauth.EdgeAuthValidator;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.List;
+
+
+/**
+ * {@link Filter} for the JDK {@code com.sun.net.httpserver} that lets a request through only if it carries
+ * a valid token for its path, found by {@link EdgeAuthValidator#getTokenName()} in the query string,
+ * a cookie or a header. Other requests get 403 Forbidden.
+ * Build the validator with {@code verificationCacheSize} so repeated requests with one token skip the HMAC.
+ * The {@link EdgeAuthValidator.Result} is set as the exchange attribute {@link #RESULT_ATTRIBUTE}.
+ *
+ * <pre>
+ * server.createContext("/", handler).getFilters().add(new EdgeAuthHttpFilter(validator));
+ * </pre>
+ */
+public final class EdgeAuthHttpFilter extends Filter {
+
+    /** exchange attribute holding the {@link EdgeAuthValidator.Result}. */
+    public static final String RESULT_ATTRIBUTE = "com.akamai.edgeauth.result";
+
+    private final EdgeAuthValidator validator;
+
+    /**
+     * @param validator Validator of the tokens
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthHttpFilter(EdgeAuthValidator validator) throws EdgeAuthException {
+        if (validator == null) {
+            throw new EdgeAuthException("You must provide a validator.");
+        }
+        this.validator = validator;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        String tokenName = this.validator.getTokenName();
+        String token = TokenLocator.queryParameter(exchange.getRequestURI().getRawQuery(), tokenName);
+        if (token == null) {
+            List<String> cookies = exchange.getRequestHeaders().get("Cookie");
+            if (cookies != null) {
+                for (int i = 0; i < cookies.size() && token == null; i++) {
+                    token = TokenLocator.cookie(cookies.get(i), tokenName);
+                }
+            }
+        }
+        if (token == null) {
+            token = exchange.getRequestHeaders().getFirst(tokenName);
+        }
+
+        EdgeAuthValidator.Result result = this.validator.validateRequest(token, exchange.getRequestURI().getPath());
+        exchange.setAttribute(RESULT_ATTRIBUTE, result);
+        if (result == EdgeAuthValidator.Result.VALID) {
+            chain.doFilter(exchange);
+            return;
+        }
+        exchange.sendResponseHeaders(403, -1);
+        exchange.close();
+    }
+
+    @Override
+    public String description() {
+        return "EdgeAuth token verification";
+    }
+
+    /**
+     * @return validator
+     */
+    public EdgeAuthValidator getValidator() {
+        return this.validator;
+    }
+}
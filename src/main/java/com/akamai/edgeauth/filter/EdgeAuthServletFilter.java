@@ -0,0 +1,178 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth.filter;
+
+import com.akamai.edgeauth.EdgeAuthBuilder;
+import com.akamai.edgeauth.EdgeAuthException;
+import com.akamai.edgeauth.EdgeAuthValidator;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+
+/**
+ * Jakarta servlet {@link Filter} that lets a request through only if it carries a valid token for its path,
+ * found by {@link EdgeAuthValidator#getTokenName()} in the query string, a cookie or a header.
+ * Other requests get 403 Forbidden. The {@link EdgeAuthValidator.Result} is set as the request attribute
+ * {@link #RESULT_ATTRIBUTE}. It needs {@code jakarta.servlet-api} 5.0 or later, which this library does not bring.
+ * Paths are matched relative to the context path, so ACLs of an application deployed under /app do not include /app.
+ *
+ * Either pass a validator to the constructor, or declare the filter in web.xml with the init parameters
+ * key, algorithm, tokenName, salt, fieldDelimiter, aclDelimiter, escapeEarly and verificationCacheSize
+ * (default 10000).
+ */
+public class EdgeAuthServletFilter implements Filter {
+
+    /** request attribute holding the {@link EdgeAuthValidator.Result}. */
+    public static final String RESULT_ATTRIBUTE = EdgeAuthHttpFilter.RESULT_ATTRIBUTE;
+
+    /** verified tokens remembered when the validator is built from init parameters. */
+    static final int DEFAULT_VERIFICATION_CACHE_SIZE = 10000;
+
+    private EdgeAuthValidator validator;
+
+    /**
+     * For containers. The validator is built from the init parameters in {@link #init(FilterConfig)}.
+     */
+    public EdgeAuthServletFilter() {
+    }
+
+    /**
+     * @param validator Validator of the tokens
+     * @throws EdgeAuthException EdgeAuthException
+     */
+    public EdgeAuthServletFilter(EdgeAuthValidator validator) throws EdgeAuthException {
+        if (validator == null) {
+            throw new EdgeAuthException("You must provide a validator.");
+        }
+        this.validator = validator;
+    }
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        if (this.validator != null) {
+            return;
+        }
+        try {
+            EdgeAuthBuilder builder = new EdgeAuthBuilder()
+                    .key(config.getInitParameter("key"))
+                    .verificationCacheSize(DEFAULT_VERIFICATION_CACHE_SIZE);
+            String value;
+            if ((value = config.getInitParameter("algorithm")) != null) {
+                builder.algorithm(value);
+            }
+            if ((value = config.getInitParameter("tokenName")) != null) {
+                builder.tokenName(value);
+            }
+            if ((value = config.getInitParameter("salt")) != null) {
+                builder.salt(value);
+            }
+            if ((value = config.getInitParameter("fieldDelimiter")) != null) {
+                builder.fieldDelimiter(delimiter("fieldDelimiter", value));
+            }
+            if ((value = config.getInitParameter("aclDelimiter")) != null) {
+                builder.aclDelimiter(delimiter("aclDelimiter", value));
+            }
+            if ((value = config.getInitParameter("escapeEarly")) != null) {
+                builder.escapeEarly(Boolean.parseBoolean(value));
+            }
+            if ((value = config.getInitParameter("verificationCacheSize")) != null) {
+                builder.verificationCacheSize(Integer.parseInt(value));
+            }
+            this.validator = builder.buildValidator();
+        } catch (EdgeAuthException | NumberFormatException e) {
+            throw new ServletException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param name init parameter
+     * @param value init parameter value
+     * @return the single character of {@code value}
+     * @throws ServletException if {@code value} is not a single character
+     */
+    private static char delimiter(String name, String value) throws ServletException {
+        if (value.length() != 1) {
+            throw new ServletException(name + " must be a single character.");
+        }
+        return value.charAt(0);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        String tokenName = this.validator.getTokenName();
+        String token = TokenLocator.queryParameter(httpRequest.getQueryString(), tokenName);
+        if (token == null) {
+            Cookie[] cookies = httpRequest.getCookies();
+            if (cookies != null) {
+                for (int i = 0; i < cookies.length && token == null; i++) {
+                    if (tokenName.equals(cookies[i].getName())) {
+                        token = cookies[i].getValue();
+                    }
+                }
+            }
+        }
+        if (token == null) {
+            token = httpRequest.getHeader(tokenName);
+        }
+
+        String path = TokenLocator.decodePath(contextRelative(httpRequest));
+        EdgeAuthValidator.Result result = this.validator.validateRequest(token, path);
+        request.setAttribute(RESULT_ATTRIBUTE, result);
+        if (result == EdgeAuthValidator.Result.VALID) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ((HttpServletResponse) response).sendError(HttpServletResponse.SC_FORBIDDEN);
+    }
+
+    /**
+     * @param request request
+     * @return request URI without the context path
+     */
+    static String contextRelative(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if (contextPath == null || contextPath.isEmpty() || !uri.startsWith(contextPath)) {
+            return uri;
+        }
+        String path = uri.substring(contextPath.length());
+        return path.isEmpty() ? "/" : path;
+    }
+
+    /**
+     * @return validator, or null before {@link #init(FilterConfig)}
+     */
+    public EdgeAuthValidator getValidator() {
+        return this.validator;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 Akamai Technologies http://developer.akamai.com.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.akamai.edgeauth.filter;
+
+import java.net.URI;
+
+
+/**
+ * Finds the token of a request in the query string, a cookie or a header named after the token,
+ * in that order. Values are taken as they are, without url decoding, as the edge does.
+ */
+final class TokenLocator {
+
+    private TokenLocator() {
+    }
+
+    /**
+     * @param rawQuery query string, not decoded. (Optional)
+     * @param name parameter name
+     * @return value of the first {@code name} parameter, or null
+     */
+    static String queryParameter(String rawQuery, String name) {
+        return find(rawQuery, '&', name);
+    }
+
+    /**
+     * @param cookieHeader value of a Cookie header. (Optional)
+     * @param name cookie name
+     * @return value of the first {@code name} cookie, or null
+     */
+    static String cookie(String cookieHeader, String name) {
+        return find(cookieHeader, ';', name);
+    }
+
+    /**
+     * @param pairs name=value pairs separated by {@code separator}
+     * @param separator pair separator
+     * @param name name to look for
+     * @return value of the first pair named {@code name}, or null
+     */
+    private static String find(String pairs, char separator, String name) {
+        if (pairs == null) {
+            return null;
+        }
+        int start = 0;
+        while (start < pairs.length()) {
+            int end = pairs.indexOf(separator, start);
+            if (end < 0) {
+                end = pairs.length();
+            }
+            while (start < end && pairs.charAt(start) == ' ') {
+                start++;
+            }
+            if (pairs.startsWith(name, start) && start + name.length() < end
+                    && pairs.charAt(start + name.length()) == '=') {
+                String value = pairs.substring(start + name.length() + 1, end).trim();
+                if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    /**
+     * @param rawPath request path as sent
+     * @return the path with percent-encoded octets decoded, or {@code rawPath} if it is not a valid path
+     */
+    static String decodePath(String rawPath) {
+        try {
+            String path = new URI(rawPath).getPath();
+            return path != null ? path : rawPath;
+        } catch (Exception e) {
+            return rawPath;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EdgeAuthAclMatcherTest {
+
+    private static boolean matches(String acl, String path) throws EdgeAuthException {
+        return EdgeAuthAclMatcher.compile(acl, '!').matches(path);
+    }
+
+    @Test
+    public void testWildcards() throws EdgeAuthException {
+        Assert.assertTrue(matches("/live/*", "/live/a/b"));
+        Assert.assertTrue(matches("/a!/b/*", "/b/"));
+        Assert.assertTrue(matches("/*/x?z", "/a/b/xyz"));
+        Assert.assertTrue(matches("*", ""));
+        Assert.assertTrue(matches("/a**b", "/ab"));
+        Assert.assertTrue(matches("/\u00e4?/*", "/\u00e4\u00f6/x"));
+        Assert.assertFalse(matches("/a!/b/*", "/c"));
+        Assert.assertFalse(matches("/a?", "/a"));
+        Assert.assertFalse(matches("/a/*/c", "/a/b/d"));
+        Assert.assertFalse(matches("/live/*", "/livestream"));
+        Assert.assertFalse(matches("", "/"));
+    }
+
+    @Test
+    public void testSharedPrefixes() throws EdgeAuthException {
+        EdgeAuthAclMatcher matcher = EdgeAuthAclMatcher.compile(
+                EdgeAuth.join('!', new String[] { "/live/*", "/live/ch?/*.m3u8", "/vod/abc/*", "/vod/abd" }), '!');
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(matcher.matches("/live/ch1/index.m3u8"));
+            Assert.assertTrue(matcher.matches("/vod/abc/seg.ts"));
+            Assert.assertTrue(matcher.matches("/vod/abd"));
+            Assert.assertFalse(matcher.matches("/vod/abd/seg.ts"));
+            Assert.assertFalse(matcher.matches("/vod/ab"));
+        }
+    }
+
+    @Test
+    public void testNoBacktracking() throws EdgeAuthException {
+        StringBuilder acl = new StringBuilder();
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            acl.append("*a");
+        }
+        for (int i = 0; i < 100000; i++) {
+            path.append('a');
+        }
+        Assert.assertTrue(matches(acl.toString(), path.toString()));
+        Assert.assertFalse(matches(acl + "b", path.toString()));
+    }
+
+    @Test
+    public void testCache() throws EdgeAuthException {
+        EdgeAuthAclMatcher matcher = EdgeAuthAclMatcher.compile("/cached/*", '!');
+        Assert.assertSame(matcher, EdgeAuthAclMatcher.compile("/cached/*", '!'));
+        Assert.assertNotSame(matcher, EdgeAuthAclMatcher.compile("/cached/*", ','));
+        Assert.assertEquals("/cached/*", matcher.getAcl());
+        Assert.assertEquals('!', matcher.getDelimiter());
+    }
+}
@@ -0,0 +1,108 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.crypto.Mac;
+
+public class EdgeAuthAsyncTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+
+    @Test
+    public void testGenerateOnExecutor() throws Exception {
+        EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).endTime(1700000300L).buildSigner();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            EdgeAuthAsync async = new EdgeAuthAsync(signer, executor);
+            Assert.assertEquals(signer.generateURLToken("/a"), async.generateURLToken("/a").get());
+            Assert.assertEquals(signer.generateACLToken("/a/*"), async.generateACLToken("/a/*").get());
+            Assert.assertEquals(signer.generateACLTokens(Arrays.asList("/a/*", "/b/*")),
+                    async.generateACLTokens(Arrays.asList("/a/*", "/b/*")).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailureCompletesExceptionally() throws Exception {
+        EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).endTime(1700000300L).buildSigner();
+        EdgeAuthAsync async = new EdgeAuthAsync(signer, Runnable::run);
+        try {
+            async.generateURLToken(" ").get();
+            Assert.fail("Empty URL should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof EdgeAuthException);
+        }
+    }
+
+    @Test
+    public void testVirtualThreadExecutor() throws Exception {
+        boolean supported = Double.parseDouble(System.getProperty("java.specification.version")) >= 21;
+        try {
+            ExecutorService executor = EdgeAuthAsync.virtualThreadExecutor();
+            Assert.assertTrue(supported);
+            try {
+                EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).endTime(1700000300L).buildSigner();
+                EdgeAuthAsync async = new EdgeAuthAsync(signer, executor);
+                List<CompletableFuture<String>> tokens = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    tokens.add(async.generateURLToken("/vod/" + i + ".ts"));
+                }
+                for (int i = 0; i < tokens.size(); i++) {
+                    Assert.assertEquals(signer.generateURLToken("/vod/" + i + ".ts"), tokens.get(i).get());
+                }
+                Assert.assertTrue(TokenBuffer.POOL.size() <= BoundedPool.DEFAULT_CAPACITY);
+            } finally {
+                executor.shutdown();
+            }
+        } catch (EdgeAuthException e) {
+            Assert.assertFalse(supported);
+        }
+    }
+
+    @Test
+    public void testPooledMac() throws Exception {
+        Assert.assertFalse(VirtualThreads.current());
+        HmacKey key = new HmacKey("HmacSHA256", null, sampleKey);
+        Mac first = key.borrow();
+        Mac second = key.borrow();
+        Assert.assertNotSame(first, second);
+        first.update((byte) 1);
+        key.giveBack(first);
+        Mac reused = key.borrow();
+        Assert.assertSame(first, reused);
+        Assert.assertArrayEquals(key.mac().doFinal(new byte[] { 2 }), reused.doFinal(new byte[] { 2 }));
+    }
+
+    @Test
+    public void testPoolsAreBounded() throws Exception {
+        HmacKey key = new HmacKey("HmacSHA256", null, sampleKey);
+        List<Mac> burst = new ArrayList<>();
+        for (int i = 0; i < 3 * BoundedPool.DEFAULT_CAPACITY; i++) {
+            burst.add(key.borrow());
+        }
+        for (Mac mac : burst) {
+            key.giveBack(mac);
+        }
+        Assert.assertEquals(BoundedPool.DEFAULT_CAPACITY, key.pool.size());
+        Assert.assertSame(burst.get(0), key.borrow());
+
+        BoundedPool<Object> pool = new BoundedPool<>(2);
+        Assert.assertTrue(pool.offer("a"));
+        Assert.assertTrue(pool.offer("b"));
+        Assert.assertFalse(pool.offer("c"));
+        Assert.assertEquals(2, pool.size());
+        Assert.assertEquals("a", pool.poll());
+        Assert.assertEquals("b", pool.poll());
+        Assert.assertNull(pool.poll());
+        Assert.assertEquals(0, pool.size());
+    }
+}
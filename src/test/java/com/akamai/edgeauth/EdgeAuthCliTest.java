@@ -0,0 +1,66 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+public class EdgeAuthCliTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+
+    @Test
+    public void testSignURLs() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        String input = "/a/1.ts\r\nhttps://host/b/2.ts?x=1#f\n\n/c/3.ts\nd/../e/4.ts?x=1&";
+        int status = EdgeAuthCli.run(new String[]{"--key", sampleKey, "--end-time", "1700000300", "--threads", "2"},
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out, new PrintStream(err));
+        Assert.assertEquals(err.toString(), 0, status);
+
+        EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).endTime(1700000300L).buildSigner();
+        String expected = "/a/1.ts?__token__=" + signer.generateURLToken("/a/1.ts") + "\n"
+                + "https://host/b/2.ts?x=1&__token__=" + signer.generateURLToken("/b/2.ts") + "#f\n"
+                + "\n"
+                + "/c/3.ts?__token__=" + signer.generateURLToken("/c/3.ts") + "\n"
+                + signer.signUrl("d/../e/4.ts?x=1&");
+        Assert.assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testChunksKeepOrder() throws Exception {
+        EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).endTime(1700000300L).tokenName("t").buildSigner();
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            input.append("/acl/").append(i).append("/*\n");
+            expected.append("t=").append(signer.generateACLToken("/acl/" + i + "/*")).append('\n');
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = new EdgeAuthCli.BulkSigner(signer, true, 4, 64).sign(
+                Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8))),
+                Channels.newChannel(out));
+        Assert.assertEquals(5000, count);
+        Assert.assertEquals(expected.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInvalidOptions() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Assert.assertEquals(2, EdgeAuthCli.run(new String[]{"--key"}, new ByteArrayInputStream(new byte[0]),
+                new ByteArrayOutputStream(), new PrintStream(err)));
+        Assert.assertEquals(2, EdgeAuthCli.run(new String[]{"--window", "1"}, new ByteArrayInputStream(new byte[0]),
+                new ByteArrayOutputStream(), new PrintStream(err)));
+        Assert.assertEquals(2, EdgeAuthCli.run(new String[]{"--window-seconds", "1"}, new ByteArrayInputStream(new byte[0]),
+                new ByteArrayOutputStream(), new PrintStream(err)));
+        Assert.assertTrue(err.toString().contains("Missing --key."));
+        Assert.assertEquals(2, EdgeAuthCli.run(new String[]{"--key", sampleKey}, new ByteArrayInputStream(new byte[0]),
+                new ByteArrayOutputStream(), new PrintStream(err)));
+        Assert.assertEquals(1, EdgeAuthCli.run(new String[]{"--key", "xyz", "--window-seconds", "1"},
+                new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), new PrintStream(err)));
+    }
+}
@@ -0,0 +1,121 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+public class EdgeAuthConfigTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void write(Path file, String content) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Test
+    public void testLoad() throws EdgeAuthException, IOException {
+        Path file = folder.getRoot().toPath().resolve("edgeauth.properties");
+        write(file, "# comment\nkey=" + sampleKey + "\nalgorithm=sha1\nstartTime=1700000000\n"
+                + "windowSeconds = 300\nfieldDelimiter=;\nescapeEarly=TRUE\nsessionId=a b\n");
+        EdgeAuthSigner signer = EdgeAuthConfig.load(file).buildSigner();
+        EdgeAuthSigner expected = new EdgeAuthBuilder().key(sampleKey).algorithm("sha1").startTime(1700000000L)
+                .windowSeconds(300).fieldDelimiter(';').escapeEarly(true).sessionId("a b").buildSigner();
+        Assert.assertEquals(expected.generateACLToken("/live/*"), signer.generateACLToken("/live/*"));
+    }
+
+    @Test
+    public void testEnvironment() throws EdgeAuthException {
+        Assert.assertEquals("EDGEAUTH_WINDOW_SECONDS", EdgeAuthConfig.environmentName("windowSeconds"));
+        Map<String, String> env = new HashMap<>();
+        env.put("EDGEAUTH_KEY", sampleKey);
+        env.put("EDGEAUTH_START_TIME", "now");
+        env.put("EDGEAUTH_WINDOW_SECONDS", "60");
+        env.put("EDGEAUTH_TOKEN_NAME", "hdnts");
+        env.put("PATH", "/usr/bin");
+        EdgeAuthSigner signer = EdgeAuthConfig.fromEnvironment(env).clock(EdgeAuthClock.fixed(1700000000L)).buildSigner();
+        Assert.assertEquals("hdnts", signer.getTokenName());
+        Assert.assertTrue(signer.generateACLToken("/*").startsWith("st=1700000000~exp=1700000060~"));
+    }
+
+    @Test
+    public void testAcceptedKeys() throws EdgeAuthException {
+        String newKey = "63b263b263b263b263b263b263b2";
+        String token = new EdgeAuthBuilder().key(sampleKey).startTime(EdgeAuth.NOW).windowSeconds(300)
+                .buildSigner().generateACLToken("/*");
+        Map<String, String> options = new HashMap<>();
+        options.put("key", newKey);
+        options.put("acceptedKeys", " " + sampleKey + ", ");
+        EdgeAuthBuilder builder = EdgeAuthConfig.load(options);
+        Assert.assertEquals(EdgeAuthValidator.Result.VALID, builder.buildValidator().validateACLToken(token));
+        String newToken = builder.startTime(EdgeAuth.NOW).windowSeconds(300).buildSigner().generateACLToken("/*");
+        Assert.assertEquals(EdgeAuthValidator.Result.VALID,
+                new EdgeAuthBuilder().key(newKey).buildValidator().validateACLToken(newToken));
+
+        options.remove("key");
+        try {
+            EdgeAuthConfig.load(options);
+            Assert.fail("acceptedKeys without key");
+        } catch (EdgeAuthException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("acceptedKeys"));
+        }
+    }
+
+    @Test
+    public void testInvalidOptions() {
+        String[][] invalid = { { "windowSecond", "300" }, { "windowSeconds", "5m" },
+                { "fieldDelimiter", "~~" }, { "escapeEarly", "yes" } };
+        for (String[] option : invalid) {
+            Map<String, String> options = new HashMap<>();
+            options.put(option[0], option[1]);
+            try {
+                EdgeAuthConfig.load(options);
+                Assert.fail(option[0]);
+            } catch (EdgeAuthException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains(option[0]));
+            }
+        }
+    }
+
+    @Test
+    public void testWatcher() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("edgeauth.properties");
+        write(file, "key=" + sampleKey + "\nwindowSeconds=300\n");
+        try (EdgeAuthConfigWatcher watcher = new EdgeAuthConfigWatcher(file)) {
+            EdgeAuthSigner signer = watcher.getSigner();
+            String first = signer.generateACLToken("/live/*");
+            Assert.assertEquals(EdgeAuthValidator.Result.VALID, watcher.getValidator().validateACLToken(first));
+
+            write(file, "key=abcdef\nwindowSeconds=300\n");
+            long deadline = System.currentTimeMillis() + 10000;
+            while (watcher.getSigner() == signer && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            Assert.assertNotSame(signer, watcher.getSigner());
+            EdgeAuthConfigWatcher.Snapshot snapshot = watcher.getSnapshot();
+            signer = snapshot.getSigner();
+            String second = signer.generateACLToken("/live/*");
+            Assert.assertEquals(EdgeAuthValidator.Result.VALID, snapshot.getValidator().validateACLToken(second));
+            Assert.assertEquals(EdgeAuthValidator.Result.INVALID_HMAC, watcher.getValidator().validateACLToken(first));
+
+            write(file, "key=\n");
+            Assert.assertFalse(watcher.reload());
+            Assert.assertNotNull(watcher.getLastError());
+            Assert.assertSame(signer, watcher.getSigner());
+            Assert.assertSame(snapshot, watcher.getSnapshot());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.akamai.edgeauth.EdgeAuthValidator.Result;
+
+public class EdgeAuthKeyRingTest {
+
+    private static final String oldKey = "52a152a152a152a152a152a152a1";
+    private static final String newKey = "a1b2c3d4e5f60718293a4b5c6d7e8f90";
+
+    @Test
+    public void testRotation() throws EdgeAuthException {
+        EdgeAuthKeyRing ring = new EdgeAuthKeyRing("sha256", oldKey);
+        EdgeAuthBuilder builder = new EdgeAuthBuilder().keyRing(ring).startTime(EdgeAuth.NOW).windowSeconds(300);
+        EdgeAuthSigner signer = builder.buildSigner();
+        EdgeAuthValidator validator = builder.buildValidator();
+
+        String oldToken = signer.generateACLToken("/live/*");
+        Assert.assertEquals(Result.VALID, validator.validateACLToken(oldToken));
+
+        ring.rotate(newKey);
+        Assert.assertEquals(2, ring.size());
+        String newToken = signer.generateACLToken("/live/*");
+        Assert.assertNotEquals(oldToken, newToken);
+        Assert.assertEquals(Result.VALID, validator.validateACLToken(newToken));
+        Assert.assertEquals(Result.VALID, validator.validateACLToken(oldToken));
+        Assert.assertEquals(Result.VALID, new EdgeAuthBuilder().key(newKey).buildValidator().validateACLToken(newToken));
+
+        Assert.assertTrue(ring.retire(oldKey));
+        Assert.assertFalse(ring.retire(oldKey));
+        Assert.assertEquals(Result.INVALID_HMAC, validator.validateACLToken(oldToken));
+        Assert.assertEquals(Result.VALID, validator.validateACLToken(newToken));
+    }
+
+    @Test
+    public void testRotationWithTokenCache() throws EdgeAuthException {
+        EdgeAuthKeyRing ring = new EdgeAuthKeyRing("sha256", oldKey);
+        EdgeAuthBuilder builder = new EdgeAuthBuilder().keyRing(ring).startTime(EdgeAuth.NOW).windowSeconds(300)
+                .clock(EdgeAuthClock.fixed(1700000000L)).cacheBucketSeconds(60);
+        EdgeAuthSigner signer = builder.buildSigner();
+        EdgeAuthValidator validator = builder.buildValidator();
+
+        String oldToken = signer.generateACLToken("/live/*");
+        Assert.assertEquals(oldToken, signer.generateACLToken("/live/*"));
+
+        ring.rotate(newKey);
+        ring.retire(oldKey);
+        String newToken = signer.generateACLToken("/live/*");
+        Assert.assertNotEquals(oldToken, newToken);
+        Assert.assertEquals(Result.VALID, validator.validateACLToken(newToken));
+    }
+
+    @Test
+    public void testSetKeys() throws EdgeAuthException {
+        EdgeAuthKeyRing ring = new EdgeAuthKeyRing("md5", oldKey, newKey, newKey.toUpperCase());
+        Assert.assertEquals("HmacMD5", ring.getAlgorithm());
+        Assert.assertEquals(2, ring.size());
+
+        ring.setKeys(newKey);
+        Assert.assertEquals(1, ring.size());
+    }
+
+    @Test(expected = EdgeAuthException.class)
+    public void testRetirePrimaryKey() throws EdgeAuthException {
+        new EdgeAuthKeyRing("sha256", oldKey, newKey).retire(oldKey);
+    }
+
+    @Test(expected = EdgeAuthException.class)
+    public void testInvalidKey() throws EdgeAuthException {
+        new EdgeAuthKeyRing("sha256", oldKey).rotate("xyz");
+    }
+}
@@ -0,0 +1,136 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+public class EdgeAuthManifestRewriterTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+
+    private static EdgeAuthSigner signer() throws EdgeAuthException {
+        return new EdgeAuthBuilder()
+                .key(sampleKey)
+                .startTime(EdgeAuth.NOW)
+                .windowSeconds(300)
+                .clock(EdgeAuthClock.fixed(1700000000L))
+                .buildSigner();
+    }
+
+    private static String rewriteURLTokens(EdgeAuthManifestRewriter rewriter, String manifest, String path) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rewriter.rewriteURLTokens(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)), out, path);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testHlsMediaPlaylist() throws Exception {
+        EdgeAuthSigner signer = signer();
+        EdgeAuthManifestRewriter rewriter = new EdgeAuthManifestRewriter(signer);
+        String manifest = "#EXTM3U\r\n"
+                + "#EXT-X-KEY:METHOD=AES-128,URI=\"../keys/k1.key\",IV=0x1\r\n"
+                + "#EXT-X-MAP:URI=\"init.mp4\"\r\n"
+                + "#EXTINF:6.0,\r\n"
+                + "seg1.ts\r\n"
+                + "#EXTINF:6.0,\r\n"
+                + "https://cdn.example.com/live/seg2.ts?a=1#t=0\r\n"
+                + "#EXT-X-SESSION-KEY:METHOD=SAMPLE-AES,URI=\"skd://key\"\r\n"
+                + "# comment URI=\"x\"\r\n"
+                + "\r\n";
+        String expected = "#EXTM3U\r\n"
+                + "#EXT-X-KEY:METHOD=AES-128,URI=\"../keys/k1.key?__token__=" + signer.generateURLToken("/live/keys/k1.key") + "\",IV=0x1\r\n"
+                + "#EXT-X-MAP:URI=\"init.mp4?__token__=" + signer.generateURLToken("/live/hd/init.mp4") + "\"\r\n"
+                + "#EXTINF:6.0,\r\n"
+                + "seg1.ts?__token__=" + signer.generateURLToken("/live/hd/seg1.ts") + "\r\n"
+                + "#EXTINF:6.0,\r\n"
+                + "https://cdn.example.com/live/seg2.ts?a=1&__token__=" + signer.generateURLToken("/live/seg2.ts") + "#t=0\r\n"
+                + "#EXT-X-SESSION-KEY:METHOD=SAMPLE-AES,URI=\"skd://key\"\r\n"
+                + "# comment URI=\"x\"\r\n"
+                + "\r\n";
+        Assert.assertEquals(expected, rewriteURLTokens(rewriter, manifest, "/live/hd/index.m3u8"));
+    }
+
+    @Test
+    public void testDashBaseURLAndTemplate() throws Exception {
+        EdgeAuthSigner signer = signer();
+        EdgeAuthManifestRewriter rewriter = new EdgeAuthManifestRewriter(signer);
+        String manifest = "<?xml version=\"1.0\"?>\n"
+                + "<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\">\n"
+                + "  <!-- <SegmentURL media=\"no.mp4\"/> -->\n"
+                + "  <Period>\n"
+                + "    <BaseURL>video/</BaseURL>\n"
+                + "    <AdaptationSet>\n"
+                + "      <SegmentTemplate media=\"seg-$Number$.m4s\" initialization='init.mp4?v=2'/>\n"
+                + "      <Representation id=\"1\"><BaseURL>hd/</BaseURL>\n"
+                + "        <SegmentList><SegmentURL media=\"s1.m4s\"/></SegmentList>\n"
+                + "      </Representation>\n"
+                + "    </AdaptationSet>\n"
+                + "  </Period>\n"
+                + "</MPD>\n";
+        String expected = manifest
+                .replace("'init.mp4?v=2'", "'init.mp4?v=2&amp;__token__=" + signer.generateURLToken("/vod/video/init.mp4") + "'")
+                .replace("\"s1.m4s\"", "\"s1.m4s?__token__=" + signer.generateURLToken("/vod/video/hd/s1.m4s") + "\"");
+        Assert.assertEquals(expected, rewriteURLTokens(rewriter, manifest, "http://example.com/vod/a.mpd"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = rewriter.rewriteACLToken(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)), out,
+                "/vod/a.mpd", "/vod/*");
+        Assert.assertEquals(3, count);
+        Assert.assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8)
+                .contains("\"seg-$Number$.m4s?__token__=" + signer.generateACLToken("/vod/*") + "\""));
+    }
+
+    @Test
+    public void testOneByteReads() throws Exception {
+        EdgeAuthSigner signer = signer();
+        EdgeAuthManifestRewriter rewriter = new EdgeAuthManifestRewriter(signer);
+        StringBuilder manifest = new StringBuilder("#EXTM3U\n");
+        for (int i = 0; i < 2000; i++) {
+            manifest.append("#EXTINF:2.0,\n/live/seg").append(i).append(".ts\n");
+        }
+        final ByteBuffer source = ByteBuffer.wrap(manifest.toString().getBytes(StandardCharsets.UTF_8));
+        ReadableByteChannel in = new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                dst.put(source.get());
+                return 1;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(2000, rewriter.rewriteURLTokens(in, Channels.newChannel(out), "/live/index.m3u8"));
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        Assert.assertEquals("/live/seg1999.ts?__token__=" + signer.generateURLToken("/live/seg1999.ts"), lines[lines.length - 1]);
+    }
+
+    @Test
+    public void testSignedPath() {
+        Assert.assertEquals("/a/c/d.ts", EdgeAuthManifestRewriter.signedPath("/a/b/", "../c/./d.ts?x"));
+        Assert.assertEquals("/", EdgeAuthManifestRewriter.signedPath("/a/", "//host"));
+        Assert.assertEquals("/p", EdgeAuthManifestRewriter.signedPath("/a/", "HTTPS://host/p"));
+        Assert.assertNull(EdgeAuthManifestRewriter.signedPath("/a/", "data:text/plain,x"));
+        Assert.assertNull(EdgeAuthManifestRewriter.signedPath("/a/", "#frag"));
+    }
+
+    @Test(expected = EdgeAuthException.class)
+    public void testManifestPathRequired() throws Exception {
+        rewriteURLTokens(new EdgeAuthManifestRewriter(signer()), "#EXTM3U\n", "index.m3u8");
+    }
+}
@@ -0,0 +1,142 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EdgeAuthMetricsTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+
+    @Test
+    public void testRecordGenerationAndValidation() throws Exception {
+        EdgeAuthMetricsRecorder recorder = new EdgeAuthMetricsRecorder();
+        EdgeAuthBuilder builder = new EdgeAuthBuilder()
+                .key(sampleKey)
+                .escapeEarly(true)
+                .windowSeconds(300)
+                .clock(EdgeAuthClock.fixed(1700000000L))
+                .metrics(recorder);
+        EdgeAuthSigner signer = builder.buildSigner();
+        String token = signer.generateURLToken("/a b");
+        signer.generateACLToken("/a/*");
+        signer.generateACLToken("/b/*");
+        try {
+            signer.generateURLToken("");
+            Assert.fail("Empty URL should fail");
+        } catch (EdgeAuthException e) {
+            Assert.assertEquals("You must provide a URL.", e.getMessage());
+        }
+
+        EdgeAuthValidator validator = builder.buildValidator();
+        validator.validateURLToken(token, "/a b");
+        validator.validateURLToken(token, "/c");
+        validator.validateURLToken("garbage", "/a b");
+
+        Assert.assertEquals(1, recorder.getIssued("HmacSHA256", true));
+        Assert.assertEquals(2, recorder.getIssued("HmacSHA256", false));
+        Assert.assertEquals(0, recorder.getIssued("HmacMD5", false));
+        Assert.assertEquals(1, recorder.getFailures(EdgeAuthMetrics.Failure.MISSING_PATH));
+        Assert.assertEquals(0, recorder.getFailures(EdgeAuthMetrics.Failure.EXPIRED));
+        Assert.assertEquals(1, recorder.getValidated("HmacSHA256", EdgeAuthValidator.Result.VALID));
+        Assert.assertEquals(1, recorder.getValidated("HmacSHA256", EdgeAuthValidator.Result.INVALID_HMAC));
+        Assert.assertEquals(1, recorder.getValidated("HmacSHA256", EdgeAuthValidator.Result.MALFORMED));
+
+        EdgeAuthMetricsRecorder.LatencyHistogram hmac = recorder.getLatency(EdgeAuthMetrics.Stage.HMAC);
+        Assert.assertEquals(5, hmac.getCount());
+        Assert.assertEquals(5, recorder.getLatency(EdgeAuthMetrics.Stage.ESCAPE).getCount());
+        Assert.assertEquals(3, recorder.getLatency(EdgeAuthMetrics.Stage.FORMAT).getCount());
+        Assert.assertTrue(hmac.getQuantileNanos(0.5) >= hmac.getTotalNanos() / hmac.getCount() / 5);
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        EdgeAuthMetricsRecorder.LatencyHistogram histogram =
+                new EdgeAuthMetricsRecorder().getLatency(EdgeAuthMetrics.Stage.FORMAT);
+        Assert.assertEquals(0, histogram.getQuantileNanos(0.99));
+        histogram.record(0);
+        histogram.record(1000);
+        histogram.record(1023);
+        histogram.record(5000);
+        long[] counts = histogram.getBucketCounts();
+        Assert.assertEquals(1, counts[0]);
+        Assert.assertEquals(2, counts[9]);
+        Assert.assertEquals(1, counts[12]);
+        Assert.assertEquals(1023, histogram.getQuantileNanos(0.5));
+        Assert.assertEquals(8191, histogram.getQuantileNanos(1.0));
+        Assert.assertEquals(7023, histogram.getTotalNanos());
+    }
+
+    @Test
+    public void testVerboseRedactsKey() throws Exception {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            new EdgeAuthBuilder().key(sampleKey).windowSeconds(300).verbose(true).buildSigner().generateACLToken("/a/*");
+        } finally {
+            System.setOut(stdout);
+        }
+        Assert.assertTrue(out.toString().contains("(redacted)"));
+        Assert.assertFalse(out.toString().contains(sampleKey));
+    }
+
+    @Test
+    public void testTracer() throws Exception {
+        List<EdgeAuthTrace> traces = Collections.synchronizedList(new ArrayList<EdgeAuthTrace>());
+        EdgeAuthSigner signer = new EdgeAuthBuilder()
+                .key(sampleKey)
+                .salt("secret-salt")
+                .escapeEarly(true)
+                .windowSeconds(300)
+                .clock(EdgeAuthClock.fixed(1700000000L))
+                .tracer(traces::add)
+                .buildSigner();
+        signer.generateURLToken("/a b");
+        signer.generateACLTokens(Arrays.asList("/a/*", "/b/*"));
+        Assert.assertEquals(3, traces.size());
+
+        EdgeAuthTrace trace = traces.get(0);
+        Assert.assertEquals("/a b", trace.getPath());
+        Assert.assertTrue(trace.isUrl());
+        Assert.assertEquals(-1L, trace.getStartTime());
+        Assert.assertEquals(1700000300L, trace.getEndTime());
+        Assert.assertTrue(trace.getTimeNanos() >= 0);
+        Assert.assertTrue(trace.getEscapeNanos() >= 0 && trace.getHashSourceNanos() >= 0);
+        Assert.assertTrue(trace.getHmacNanos() >= 0 && trace.getHexNanos() >= 0);
+        Assert.assertEquals("(redacted)", trace.getParameters().get("Salt"));
+        Assert.assertFalse(trace.toString().contains(sampleKey));
+        Assert.assertFalse(trace.toString().contains("secret-salt"));
+        Assert.assertEquals(-1L, traces.get(1).getTimeNanos());
+    }
+
+    @Test
+    public void testTracerSampling() throws EdgeAuthException {
+        AtomicInteger traced = new AtomicInteger();
+        EdgeAuthSigner signer = new EdgeAuthBuilder()
+                .key(sampleKey)
+                .windowSeconds(300)
+                .tracer(trace -> traced.incrementAndGet())
+                .traceSampleRate(10)
+                .buildSigner();
+        for (int i = 0; i < 10000; i++) {
+            signer.generateACLToken("/a/*");
+        }
+        Assert.assertTrue(String.valueOf(traced.get()), traced.get() > 700 && traced.get() < 1300);
+
+        try {
+            new EdgeAuthBuilder().key(sampleKey).windowSeconds(300).tracer(EdgeAuthTracer.STDOUT).traceSampleRate(0)
+                    .buildSigner();
+            Assert.fail();
+        } catch (EdgeAuthException e) {
+            Assert.assertEquals("traceSampleRate must be ( > 0 )", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EdgeAuthPresignerTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        EdgeAuthMetricsRecorder recorder = new EdgeAuthMetricsRecorder();
+        EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).startTime(EdgeAuth.NOW).windowSeconds(3)
+                .metrics(recorder).buildSigner();
+        EdgeAuthValidator validator = new EdgeAuthBuilder().key(sampleKey).buildValidator();
+
+        try (EdgeAuthPresigner presigner = new EdgeAuthPresigner(signer, 2)) {
+            String first = presigner.register("/live/*");
+            Assert.assertEquals(first, presigner.register("/live/*"));
+            Assert.assertEquals(first, presigner.getACLToken("/live/*"));
+            Assert.assertEquals(Collections.singleton("/live/*"), presigner.getRegistered());
+            Assert.assertEquals(1, recorder.getLatency(EdgeAuthMetrics.Stage.HMAC).getCount());
+
+            long deadline = System.currentTimeMillis() + 5000;
+            String token = first;
+            while (token.equals(first) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                token = presigner.getACLToken("/live/*");
+            }
+            Assert.assertNotEquals(first, token);
+            Assert.assertEquals(EdgeAuthValidator.Result.VALID, validator.validateACLToken(token));
+
+            presigner.unregister("/live/*");
+            Assert.assertTrue(presigner.getRegistered().isEmpty());
+        }
+    }
+
+    @Test
+    public void testExpiredFallsBackToSigning() throws EdgeAuthException {
+        AtomicLong now = new AtomicLong(1700000000L);
+        EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).startTime(EdgeAuth.NOW).windowSeconds(300)
+                .clock(now::get).buildSigner();
+
+        try (EdgeAuthPresigner presigner = new EdgeAuthPresigner(signer, 60)) {
+            String first = presigner.register("/live/*");
+            Assert.assertTrue(first.contains("exp=1700000300~"));
+            Assert.assertEquals("/vod/* is not registered", signer.generateACLToken("/vod/*"),
+                    presigner.getACLToken("/vod/*"));
+
+            now.set(1700000300L);
+            Assert.assertTrue(presigner.getACLToken("/live/*").contains("exp=1700000600~"));
+        }
+    }
+
+    @Test
+    public void testInvalidArguments() throws EdgeAuthException {
+        EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).windowSeconds(60).buildSigner();
+        try (EdgeAuthPresigner presigner = new EdgeAuthPresigner(signer, 60)) {
+            presigner.register("/live/*");
+            Assert.fail();
+        } catch (EdgeAuthException e) {
+            Assert.assertEquals("Tokens must live longer than marginSeconds.", e.getMessage());
+        }
+        try {
+            new EdgeAuthPresigner(signer, 0).close();
+            Assert.fail();
+        } catch (EdgeAuthException e) {
+            Assert.assertEquals("marginSeconds must be ( > 0 )", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.akamai.edgeauth.EdgeAuthValidator.Result;
+
+public class EdgeAuthReplayGuardTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+    private static final long now = 1700000000L;
+
+    @Test
+    public void testFirstUse() throws EdgeAuthException {
+        for (boolean offHeap : new boolean[] { false, true }) {
+            EdgeAuthReplayGuard guard = new EdgeAuthReplayGuard(1000, 300, offHeap, EdgeAuthClock.fixed(now));
+
+            Assert.assertTrue(guard.firstUse("id1", "abcdef", now + 60));
+            Assert.assertFalse(guard.firstUse("id1", "abcdef", now + 60));
+            Assert.assertTrue(guard.firstUse("id2", "abcdef", now + 60));
+            Assert.assertTrue(guard.firstUse("id1", "abcdee", now + 60));
+            Assert.assertTrue(guard.firstUse("id1", "abcdef", now + 120));
+        }
+    }
+
+    @Test
+    public void testFailsClosed() throws EdgeAuthException {
+        EdgeAuthReplayGuard guard = new EdgeAuthReplayGuard(1, 300, false, EdgeAuthClock.fixed(now));
+
+        Assert.assertFalse(guard.firstUse("id", "abcdef", now));
+        Assert.assertFalse(guard.firstUse("id", "abcdef", now + 3600));
+
+        int accepted = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (guard.firstUse("id" + i, "abcdef", now + 60)) {
+                accepted++;
+            }
+        }
+        Assert.assertTrue(accepted < 10000);
+        Assert.assertTrue(accepted <= guard.getCapacity());
+    }
+
+    @Test
+    public void testBurstWithSameExp() throws EdgeAuthException {
+        for (boolean offHeap : new boolean[] { false, true }) {
+            AtomicLong time = new AtomicLong(now);
+            EdgeAuthReplayGuard guard = new EdgeAuthReplayGuard(1000, 300, offHeap, time::get);
+            long initialCapacity = guard.getCapacity();
+
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertTrue(guard.firstUse("id" + i, "abcdef", now + 60));
+            }
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertFalse(guard.firstUse("id" + i, "abcdef", now + 60));
+            }
+            Assert.assertTrue(guard.getCapacity() > initialCapacity);
+
+            time.addAndGet(3600);
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertTrue(guard.firstUse("id" + i, "abcdef", now + 3660));
+            }
+        }
+    }
+
+    @Test
+    public void testGrowthBudget() throws EdgeAuthException {
+        EdgeAuthReplayGuard guard = new EdgeAuthReplayGuard(1000, 300, false, EdgeAuthClock.fixed(now));
+        long initialCapacity = guard.getCapacity();
+
+        int accepted = 0;
+        for (int exp = 10; exp <= 300; exp += 5) {
+            for (int i = 0; i < 1000; i++) {
+                if (guard.firstUse("id" + i, "abcdef", now + exp)) {
+                    accepted++;
+                }
+            }
+        }
+        Assert.assertTrue(accepted >= 1000);
+        Assert.assertTrue(accepted < 59 * 1000);
+        // room for 1000 more tokens at 0.75 load, rounded up to a power of two
+        Assert.assertTrue(guard.getCapacity() <= initialCapacity + 2048);
+    }
+
+    @Test
+    public void testWheelReuse() throws EdgeAuthException {
+        AtomicLong time = new AtomicLong(now);
+        EdgeAuthReplayGuard guard = new EdgeAuthReplayGuard(1000, 300, false, time::get);
+        Assert.assertEquals(5, guard.getResolutionSeconds());
+
+        Assert.assertTrue(guard.firstUse("id", "abcdef", now + 10));
+        time.addAndGet(3600);
+        Assert.assertTrue(guard.firstUse("id", "abcdef", now + 3610));
+        Assert.assertFalse(guard.firstUse("id", "abcdef", now + 3610));
+        Assert.assertFalse(guard.firstUse("id", "abcdef", now + 10));
+    }
+
+    @Test
+    public void testValidator() throws EdgeAuthException {
+        EdgeAuthReplayGuard guard = new EdgeAuthReplayGuard(1000, 300, false);
+        for (int cacheSize : new int[] { 0, 100 }) {
+            EdgeAuthBuilder builder = new EdgeAuthBuilder().key(sampleKey).startTime(EdgeAuth.NOW).windowSeconds(300)
+                    .verificationCacheSize(cacheSize).replayGuard(guard);
+            EdgeAuthValidator validator = builder.buildValidator();
+
+            String reusable = builder.buildSigner().generateACLToken("/live/*");
+            Assert.assertEquals(Result.VALID, validator.validateRequest(reusable, "/live/a.ts"));
+            Assert.assertEquals(Result.VALID, validator.validateRequest(reusable, "/live/a.ts"));
+
+            String single = builder.sessionId("once" + cacheSize).buildSigner().generateACLToken("/live/*");
+            Assert.assertEquals(Result.ACL_MISMATCH, validator.validateRequest(single, "/vod/a.ts"));
+            Assert.assertEquals(Result.VALID, validator.validateRequest(single, "/live/a.ts"));
+            Assert.assertEquals(Result.REPLAYED, validator.validateRequest(single, "/live/a.ts"));
+            Assert.assertEquals(Result.REPLAYED, validator.validateACLToken(single));
+        }
+    }
+}
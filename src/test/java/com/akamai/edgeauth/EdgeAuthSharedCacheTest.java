@@ -0,0 +1,153 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EdgeAuthSharedCacheTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static EdgeAuthBuilder builder(EdgeAuthSharedCache cache, AtomicLong now, EdgeAuthMetrics metrics) {
+        return new EdgeAuthBuilder().key(sampleKey).startTime(EdgeAuth.NOW).windowSeconds(300)
+                .cacheBucketSeconds(60).sharedCache(cache).clock(now::get).metrics(metrics);
+    }
+
+    @Test
+    public void testSharedBetweenSigners() throws EdgeAuthException, IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        AtomicLong now = new AtomicLong(1700000010L);
+        EdgeAuthMetricsRecorder first = new EdgeAuthMetricsRecorder();
+        EdgeAuthMetricsRecorder second = new EdgeAuthMetricsRecorder();
+
+        try (EdgeAuthSharedCache cache = new EdgeAuthSharedCache(file, 64)) {
+            String token = builder(cache, now, first).buildSigner().generateACLToken("/live/*");
+            Assert.assertTrue(token.startsWith("st=1699999980~exp=1700000280~"));
+
+            // another process opening the same file, e.g. after a restart
+            try (EdgeAuthSharedCache reopened = new EdgeAuthSharedCache(file, 64)) {
+                EdgeAuthSigner signer = builder(reopened, now, second).buildSigner();
+                Assert.assertEquals(token, signer.generateACLToken("/live/*"));
+                Assert.assertEquals(0, second.getLatency(EdgeAuthMetrics.Stage.HMAC).getCount());
+
+                Assert.assertNotEquals(token, builder(reopened, now, second).sessionId("other").buildSigner()
+                        .generateACLToken("/live/*"));
+                Assert.assertNotEquals(token, builder(reopened, now, second).key("abcdef").buildSigner()
+                        .generateACLToken("/live/*"));
+                Assert.assertEquals(2, second.getLatency(EdgeAuthMetrics.Stage.HMAC).getCount());
+
+                now.set(1700000070L);
+                Assert.assertTrue(signer.generateACLToken("/live/*").startsWith("st=1700000040~"));
+                Assert.assertEquals(3, second.getLatency(EdgeAuthMetrics.Stage.HMAC).getCount());
+            }
+        }
+    }
+
+    @Test
+    public void testSlotFormat() throws EdgeAuthException, IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        try (EdgeAuthSharedCache cache = new EdgeAuthSharedCache(file, 8, 128)) {
+            cache.put(1L, "/a", true, 60L, 400L, "token");
+            Assert.assertEquals("token", cache.get(1L, "/a", true, 60L, 399L));
+            Assert.assertNull(cache.get(1L, "/a", true, 60L, 400L));
+            Assert.assertNull(cache.get(2L, "/a", true, 60L, 399L));
+            Assert.assertNull(cache.get(1L, "/a", false, 60L, 399L));
+            Assert.assertNull(cache.get(1L, "/a", true, 120L, 399L));
+
+            StringBuilder large = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                large.append('x');
+            }
+            cache.put(1L, "/b", true, 60L, 400L, large.toString());
+            Assert.assertNull(cache.get(1L, "/b", true, 60L, 399L));
+        }
+        try {
+            new EdgeAuthSharedCache(file, 16, 128).close();
+            Assert.fail();
+        } catch (EdgeAuthException e) {
+            Assert.assertTrue(e.getMessage().endsWith("was created with other slots or slotSize."));
+        }
+    }
+
+    @Test
+    public void testCorruptEntryIsMiss() throws EdgeAuthException, IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        try (EdgeAuthSharedCache cache = new EdgeAuthSharedCache(file, 8, 128)) {
+            cache.put(1L, "/a", true, 60L, 400L, "token");
+            Assert.assertEquals("token", cache.get(1L, "/a", true, 60L, 399L));
+
+            int offset = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1).indexOf("/atoken");
+            try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+                raw.seek(offset + 2);
+                raw.write('T');
+            }
+            Assert.assertNull(cache.get(1L, "/a", true, 60L, 399L));
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersOnOneSlot() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        try (EdgeAuthSharedCache first = new EdgeAuthSharedCache(file, 1, 128);
+             EdgeAuthSharedCache second = new EdgeAuthSharedCache(file, 1, 128)) {
+            AtomicBoolean stop = new AtomicBoolean();
+            Thread[] writers = {
+                new Thread(() -> {
+                    while (!stop.get()) {
+                        first.put(1L, "/free/*", false, 60L, 400L, "tokenAAAAAAAAAAAAAAAA");
+                    }
+                }),
+                new Thread(() -> {
+                    while (!stop.get()) {
+                        second.put(1L, "/paid/*", false, 60L, 400L, "tokenBBBBBBBBBBBBBBBB");
+                    }
+                })
+            };
+            for (Thread writer : writers) {
+                writer.start();
+            }
+            try {
+                for (int i = 0; i < 200000; i++) {
+                    String free = first.get(1L, "/free/*", false, 60L, 399L);
+                    Assert.assertTrue(free, free == null || free.equals("tokenAAAAAAAAAAAAAAAA"));
+                    String paid = second.get(1L, "/paid/*", false, 60L, 399L);
+                    Assert.assertTrue(paid, paid == null || paid.equals("tokenBBBBBBBBBBBBBBBB"));
+                }
+            } finally {
+                stop.set(true);
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOwnerOnly() throws EdgeAuthException, IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        new EdgeAuthSharedCache(file, 8, 128).close();
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Assert.assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        }
+    }
+
+    @Test(expected = EdgeAuthException.class)
+    public void testRequiresCacheBucket() throws EdgeAuthException, IOException {
+        try (EdgeAuthSharedCache cache = new EdgeAuthSharedCache(folder.getRoot().toPath().resolve("c"), 8)) {
+            new EdgeAuthBuilder().key(sampleKey).windowSeconds(300).sharedCache(cache).buildSigner();
+        }
+    }
+}
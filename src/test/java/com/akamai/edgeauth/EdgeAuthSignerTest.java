@@ -0,0 +1,407 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Expected tokens were generated by the 1.0.0 implementation
+public class EdgeAuthSignerTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+    private static final String[] sampleAcl = { "/live/*", "/vod/ä b/*" };
+    private static final String sampleUrl = "/this/is a/tést?x=1*._-~'()!";
+
+    private static final String[][] expectedTokens = {
+            { "sha256",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~id=session+id%2f1~data=pay+load%3d%c3%bc%26x%f0%9f%98%80~hmac=107a79a4880be3c7ce399cea722f60b8cb99b197eac346f2a6a9b057bff731ae",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~acl=%2flive%2f*%21%2fvod%2f%c3%a4+b%2f*~id=session+id%2f1~data=pay+load%3d%c3%bc%26x%f0%9f%98%80~hmac=b3de9039a43449f43457dc2599f9e7ba5c894d84b250d615574208bb968cad0a" },
+            { "sha1",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~id=session+id%2f1~data=pay+load%3d%c3%bc%26x%f0%9f%98%80~hmac=e58cf647e8e6c5ace1b3e690ac9fe6ae07748675",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~acl=%2flive%2f*%21%2fvod%2f%c3%a4+b%2f*~id=session+id%2f1~data=pay+load%3d%c3%bc%26x%f0%9f%98%80~hmac=74b24ddfdb8707f7b49aa5d1c234b7b54a348da2" },
+            { "md5",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~id=session+id%2f1~data=pay+load%3d%c3%bc%26x%f0%9f%98%80~hmac=affb319e22e9345799f02a81c620df63",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~acl=%2flive%2f*%21%2fvod%2f%c3%a4+b%2f*~id=session+id%2f1~data=pay+load%3d%c3%bc%26x%f0%9f%98%80~hmac=b4fc72048ad2ea62af9b5c82e5aa482e" },
+    };
+
+    private static final String[][] expectedUnescapedTokens = {
+            { "sha256",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~id=session-1~data=payload=1&x~hmac=c70e7649811c5b0b7b5deecfb156bc7a8eaf49fc93cf8448e8ff3c97ba6f2c2d",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~acl=/live/*!/vod/a b/*~id=session-1~data=payload=1&x~hmac=af1163b6085fc9a21495c0eb89b6f648763dd6d8a0faf230201c2bb3306c84e2" },
+            { "sha1",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~id=session-1~data=payload=1&x~hmac=b444f54ad2e435d7ae48ab2d7ec52e2f8c640105",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~acl=/live/*!/vod/a b/*~id=session-1~data=payload=1&x~hmac=ef017951f03e3f184cbd655b7d5156263eebb532" },
+            { "md5",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~id=session-1~data=payload=1&x~hmac=a19f214f122e210204a2fe0ed49608e6",
+                    "ip=127.0.0.1~st=1700000000~exp=1700000300~acl=/live/*!/vod/a b/*~id=session-1~data=payload=1&x~hmac=d549c357568a9a3a1f183d9ea58d4bbd" },
+    };
+
+    static EdgeAuthBuilder escapedBuilder(String algorithm) {
+        return new EdgeAuthBuilder().key(sampleKey).algorithm(algorithm)
+                .startTime(1700000000L).endTime(1700000300L).escapeEarly(true)
+                .ip("127.0.0.1").sessionId("session id/1").payload("pay load=ü&x😀").salt("s~alt");
+    }
+
+    static EdgeAuthBuilder unescapedBuilder(String algorithm) {
+        return new EdgeAuthBuilder().key(sampleKey).algorithm(algorithm)
+                .startTime(1700000000L).endTime(1700000300L)
+                .ip("127.0.0.1").sessionId("session-1").payload("payload=1&x").salt("s~alt");
+    }
+
+    @Test
+    public void testSignerMatchesPreviousImplementation() throws EdgeAuthException {
+        for (String[] expected : expectedTokens) {
+            EdgeAuthSigner signer = escapedBuilder(expected[0]).buildSigner();
+            Assert.assertEquals(expected[1], signer.generateURLToken(sampleUrl));
+            Assert.assertEquals(expected[2], signer.generateACLToken(sampleAcl));
+        }
+        for (String[] expected : expectedUnescapedTokens) {
+            EdgeAuthSigner signer = unescapedBuilder(expected[0]).buildSigner();
+            Assert.assertEquals(expected[1], signer.generateURLToken("/this/is a/test?x=1"));
+            Assert.assertEquals(expected[2], signer.generateACLToken("/live/*!/vod/a b/*"));
+        }
+    }
+
+    @Test
+    public void testTemplateOptionalFields() throws EdgeAuthException {
+        for (int fields = 0; fields < 32; fields++) {
+            for (boolean escapeEarly : new boolean[] { false, true }) {
+                EdgeAuthBuilder builder = new EdgeAuthBuilder().key(sampleKey).escapeEarly(escapeEarly)
+                        .endTime(1700000300L).clock(EdgeAuthClock.fixed(1700000000L))
+                        .ip((fields & 1) != 0 ? "127.0.0.1" : null)
+                        .sessionId((fields & 4) != 0 ? "session-1" : null)
+                        .payload((fields & 8) != 0 ? "payload" : null)
+                        .salt((fields & 16) != 0 ? "salt" : null);
+                if ((fields & 2) != 0) {
+                    builder.startTime(1700000000L);
+                }
+                EdgeAuthSigner signer = builder.buildSigner();
+                EdgeAuthValidator validator = builder.buildValidator();
+
+                String urlToken = signer.generateURLToken("/a b/c");
+                Assert.assertEquals(urlToken, (fields & 2) != 0, urlToken.contains("st=1700000000~"));
+                Assert.assertEquals(urlToken, EdgeAuthValidator.Result.VALID, validator.validateURLToken(urlToken, "/a b/c"));
+                String aclToken = signer.generateACLToken("/a/*");
+                Assert.assertEquals(aclToken, EdgeAuthValidator.Result.VALID, validator.validateACLToken(aclToken));
+            }
+        }
+    }
+
+    @Test
+    public void testSignUrl() throws EdgeAuthException {
+        EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).startTime(1700000000L).endTime(1700000300L)
+                .buildSigner();
+        String token = "__token__=" + signer.generateURLToken("/a/b.m3u8");
+
+        Assert.assertEquals("/a/b.m3u8?" + token, signer.signUrl("/a/b.m3u8"));
+        Assert.assertEquals("https://host/a/b.m3u8?" + token, signer.signUrl("https://host/a/b.m3u8"));
+        Assert.assertEquals("https://host:8443/a/b.m3u8?x=1&" + token + "#t=10",
+                signer.signUrl("https://host:8443/a/b.m3u8?x=1#t=10"));
+        Assert.assertEquals("//host/a/b.m3u8?" + token + "#f?g", signer.signUrl("//host/a/b.m3u8#f?g"));
+        Assert.assertEquals("/a/b.m3u8?" + token, signer.signUrl("/a/b.m3u8?"));
+        Assert.assertEquals("/a/b.m3u8?x=1&" + token, signer.signUrl("/a/b.m3u8?x=1&"));
+        Assert.assertEquals(signer.signUrl("/a/b.m3u8?next=http://x/y"),
+                "/a/b.m3u8?next=http://x/y&" + token);
+        Assert.assertEquals("a/./c/../b.m3u8?" + token, signer.signUrl("a/./c/../b.m3u8"));
+        Assert.assertEquals("https://host?x=1&__token__=" + signer.generateURLToken("/"),
+                signer.signUrl("https://host?x=1"));
+        try {
+            signer.signUrl("ftp://host/a/b.m3u8");
+            Assert.fail();
+        } catch (EdgeAuthException e) {
+            Assert.assertEquals("Not an http(s) URL or path: ftp://host/a/b.m3u8", e.getMessage());
+        }
+        try {
+            signer.signUrl(" ");
+            Assert.fail();
+        } catch (EdgeAuthException e) {
+            Assert.assertEquals("You must provide a URL.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSignedCookie() throws EdgeAuthException {
+        EdgeAuthBuilder builder = new EdgeAuthBuilder().key(sampleKey).startTime(EdgeAuth.NOW).windowSeconds(300)
+                .clock(EdgeAuthClock.fixed(1700000000L));
+        EdgeAuthSigner signer = builder.buildSigner();
+        String cookie = "__token__=" + signer.generateACLToken("/live/*");
+
+        Assert.assertEquals(cookie, signer.signedCookie("/live/*"));
+        Assert.assertEquals(cookie + "; Max-Age=300; Path=/live/; Domain=example.com; Secure; HttpOnly",
+                signer.signedCookie("/live/*", "/live/", "example.com", true));
+        Assert.assertEquals(cookie + "; Max-Age=300; HttpOnly", builder.build().signedCookie("/live/*", null, null, false));
+        for (String value : new String[] { "/live/; Domain=evil.com", "/a,b", "/live/\r\nSet-Cookie: x=1", "/\n" }) {
+            try {
+                signer.signedCookie("/live/*", value, null, true);
+                Assert.fail(value);
+            } catch (EdgeAuthException e) {
+                Assert.assertEquals("cookiePath must not contain ';', ',', CR or LF.", e.getMessage());
+            }
+            try {
+                signer.signedCookie("/live/*", null, value, true);
+                Assert.fail(value);
+            } catch (EdgeAuthException e) {
+                Assert.assertEquals("domain must not contain ';', ',', CR or LF.", e.getMessage());
+            }
+        }
+
+        // through the token cache: issued at the start of the bucket, expiring with the cached token
+        AtomicLong now = new AtomicLong(1700000000L);
+        EdgeAuthSigner cached = builder.clock(now::get).cacheBucketSeconds(60).buildSigner();
+        String cachedCookie = cached.signedCookie("/live/*");
+        Assert.assertEquals(cachedCookie + "; Max-Age=280; HttpOnly", cached.signedCookie("/live/*", null, null, false));
+        now.set(1700000039L);
+        Assert.assertEquals(cachedCookie + "; Max-Age=241; HttpOnly", cached.signedCookie("/live/*", null, null, false));
+    }
+
+    @Test
+    public void testEdgeAuthMatchesSigner() throws EdgeAuthException {
+        for (String[] expected : expectedTokens) {
+            EdgeAuth ea = escapedBuilder(expected[0]).build();
+            Assert.assertEquals(expected[1], ea.generateURLToken(sampleUrl));
+            Assert.assertEquals(expected[2], ea.generateACLToken(sampleAcl));
+        }
+    }
+
+    @Test
+    public void testSetterRebuildsSigner() throws EdgeAuthException {
+        EdgeAuth ea = escapedBuilder("md5").build();
+        EdgeAuthSigner before = ea.toSigner();
+        Assert.assertSame(before, ea.toSigner());
+
+        ea.setAlgorithm("sha256");
+        Assert.assertNotSame(before, ea.toSigner());
+        Assert.assertEquals(expectedTokens[0][1], ea.generateURLToken(sampleUrl));
+    }
+
+    @Test
+    public void testWriteToCallerBuffers() throws EdgeAuthException {
+        EdgeAuthSigner signer = escapedBuilder("sha1").buildSigner();
+
+        char[] chars = new char[512];
+        int length = signer.generateURLToken(sampleUrl, chars, 3);
+        Assert.assertEquals(expectedTokens[1][1], new String(chars, 3, length));
+
+        ByteBuffer bytes = ByteBuffer.allocate(512);
+        length = signer.generateACLToken("/live/*!/vod/ä b/*", bytes);
+        Assert.assertEquals(length, bytes.position());
+        Assert.assertEquals(expectedTokens[1][2], new String(bytes.array(), 0, length, StandardCharsets.US_ASCII));
+
+        StringBuilder sb = new StringBuilder("?__token__=");
+        signer.generateURLToken(sampleUrl, sb);
+        Assert.assertEquals("?__token__=" + expectedTokens[1][1], sb.toString());
+
+        StringWriter writer = new StringWriter();
+        signer.generateACLToken("/live/*!/vod/ä b/*", writer);
+        Assert.assertEquals(expectedTokens[1][2], writer.toString());
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testByteBufferTooSmall() throws EdgeAuthException {
+        escapedBuilder("sha256").buildSigner().generateURLToken(sampleUrl, ByteBuffer.allocate(16));
+    }
+
+    @Test
+    public void testBatch() throws EdgeAuthException {
+        EdgeAuthSigner signer = unescapedBuilder("sha256").buildSigner();
+        Assert.assertEquals(Arrays.asList(expectedUnescapedTokens[0][1], expectedUnescapedTokens[0][1]),
+                signer.generateURLTokens(Arrays.asList("/this/is a/test?x=1", "/this/is a/test?x=1")));
+        Assert.assertTrue(signer.generateACLTokens(Collections.<String>emptyList()).isEmpty());
+
+        EdgeAuth ea = new EdgeAuthBuilder().key(sampleKey).startTime(EdgeAuth.NOW).windowSeconds(300).build();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            urls.add("/segment/" + i + ".ts");
+        }
+        List<String> tokens = ea.generateURLTokens(urls);
+        Assert.assertEquals(urls.size(), tokens.size());
+
+        EdgeAuthValidator validator = new EdgeAuthBuilder().key(sampleKey).buildValidator();
+        String window = tokens.get(0).substring(0, tokens.get(0).indexOf("~hmac="));
+        for (int i = 0; i < urls.size(); i++) {
+            Assert.assertTrue(tokens.get(i).startsWith(window));
+            Assert.assertEquals(EdgeAuthValidator.Result.VALID, validator.validateURLToken(tokens.get(i), urls.get(i)));
+        }
+    }
+
+    @Test
+    public void testBatchRunsInParallel() throws EdgeAuthException {
+        Assume.assumeTrue(ForkJoinPool.getCommonPoolParallelism() > 1);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).windowSeconds(300)
+                .tracer(trace -> threads.add(Thread.currentThread())).buildSigner();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            urls.add("/vod/" + i + ".ts");
+        }
+        Assert.assertEquals(urls.size(), signer.generateURLTokens(urls).size());
+        Assert.assertTrue(threads.toString(), threads.size() > 1);
+    }
+
+    @Test(expected = EdgeAuthException.class)
+    public void testBatchWithEmptyPath() throws EdgeAuthException {
+        new EdgeAuthBuilder().key(sampleKey).windowSeconds(300).buildSigner()
+                .generateACLTokens(Arrays.asList("/live/*", " "));
+    }
+
+    @Test
+    public void testCache() throws EdgeAuthException {
+        EdgeAuthClock clock = EdgeAuthClock.fixed(1700000042L);
+        EdgeAuthSigner signer = new EdgeAuthBuilder().key(sampleKey).startTime(EdgeAuth.NOW).windowSeconds(300)
+                .clock(clock).cacheBucketSeconds(60).cacheMaxSize(8).buildSigner();
+        EdgeAuthValidator validator = new EdgeAuthBuilder().key(sampleKey).clock(clock).buildValidator();
+
+        String first = signer.generateACLToken("/live/*");
+        Assert.assertSame(first, signer.generateACLToken("/live/*"));
+        Assert.assertNotEquals(first, signer.generateURLToken("/live/*"));
+        Assert.assertEquals(EdgeAuthValidator.Result.VALID, validator.validateACLToken(first));
+
+        EdgeAuthToken token = validator.parse(first);
+        Assert.assertEquals(Long.valueOf(1700000040L), token.getStartTime());
+        Assert.assertEquals(1700000340L, token.getEndTime());
+
+        for (int i = 0; i < 100; i++) {
+            signer.generateURLToken("/segment/" + i);
+        }
+        // evicted or not, the same bucket yields the same token
+        Assert.assertEquals(first, signer.generateACLToken("/live/*"));
+    }
+
+    @Test
+    public void testFixedClock() throws EdgeAuthException {
+        EdgeAuth ea = new EdgeAuthBuilder().key(sampleKey).startTime(EdgeAuth.NOW).windowSeconds(300)
+                .clock(EdgeAuthClock.fixed(1700000000L)).build();
+        Assert.assertTrue(ea.generateURLToken("/a").startsWith("st=1700000000~exp=1700000300~hmac="));
+
+        ea.setClock(EdgeAuthClock.fixed(1700000100L));
+        Assert.assertTrue(ea.generateURLToken("/a").startsWith("st=1700000100~exp=1700000400~hmac="));
+    }
+
+    @Test
+    public void testCoarseClock() {
+        long now = System.currentTimeMillis() / 1000L;
+        long coarse = EdgeAuthClock.coarse().epochSeconds();
+        Assert.assertTrue(coarse >= now - 2 && coarse <= now + 1);
+    }
+
+    @Test(expected = EdgeAuthException.class)
+    public void testCacheBucketLongerThanWindow() throws EdgeAuthException {
+        new EdgeAuthBuilder().key(sampleKey).windowSeconds(300).cacheBucketSeconds(300).buildSigner();
+    }
+
+    @Test
+    public void testInvalidKey() {
+        try {
+            new EdgeAuthBuilder().key("not hex").windowSeconds(300).buildSigner();
+            Assert.fail("Invalid key should be rejected when the signer is built");
+        } catch (EdgeAuthException e) {
+            Assert.assertEquals("key must be hexadecimal digit string with even-length.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSharedSignerAcrossThreads() throws Exception {
+        final EdgeAuthSigner signer = escapedBuilder("sha256").buildSigner();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws EdgeAuthException {
+                        for (int i = 0; i < 2000; i++) {
+                            if (!expectedTokens[0][1].equals(signer.generateURLToken(sampleUrl))
+                                    || !expectedTokens[0][2].equals(signer.generateACLToken(sampleAcl))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue("Shared signer produced a wrong token", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSettersAcrossThreads() throws Exception {
+        final EdgeAuth ea = unescapedBuilder("sha256").build();
+        final String tokenA = unescapedBuilder("sha256").payload("a").buildSigner().generateACLToken("/live/*");
+        final String tokenB = unescapedBuilder("sha256").payload("b").buildSigner().generateACLToken("/live/*");
+        ea.setPayload("a");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws EdgeAuthException {
+                        for (int i = 0; i < 5000; i++) {
+                            String token = ea.generateACLToken("/live/*");
+                            if (!token.equals(tokenA) && !token.equals(tokenB)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (int i = 0; i < 2000; i++) {
+                ea.setPayload(i % 2 == 0 ? "b" : "a");
+            }
+            ea.setPayload("b");
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue("Shared EdgeAuth produced a wrong token", result.get());
+            }
+            // a snapshot built from replaced parameters must never outlive the setter
+            Assert.assertEquals(tokenB, ea.generateACLToken("/live/*"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testProvider() throws EdgeAuthException {
+        EdgeAuthBuilder builder = new EdgeAuthBuilder().key(sampleKey).startTime(1700000000L).windowSeconds(300)
+                .clock(EdgeAuthClock.fixed(1700000100L));
+        String expected = builder.buildSigner().generateACLToken("/live/*");
+
+        EdgeAuthSigner named = builder.provider("SunJCE").buildSigner();
+        Assert.assertEquals("SunJCE", named.getProvider().getName());
+        Assert.assertEquals(expected, named.generateACLToken("/live/*"));
+        Assert.assertEquals(EdgeAuthValidator.Result.VALID, builder.buildValidator().validateACLToken(expected));
+
+        EdgeAuthSigner calibrated = builder.provider((Provider) null).calibrateProvider(true).buildSigner();
+        Assert.assertTrue(Arrays.asList(Security.getProviders("Mac.HmacSHA256")).contains(calibrated.getProvider()));
+        Assert.assertEquals(expected, calibrated.generateACLToken("/live/*"));
+
+        try {
+            builder.provider("NoSuchProvider").buildSigner();
+            Assert.fail();
+        } catch (EdgeAuthException e) {
+            Assert.assertEquals("Unknown provider: NoSuchProvider", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EdgeAuthSigningProcessorTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+
+    private static EdgeAuthSigner signer() throws EdgeAuthException {
+        return new EdgeAuthBuilder()
+                .key(sampleKey)
+                .windowSeconds(300)
+                .clock(EdgeAuthClock.fixed(1700000000L))
+                .buildSigner();
+    }
+
+    @Test
+    public void testParallelInOrder() throws Exception {
+        EdgeAuthSigner signer = signer();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            urls.add("https://example.com/vod/" + i + ".ts" + (i % 3 == 0 ? "?q=1" : ""));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            EdgeAuthSigningProcessor processor = new EdgeAuthSigningProcessor(signer, false, executor, 32, 4);
+            ListPublisher publisher = new ListPublisher(urls);
+            publisher.subscribe(processor);
+            TestSubscriber subscriber = new TestSubscriber(100);
+            processor.subscribe(subscriber);
+
+            Assert.assertTrue(subscriber.done.await(30, TimeUnit.SECONDS));
+            Assert.assertNull(subscriber.error);
+            Assert.assertEquals(urls.size(), subscriber.results.size());
+            for (int i = 0; i < urls.size(); i++) {
+                EdgeAuthSigningProcessor.SignedToken token = subscriber.results.get(i);
+                Assert.assertEquals(urls.get(i), token.getInput());
+                Assert.assertEquals(signer.generateURLToken("/vod/" + i + ".ts"), token.getToken());
+                Assert.assertEquals(signer.signUrl(urls.get(i)), token.getSignedUrl());
+            }
+            Assert.assertEquals("https://example.com/vod/0.ts?q=1&__token__=" + subscriber.results.get(0).getToken(),
+                    subscriber.results.get(0).getSignedUrl());
+            Assert.assertTrue(String.valueOf(publisher.maxOutstanding.get()), publisher.maxOutstanding.get() <= 32 * 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        EdgeAuthSigningProcessor processor = new EdgeAuthSigningProcessor(signer(), true);
+        ListPublisher publisher = new ListPublisher(Arrays.asList("/a/*", "/b/*", "/c/*", "/d/*"));
+        publisher.subscribe(processor);
+        TestSubscriber subscriber = new TestSubscriber(0);
+        processor.subscribe(subscriber);
+        Assert.assertEquals(0, publisher.emitted.get());
+
+        subscriber.subscription.request(3);
+        Assert.assertEquals(3, subscriber.results.size());
+        Assert.assertEquals(3, publisher.emitted.get());
+        Assert.assertEquals(signer().generateACLToken("/c/*"), subscriber.results.get(2).getToken());
+        Assert.assertNull(subscriber.results.get(2).getSignedUrl());
+
+        subscriber.subscription.request(5);
+        Assert.assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(4, subscriber.results.size());
+        Assert.assertNull(subscriber.error);
+    }
+
+    @Test
+    public void testBatchSizes() throws Exception {
+        AtomicInteger batches = new AtomicInteger();
+        EdgeAuthSigningProcessor processor = new EdgeAuthSigningProcessor(signer(), true, r -> {
+            batches.incrementAndGet();
+            r.run();
+        }, 64, 1);
+        AtomicLong requested = new AtomicLong();
+        processor.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                requested.addAndGet(n);
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        TestSubscriber subscriber = new TestSubscriber(0);
+        processor.subscribe(subscriber);
+
+        // items delivered one at a time, outside of request, wait for a full batch
+        subscriber.subscription.request(1000);
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(i < requested.get());
+            processor.onNext("/live/" + i + "/*");
+        }
+        Assert.assertEquals(192, subscriber.results.size());
+        Assert.assertEquals(3, batches.get());
+        processor.onComplete();
+        Assert.assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(200, subscriber.results.size());
+        Assert.assertEquals(4, batches.get());
+
+        // a partial batch is signed once every item asked for has arrived
+        processor = new EdgeAuthSigningProcessor(signer(), true, r -> {
+            batches.incrementAndGet();
+            r.run();
+        }, 64, 1);
+        new ListPublisher(Arrays.asList("/a/*", "/b/*", "/c/*", "/d/*")).subscribe(processor);
+        subscriber = new TestSubscriber(0);
+        processor.subscribe(subscriber);
+        batches.set(0);
+        subscriber.subscription.request(3);
+        Assert.assertEquals(3, subscriber.results.size());
+        Assert.assertEquals(1, batches.get());
+    }
+
+    @Test
+    public void testInvalidUrl() throws Exception {
+        EdgeAuthSigningProcessor processor = new EdgeAuthSigningProcessor(signer(), false);
+        ListPublisher publisher = new ListPublisher(Arrays.asList("/a.ts", "ftp://example.com/b.ts", "/c.ts"));
+        publisher.subscribe(processor);
+        TestSubscriber subscriber = new TestSubscriber(10);
+        processor.subscribe(subscriber);
+
+        Assert.assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, subscriber.results.size());
+        Assert.assertTrue(subscriber.error instanceof EdgeAuthException);
+        Assert.assertEquals("Not an http(s) URL or path: ftp://example.com/b.ts", subscriber.error.getMessage());
+        Assert.assertTrue(publisher.cancelled);
+    }
+
+    @Test
+    public void testOneSubscriber() throws Exception {
+        EdgeAuthSigningProcessor processor = new EdgeAuthSigningProcessor(signer(), true);
+        processor.subscribe(new TestSubscriber(1));
+        TestSubscriber second = new TestSubscriber(1);
+        processor.subscribe(second);
+        Assert.assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    /**
+     * Emits a list on request, recording how many items were requested but not yet emitted.
+     */
+    private static final class ListPublisher implements Publisher<String> {
+
+        final List<String> items;
+
+        final AtomicLong emitted = new AtomicLong();
+
+        final AtomicLong maxOutstanding = new AtomicLong();
+
+        volatile boolean cancelled;
+
+        ListPublisher(List<String> items) {
+            this.items = items;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super String> subscriber) {
+            AtomicLong requested = new AtomicLong();
+            AtomicInteger wip = new AtomicInteger();
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    long outstanding = requested.addAndGet(n) - emitted.get();
+                    maxOutstanding.accumulateAndGet(outstanding, Math::max);
+                    if (wip.getAndIncrement() != 0) {
+                        return;
+                    }
+                    do {
+                        while (!cancelled && emitted.get() < Math.min(requested.get(), items.size())) {
+                            subscriber.onNext(items.get((int) emitted.getAndIncrement()));
+                        }
+                        if (!cancelled && emitted.get() == items.size()) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                        }
+                    } while (wip.decrementAndGet() != 0);
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Collects tokens, requesting {@code step} more after every {@code step} received.
+     */
+    private static final class TestSubscriber implements Subscriber<EdgeAuthSigningProcessor.SignedToken> {
+
+        final int step;
+
+        final List<EdgeAuthSigningProcessor.SignedToken> results = Collections.synchronizedList(new ArrayList<>());
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        volatile Subscription subscription;
+
+        volatile Throwable error;
+
+        TestSubscriber(int step) {
+            this.step = step;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            if (this.step > 0) {
+                subscription.request(this.step);
+            }
+        }
+
+        @Override
+        public void onNext(EdgeAuthSigningProcessor.SignedToken token) {
+            this.results.add(token);
+            if (this.step > 0 && this.results.size() % this.step == 0) {
+                this.subscription.request(this.step);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            this.error = t;
+            this.done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            this.done.countDown();
+        }
+    }
+}
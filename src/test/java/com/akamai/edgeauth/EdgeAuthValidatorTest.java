@@ -0,0 +1,132 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.akamai.edgeauth.EdgeAuthValidator.Result;
+
+public class EdgeAuthValidatorTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+    private static final String samplePath = "/this/is a/tést";
+
+    private static EdgeAuthBuilder builder(String algorithm, boolean escapeEarly) {
+        return new EdgeAuthBuilder().key(sampleKey).algorithm(algorithm).escapeEarly(escapeEarly)
+                .startTime(EdgeAuth.NOW).windowSeconds(300)
+                .ip("127.0.0.1").sessionId("session id").payload("pay=load").salt("salt");
+    }
+
+    @Test
+    public void testRoundTrip() throws EdgeAuthException {
+        for (String algorithm : new String[] { "sha256", "sha1", "md5" }) {
+            EdgeAuthBuilder builder = builder(algorithm, true);
+            EdgeAuthSigner signer = builder.buildSigner();
+            EdgeAuthValidator validator = builder.buildValidator();
+
+            Assert.assertEquals(Result.VALID, validator.validateURLToken(signer.generateURLToken(samplePath), samplePath));
+            Assert.assertEquals(Result.VALID, validator.validateACLToken(signer.generateACLToken("/live/*!/vod/*")));
+
+            EdgeAuthToken token = validator.parse(signer.generateACLToken("/live/*"));
+            Assert.assertEquals("%2flive%2f*", token.getAcl());
+            Assert.assertEquals("session+id", token.getSessionId());
+            Assert.assertEquals("pay%3dload", token.getPayload());
+            Assert.assertEquals("127.0.0.1", token.getIp());
+        }
+    }
+
+    @Test
+    public void testByteBuffer() throws EdgeAuthException {
+        EdgeAuthBuilder builder = builder("sha256", false);
+        String token = builder.buildSigner().generateURLToken("/a/b");
+        ByteBuffer bytes = ByteBuffer.allocateDirect(256);
+        bytes.put("garbage".getBytes(StandardCharsets.US_ASCII));
+        int start = bytes.position();
+        bytes.put(token.getBytes(StandardCharsets.US_ASCII));
+        bytes.flip().position(start);
+
+        Assert.assertEquals(Result.VALID, builder.buildValidator().validateURLToken(bytes, "/a/b"));
+        Assert.assertEquals(start, bytes.position());
+    }
+
+    @Test
+    public void testTamperedToken() throws EdgeAuthException {
+        EdgeAuthBuilder builder = builder("sha256", true);
+        EdgeAuthValidator validator = builder.buildValidator();
+        String token = builder.buildSigner().generateACLToken("/live/*");
+
+        Assert.assertEquals(Result.INVALID_HMAC, validator.validateACLToken(token.replace("%2flive", "%2fvod")));
+        char last = token.charAt(token.length() - 1);
+        Assert.assertEquals(Result.INVALID_HMAC, validator.validateACLToken(
+                token.substring(0, token.length() - 1) + (last == '0' ? '1' : '0')));
+        Assert.assertEquals(Result.INVALID_HMAC, validator.validateACLToken(token.substring(0, token.length() - 2)));
+        Assert.assertEquals(Result.INVALID_HMAC, validator.validateURLToken(
+                builder.buildSigner().generateURLToken("/a"), "/b"));
+        Assert.assertEquals(Result.INVALID_HMAC, new EdgeAuthBuilder().key("abcdef").escapeEarly(true)
+                .salt("salt").buildValidator().validateACLToken(token));
+    }
+
+    @Test
+    public void testTimeWindow() throws EdgeAuthException {
+        EdgeAuthBuilder builder = new EdgeAuthBuilder().key(sampleKey).startTime(1700000000L).endTime(1700000300L);
+        String token = builder.buildSigner().generateACLToken("/*");
+
+        Assert.assertEquals(Result.NOT_YET_VALID,
+                builder.clock(EdgeAuthClock.fixed(1699999999L)).buildValidator().validateACLToken(token));
+        Assert.assertEquals(Result.VALID,
+                builder.clock(EdgeAuthClock.fixed(1700000000L)).buildValidator().validateACLToken(token));
+        Assert.assertEquals(Result.VALID,
+                builder.clock(EdgeAuthClock.fixed(1700000299L)).buildValidator().validateACLToken(token));
+        Assert.assertEquals(Result.EXPIRED,
+                builder.clock(EdgeAuthClock.fixed(1700000300L)).buildValidator().validateACLToken(token));
+    }
+
+    @Test
+    public void testMalformedToken() throws EdgeAuthException {
+        EdgeAuthValidator validator = new EdgeAuthBuilder().key(sampleKey).buildValidator();
+        String[] tokens = {
+                null, "", "hmac=00", "exp=1~acl=/*", "exp=abc~acl=/*~hmac=00", "acl=/*~exp=1~hmac=00",
+                "exp=1~exp=2~acl=/*~hmac=00", "exp=1~foo=bar~acl=/*~hmac=00", "exp=1~acl=/*~hmac=",
+        };
+        for (String token : tokens) {
+            Assert.assertEquals(String.valueOf(token), Result.MALFORMED, validator.validateACLToken(token));
+        }
+        // URL token checked as an ACL token and the other way around
+        Assert.assertEquals(Result.MALFORMED, validator.validateACLToken("exp=1~hmac=00"));
+        Assert.assertEquals(Result.MALFORMED, validator.validateURLToken("exp=1~acl=/*~hmac=00", "/"));
+    }
+
+    @Test
+    public void testValidateRequest() throws Exception {
+        EdgeAuthMetricsRecorder recorder = new EdgeAuthMetricsRecorder();
+        EdgeAuthBuilder builder = new EdgeAuthBuilder()
+                .key(sampleKey)
+                .escapeEarly(true)
+                .endTime(1700000300L)
+                .clock(EdgeAuthClock.fixed(1700000000L))
+                .verificationCacheSize(10);
+        EdgeAuthSigner signer = builder.buildSigner();
+        EdgeAuthValidator validator = builder.metrics(recorder).buildValidator();
+
+        String aclToken = signer.generateACLToken(new String[]{"/live/*", "/vod/\u00e4?.ts"});
+        Assert.assertEquals(EdgeAuthValidator.Result.VALID, validator.validateRequest(aclToken, "/live/ch1/seg.ts"));
+        Assert.assertEquals(EdgeAuthValidator.Result.VALID, validator.validateRequest(aclToken, "/vod/\u00e41.ts"));
+        Assert.assertEquals(EdgeAuthValidator.Result.ACL_MISMATCH, validator.validateRequest(aclToken, "/vod/\u00e4.ts"));
+        Assert.assertEquals(EdgeAuthValidator.Result.ACL_MISMATCH, validator.validateRequest(aclToken, "/livestream"));
+
+        String urlToken = signer.generateURLToken("/vod/a b.ts");
+        Assert.assertEquals(EdgeAuthValidator.Result.VALID, validator.validateRequest(urlToken, "/vod/a b.ts"));
+        Assert.assertEquals(EdgeAuthValidator.Result.VALID, validator.validateRequest(urlToken, "/vod/a b.ts"));
+        Assert.assertEquals(EdgeAuthValidator.Result.INVALID_HMAC, validator.validateRequest(urlToken, "/vod/c.ts"));
+        Assert.assertEquals(EdgeAuthValidator.Result.MALFORMED, validator.validateRequest(null, "/vod/c.ts"));
+
+        // cached verifications skip the HMAC: the first ACL and URL checks and the URL mismatch only
+        Assert.assertEquals(3, recorder.getLatency(EdgeAuthMetrics.Stage.HMAC).getCount());
+
+        EdgeAuthValidator expired = new EdgeAuthBuilder().key(sampleKey).escapeEarly(true)
+                .clock(EdgeAuthClock.fixed(1700000300L)).verificationCacheSize(10).buildValidator();
+        Assert.assertEquals(EdgeAuthValidator.Result.EXPIRED, expired.validateRequest(aclToken, "/live/a"));
+    }
+}
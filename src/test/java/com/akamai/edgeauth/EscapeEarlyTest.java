@@ -0,0 +1,62 @@
+package com.akamai.edgeauth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class EscapeEarlyTest {
+
+    // escapeEarly of the 1.0.0 implementation
+    private static String legacyEscape(String text) throws UnsupportedEncodingException {
+        StringBuilder newText = new StringBuilder(URLEncoder.encode(text, "UTF-8"));
+        Matcher matcher = Pattern.compile("%..").matcher(newText);
+        while (matcher.find()) {
+            newText.replace(matcher.start(), matcher.end(),
+                    newText.substring(matcher.start(), matcher.end()).toLowerCase());
+        }
+        return newText.toString();
+    }
+
+    private static String escape(String text) {
+        TokenBuffer buffer = TokenBuffer.acquire();
+        try {
+            return buffer.appendEscaped(text).toString();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void testKnownStrings() throws UnsupportedEncodingException {
+        String[] samples = {
+                "", "/this/is/a/test", "/live/*!/vod/*", "a b+c%d&e=f~g'h(i)j!k",
+                "ü é ä 中文", "😀", "\ud83d", "x\ude00y", "\ud83d😀", "-_.*", "\u0000\u007f\u0080߿ࠀ￿",
+        };
+        for (String sample : samples) {
+            Assert.assertEquals(sample, legacyEscape(sample), escape(sample));
+        }
+    }
+
+    @Test
+    public void testRandomStrings() throws UnsupportedEncodingException {
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            char[] chars = new char[random.nextInt(300)];
+            for (int j = 0; j < chars.length; j++) {
+                switch (random.nextInt(4)) {
+                    case 0: chars[j] = (char) random.nextInt(0x80); break;
+                    case 1: chars[j] = (char) random.nextInt(0x800); break;
+                    case 2: chars[j] = (char) (0xd800 + random.nextInt(0x800)); break;
+                    default: chars[j] = (char) random.nextInt(0x10000); break;
+                }
+            }
+            String sample = new String(chars);
+            Assert.assertEquals(legacyEscape(sample), escape(sample));
+        }
+    }
+}
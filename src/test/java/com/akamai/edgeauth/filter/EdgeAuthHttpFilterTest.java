@@ -0,0 +1,83 @@
+package com.akamai.edgeauth.filter;
+
+import com.akamai.edgeauth.EdgeAuthBuilder;
+import com.akamai.edgeauth.EdgeAuthSigner;
+import com.akamai.edgeauth.EdgeAuthValidator;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+public class EdgeAuthHttpFilterTest {
+
+    private static final String sampleKey = "52a152a152a152a152a152a152a1";
+
+    private HttpServer server;
+
+    private EdgeAuthSigner signer;
+
+    @Before
+    public void setUp() throws Exception {
+        EdgeAuthBuilder builder = new EdgeAuthBuilder().key(sampleKey).windowSeconds(300).verificationCacheSize(100);
+        this.signer = builder.buildSigner();
+        EdgeAuthValidator validator = builder.buildValidator();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        }).getFilters().add(new EdgeAuthHttpFilter(validator));
+        this.server.start();
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop(0);
+    }
+
+    private int get(String pathAndQuery, String cookie, String header) throws Exception {
+        URL url = new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + pathAndQuery);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (cookie != null) {
+            connection.setRequestProperty("Cookie", cookie);
+        }
+        if (header != null) {
+            connection.setRequestProperty("__token__", header);
+        }
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void testURLToken() throws Exception {
+        String token = this.signer.generateURLToken("/vod/seg1.ts");
+        Assert.assertEquals(200, get("/vod/seg1.ts?a=1&__token__=" + token, null, null));
+        Assert.assertEquals(200, get("/vod/seg1.ts?__token__=" + token, null, null));
+        Assert.assertEquals(403, get("/vod/seg2.ts?__token__=" + token, null, null));
+        Assert.assertEquals(403, get("/vod/seg1.ts", null, null));
+    }
+
+    @Test
+    public void testACLTokenInCookieAndHeader() throws Exception {
+        String token = this.signer.generateACLToken(new String[]{"/live/*", "/vod/a?.ts"});
+        Assert.assertEquals(200, get("/live/ch1/seg.ts", "x=1; __token__=" + token, null));
+        Assert.assertEquals(200, get("/vod/a1.ts", null, token));
+        Assert.assertEquals(403, get("/vod/a12.ts", null, token));
+        Assert.assertEquals(403, get("/other", null, token));
+    }
+
+    @Test
+    public void testTokenLocator() {
+        Assert.assertEquals("b", TokenLocator.queryParameter("x__token__=a&__token__=b", "__token__"));
+        Assert.assertNull(TokenLocator.queryParameter("__token__", "__token__"));
+        Assert.assertEquals("v", TokenLocator.cookie("a=1;  __token__=\"v\"", "__token__"));
+        Assert.assertEquals("/a b", TokenLocator.decodePath("/a%20b"));
+    }
+}